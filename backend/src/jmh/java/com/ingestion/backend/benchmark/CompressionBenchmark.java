@@ -0,0 +1,79 @@
+package com.ingestion.backend.benchmark;
+
+import com.ingestion.backend.util.CompressionCodec;
+import com.ingestion.backend.util.ParallelCompressingOutputStream;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+// Compares export codecs on UK price-paid shaped CSV. Run the main method from the test
+// classpath; it prints MB/s of uncompressed input and output size per codec and thread count.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class CompressionBenchmark {
+
+    @Param({"GZIP", "ZSTD", "LZ4"})
+    public String codec;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    @Param({"200000"})
+    public int rows;
+
+    private byte[] input;
+    private CompressionCodec compressionCodec;
+
+    @Setup
+    public void setUp() throws IOException {
+        input = UkPricePaidFixtures.csv(rows);
+        compressionCodec = CompressionCodec.fromName(codec);
+    }
+
+    @Benchmark
+    public int compress() throws IOException {
+        return compress(input, compressionCodec, threads);
+    }
+
+    static int compress(byte[] input, CompressionCodec codec, int threads) throws IOException {
+        ByteArrayOutputStream sink = new ByteArrayOutputStream(input.length / 2);
+        try (ParallelCompressingOutputStream out = new ParallelCompressingOutputStream(
+                sink, codec, ParallelCompressingOutputStream.DEFAULT_BLOCK_SIZE, threads)) {
+            // Write in small pieces, the way the export copy loop hands data over
+            for (int offset = 0; offset < input.length; offset += 64 * 1024) {
+                out.write(input, offset, Math.min(64 * 1024, input.length - offset));
+            }
+        }
+        return sink.size();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(CompressionBenchmark.class.getSimpleName())
+                .build();
+        Collection<RunResult> results = new Runner(options).run();
+
+        System.out.printf("%n%-6s %7s %12s %14s %14s %8s%n", "codec", "threads", "rows", "input bytes", "output bytes", "MB/s");
+        for (RunResult result : results) {
+            String codec = result.getParams().getParam("codec");
+            int threads = Integer.parseInt(result.getParams().getParam("threads"));
+            int rows = Integer.parseInt(result.getParams().getParam("rows"));
+            byte[] input = UkPricePaidFixtures.csv(rows);
+            int outputBytes = compress(input, CompressionCodec.fromName(codec), threads);
+            double megabytesPerSecond = result.getPrimaryResult().getScore() * input.length / (1024.0 * 1024.0);
+            System.out.printf("%-6s %7d %12d %14d %14d %8.1f%n", codec, threads, rows, input.length, outputBytes, megabytesPerSecond);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.ingestion.backend.benchmark;
+
+import com.ingestion.backend.util.CsvEncoder;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// Export writer loop: the original contains/replace FileWriter loop against CsvEncoder.
+// Run main to include the GC profiler; gc.alloc.rate.norm is bytes allocated per row.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@OperationsPerInvocation(CsvEncoderBenchmark.ROWS)
+public class CsvEncoderBenchmark {
+
+    static final int ROWS = 50_000;
+    private static final int PRICE = 0;
+    private static final int IS_NEW = 5;
+
+    private String[][] rows;
+    private long[] prices;
+    private long[] isNew;
+    private Writer legacyWriter;
+    private CsvEncoder encoder;
+
+    @Setup
+    public void setUp() {
+        rows = UkPricePaidFixtures.rows(ROWS);
+        prices = new long[ROWS];
+        isNew = new long[ROWS];
+        for (int r = 0; r < ROWS; r++) {
+            prices[r] = Long.parseLong(rows[r][PRICE]);
+            isNew[r] = Long.parseLong(rows[r][IS_NEW]);
+        }
+        legacyWriter = new BufferedWriter(new OutputStreamWriter(OutputStream.nullOutputStream(), StandardCharsets.UTF_8));
+        encoder = new CsvEncoder(new DiscardingChannel(), ",");
+    }
+
+    @Benchmark
+    public void legacyWriterLoop() throws IOException {
+        String delimiter = ",";
+        for (String[] row : rows) {
+            for (int i = 0; i < row.length; i++) {
+                String value = row[i];
+                if (value != null && value.contains(delimiter)) {
+                    legacyWriter.append("\"").append(value.replace("\"", "\"\"")).append("\"");
+                } else {
+                    legacyWriter.append(value != null ? value : "");
+                }
+                if (i < row.length - 1) legacyWriter.append(delimiter);
+            }
+            legacyWriter.append("\n");
+        }
+        legacyWriter.flush();
+    }
+
+    @Benchmark
+    public void csvEncoder() throws IOException {
+        for (int r = 0; r < ROWS; r++) {
+            String[] row = rows[r];
+            for (int i = 0; i < row.length; i++) {
+                if (i == PRICE) {
+                    encoder.writeLong(prices[r]);
+                } else if (i == IS_NEW) {
+                    encoder.writeLong(isNew[r]);
+                } else {
+                    encoder.writeField(row[i]);
+                }
+            }
+            encoder.endRecord();
+        }
+        encoder.flush();
+    }
+
+    static class DiscardingChannel implements WritableByteChannel {
+        @Override
+        public int write(ByteBuffer src) {
+            int n = src.remaining();
+            src.position(src.limit());
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(CsvEncoderBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,78 @@
+package com.ingestion.backend.benchmark;
+
+import com.ingestion.backend.util.CsvTokenizer;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// Record splitting on UK price-paid shaped CSV: the old readLine + String.split loop against
+// CsvTokenizer, both with and without materialising field Strings. split also gets quoted
+// fields wrong, so it is a lower bound on what a correct String-based parser would cost.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class CsvTokenizerBenchmark {
+
+    @Param({"10000", "200000", "1000000"})
+    public int rows;
+
+    private byte[] input;
+
+    @Setup
+    public void setUp() throws IOException {
+        input = UkPricePaidFixtures.csv(rows);
+    }
+
+    @Benchmark
+    public void readLineSplit(Blackhole blackhole) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(input), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                blackhole.consume(line.split(",", -1));
+            }
+        }
+    }
+
+    @Benchmark
+    public void tokenizerStrings(Blackhole blackhole) throws IOException {
+        CsvTokenizer tokenizer = CsvTokenizer.of(new ByteArrayInputStream(input), ",");
+        while (tokenizer.nextRecord()) {
+            blackhole.consume(tokenizer.toArray());
+        }
+    }
+
+    @Benchmark
+    public long tokenizerSlices() throws IOException {
+        CsvTokenizer tokenizer = CsvTokenizer.of(new ByteArrayInputStream(input), ",");
+        long bytes = 0;
+        while (tokenizer.nextRecord()) {
+            for (int i = 0; i < tokenizer.fieldCount(); i++) {
+                bytes += tokenizer.fieldLength(i);
+            }
+        }
+        return bytes;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(CsvTokenizerBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,93 @@
+package com.ingestion.backend.benchmark;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import com.ingestion.backend.util.CompressionCodec;
+import com.ingestion.backend.util.CsvTokenizer;
+import com.ingestion.backend.util.ParallelCompressingOutputStream;
+import com.ingestion.backend.util.ParallelDecompressingInputStream;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+// Tokenizing an upload through the decompressing stream, against tokenizing the same CSV
+// uncompressed. "blocks" inputs are what ParallelCompressingOutputStream writes (1MB members
+// or frames the pool can split); "single" inputs are what gzip and zstd write by default and
+// only decode sequentially. sequential decodes every input with the codec's plain decoder.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class DecompressionBenchmark {
+
+    @Param({"200000"})
+    public int rows;
+
+    @Param({"NONE", "GZIP_BLOCKS", "GZIP_SINGLE", "ZSTD_BLOCKS", "ZSTD_SINGLE", "LZ4_BLOCKS", "BZIP2_BLOCKS"})
+    public String input;
+
+    // Pool size for the parallel decoder; 1 decodes inline
+    @Param({"1", "4"})
+    public int threads;
+
+    private byte[] compressed;
+    private CompressionCodec codec;
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] csv = UkPricePaidFixtures.csv(rows);
+        codec = CompressionCodec.valueOf(input.substring(0, input.indexOf('_') < 0 ? input.length() : input.indexOf('_')));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream compressing = input.endsWith("_SINGLE")
+                ? (codec == CompressionCodec.GZIP ? new GZIPOutputStream(out) : new ZstdOutputStream(out))
+                : new ParallelCompressingOutputStream(out, codec)) {
+            compressing.write(csv);
+        }
+        compressed = out.toByteArray();
+    }
+
+    @Benchmark
+    public long parallel() throws IOException {
+        try (InputStream in = ParallelDecompressingInputStream.open(new ByteArrayInputStream(compressed), threads)) {
+            return tokenize(in);
+        }
+    }
+
+    @Benchmark
+    public long sequential() throws IOException {
+        try (InputStream in = codec.openDecoder(new BufferedInputStream(new ByteArrayInputStream(compressed), 64 * 1024))) {
+            return tokenize(in);
+        }
+    }
+
+    private static long tokenize(InputStream in) throws IOException {
+        CsvTokenizer tokenizer = CsvTokenizer.of(in, ",");
+        long bytes = 0;
+        while (tokenizer.nextRecord()) {
+            for (int i = 0; i < tokenizer.fieldCount(); i++) {
+                bytes += tokenizer.fieldLength(i);
+            }
+        }
+        return bytes;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(DecompressionBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,382 @@
+package com.ingestion.backend.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.ingestion.backend.BackendApplication;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Drives /ingest/flatfile-to-clickhouse and /ingest/clickhouse-to-flatfile through the real
+// controllers, scheduler and services against FakeClickHouseServer, for each file size and number
+// of concurrent jobs, and prints rows/s, MB/s, the p99 batch insert latency and heap and GC
+// figures per run. The stand-in only counts what it is sent, so the numbers are the ceiling this
+// process can reach, not what a real server would take. Not a JMH benchmark: every run is a few
+// seconds of wall clock across two HTTP hops. Run it with the heap and GC under test, e.g.
+// -Xmx2g -XX:+UseG1GC.
+//
+// Usage: -Drows=100000,1000000 -Dconcurrency=1,4 -Ddirection=both|import|export
+//        -Dengine=STREAM|BATCH -Dinsert.connections=4 -Dlatency.ms=0 -Dselect.mbps=0
+//        [-Dfixture.file=...] [any --spring.property=value as arguments]
+public class EndToEndThroughput {
+
+    private static final String API = "/api/data";
+    private static final long POLL_MILLIS = 50;
+
+    private final FakeClickHouseServer clickHouse;
+    private final MeterRegistry registry;
+    private final HttpClient http = HttpClient.newHttpClient();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String baseUrl;
+
+    private final String engine = System.getProperty("engine", "STREAM");
+    private final int insertConnections = Integer.getInteger("insert.connections", 4);
+
+    private EndToEndThroughput(ConfigurableApplicationContext context, FakeClickHouseServer clickHouse) {
+        this.clickHouse = clickHouse;
+        this.registry = context.getBean(MeterRegistry.class);
+        this.baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort() + API;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = intList(System.getProperty("rows", "100000,1000000"));
+        int[] concurrencies = intList(System.getProperty("concurrency", "1,4"));
+        String direction = System.getProperty("direction", "both");
+        int maxConcurrency = 1;
+        for (int concurrency : concurrencies) {
+            maxConcurrency = Math.max(maxConcurrency, concurrency);
+        }
+
+        try (FakeClickHouseServer clickHouse = new FakeClickHouseServer()) {
+            clickHouse.setLatencyMillis(Long.getLong("latency.ms", 0));
+            clickHouse.setSelectBytesPerSecond(Long.getLong("select.mbps", 0) << 20);
+
+            // A devtools restart would run main again inside this one
+            System.setProperty("spring.devtools.restart.enabled", "false");
+            Path journal = Files.createTempFile("e2e_jobs_", ".jsonl");
+            List<String> arguments = new ArrayList<>(List.of(
+                    "--server.port=0",
+                    "--clickhouse.port=" + clickHouse.getPort(),
+                    "--ingestion.registry.journal-path=" + journal,
+                    // Every job may run at once, all against the one stand-in host
+                    "--ingestion.jobs.max-concurrent=" + maxConcurrency,
+                    "--ingestion.jobs.max-per-host=" + maxConcurrency,
+                    "--clickhouse.pool.max-size=" + Math.max(10, maxConcurrency * insertConnectionsFor()),
+                    // p99 over the whole run rather than the default two-minute window
+                    "--management.metrics.distribution.percentiles.ingestion.batch.latency=0.99",
+                    "--management.metrics.distribution.expiry.ingestion.batch.latency=1h",
+                    "--logging.level.root=WARN"));
+            Collections.addAll(arguments, args);
+
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(BackendApplication.class)
+                    .run(arguments.toArray(new String[0]))) {
+                EndToEndThroughput harness = new EndToEndThroughput(context, clickHouse);
+                harness.warmUp(direction);
+                System.out.printf("%-6s %10s %4s %12s %8s %9s %10s %5s %8s%n",
+                        "dir", "rows", "jobs", "rows/s", "MB/s", "p99 ms", "heap MB", "gcs", "gc ms");
+                for (int rows : sizes) {
+                    for (int concurrency : concurrencies) {
+                        if (!"export".equals(direction)) {
+                            harness.runImport(rows, concurrency).print();
+                        }
+                        if (!"import".equals(direction)) {
+                            harness.runExport(rows, concurrency).print();
+                        }
+                    }
+                }
+            } finally {
+                Files.deleteIfExists(journal);
+            }
+        }
+    }
+
+    private static int insertConnectionsFor() {
+        return "BATCH".equalsIgnoreCase(System.getProperty("engine", "STREAM"))
+                ? Integer.getInteger("insert.connections", 4) : 1;
+    }
+
+    // One small round each way so the first measured run isn't also the one that loads classes,
+    // opens pools and gets the hot loops compiled
+    private void warmUp(String direction) throws Exception {
+        for (int i = 0; i < 3; i++) {
+            if (!"export".equals(direction)) {
+                runImport(20_000, 1);
+            }
+            if (!"import".equals(direction)) {
+                runExport(20_000, 1);
+            }
+        }
+    }
+
+    private Run runImport(int rows, int concurrency) throws Exception {
+        Path file = Files.createTempFile("e2e_upload_", ".csv");
+        try {
+            byte[] csv = UkPricePaidFixtures.csv(rows);
+            Files.write(file, csv);
+
+            String prefix = "e2e_import_" + System.nanoTime() + "_";
+            Run run = new Run("import", rows, concurrency, (long) csv.length * concurrency);
+            List<String> ids = new ArrayList<>();
+            List<String> tables = new ArrayList<>();
+            for (int i = 0; i < concurrency; i++) {
+                tables.add(prefix + i);
+            }
+
+            run.start();
+            // All uploads go out at once, as that many clients would send them
+            List<CompletableFuture<String>> uploads = new ArrayList<>();
+            for (String table : tables) {
+                uploads.add(sendAsync(uploadRequest(file, table)));
+            }
+            for (CompletableFuture<String> upload : uploads) {
+                ids.add(ingestionId(upload.join()));
+            }
+            run.addRows(awaitAll(ids));
+            run.stop();
+            run.p99Millis = p99Millis("import", tables);
+            return run;
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private Run runExport(int rows, int concurrency) throws Exception {
+        clickHouse.setSelectRows(rows);
+        clickHouse.prepareSelect();
+        long sentBefore = clickHouse.getBytesSent();
+
+        String prefix = "e2e_export_" + System.nanoTime() + "_";
+        List<Path> files = new ArrayList<>();
+        List<String> ids = new ArrayList<>();
+        Run run = new Run("export", rows, concurrency, 0);
+        try {
+            run.start();
+            List<CompletableFuture<String>> exports = new ArrayList<>();
+            for (int i = 0; i < concurrency; i++) {
+                Path file = Files.createTempFile(prefix + i + "_", ".csv");
+                files.add(file);
+                exports.add(sendAsync(exportRequest(prefix + i, file)));
+            }
+            for (CompletableFuture<String> export : exports) {
+                ids.add(ingestionId(export.join()));
+            }
+            run.addRows(awaitAll(ids));
+            run.stop();
+            run.bytes = clickHouse.getBytesSent() - sentBefore;
+            // Native exports copy the server's bytes through without forming batches
+            run.p99Millis = Double.NaN;
+            return run;
+        } finally {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    // Multipart upload with the request part first, streamed from disk
+    private HttpRequest uploadRequest(Path file, String table) throws IOException {
+        String boundary = "----e2e" + UUID.randomUUID();
+        String head = "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"request\"\r\n"
+                + "Content-Type: application/json\r\n\r\n"
+                + objectMapper.writeValueAsString(ingestionRequest(table)) + "\r\n"
+                + "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + table + ".csv\"\r\n"
+                + "Content-Type: text/csv\r\n\r\n";
+        String tail = "\r\n--" + boundary + "--\r\n";
+
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/ingest/flatfile-to-clickhouse"))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofInputStream(() -> {
+                    try {
+                        InputStream body = new SequenceInputStream(Files.newInputStream(file),
+                                new ByteArrayInputStream(tail.getBytes(StandardCharsets.UTF_8)));
+                        return new SequenceInputStream(new ByteArrayInputStream(head.getBytes(StandardCharsets.UTF_8)), body);
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }))
+                .build();
+    }
+
+    private HttpRequest exportRequest(String table, Path file) throws IOException {
+        ObjectNode body = ingestionRequest(table);
+        body.put("filePath", file.toString());
+        body.put("exportMode", "NATIVE");
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/ingest/clickhouse-to-flatfile"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                .build();
+    }
+
+    private ObjectNode ingestionRequest(String table) {
+        ObjectNode request = objectMapper.createObjectNode();
+        request.put("host", "127.0.0.1");
+        request.put("port", clickHouse.getPort());
+        // The stand-in never compresses, so the JDBC driver mustn't ask it to
+        request.put("database", "default?compress=0");
+        request.put("username", "default");
+        request.put("password", "");
+        request.put("delimiter", ",");
+        request.put("tableName", table);
+        request.put("insertEngine", engine);
+        request.put("insertConnections", insertConnections);
+        return request;
+    }
+
+    // Poll every job to the end; the total of their records, or a failure for the first that failed
+    private long awaitAll(List<String> ids) throws Exception {
+        long rows = 0;
+        for (String id : ids) {
+            while (true) {
+                HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/ingest/status/" + id)).GET().build();
+                JsonNode status = objectMapper.readTree(send(request));
+                String state = status.path("status").asText();
+                if ("COMPLETED".equals(state)) {
+                    rows += status.path("totalRecords").asLong();
+                    break;
+                }
+                if ("FAILED".equals(state) || "CANCELLED".equals(state)) {
+                    throw new IllegalStateException("Job " + id + " " + state + ": " + status.path("message").asText());
+                }
+                TimeUnit.MILLISECONDS.sleep(POLL_MILLIS);
+            }
+        }
+        return rows;
+    }
+
+    private String send(HttpRequest request) throws Exception {
+        return body(request, http.send(request, HttpResponse.BodyHandlers.ofString()));
+    }
+
+    private CompletableFuture<String> sendAsync(HttpRequest request) {
+        return http.sendAsync(request, HttpResponse.BodyHandlers.ofString()).thenApply(response -> body(request, response));
+    }
+
+    private static String body(HttpRequest request, HttpResponse<String> response) {
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException(request.uri() + " returned " + response.statusCode() + ": " + response.body());
+        }
+        return response.body();
+    }
+
+    private String ingestionId(String body) throws IOException {
+        return objectMapper.readTree(body).path("ingestionId").asText();
+    }
+
+    // Worst p99 among the run's jobs; each job writes its own table, so its timer is its own
+    private double p99Millis(String direction, List<String> tables) {
+        double worst = Double.NaN;
+        for (String table : tables) {
+            Timer timer = registry.find("ingestion.batch.latency").tags("direction", direction, "table", table).timer();
+            if (timer == null) {
+                continue;
+            }
+            for (ValueAtPercentile percentile : timer.takeSnapshot().percentileValues()) {
+                if (percentile.percentile() == 0.99) {
+                    double millis = percentile.value(TimeUnit.MILLISECONDS);
+                    worst = Double.isNaN(worst) ? millis : Math.max(worst, millis);
+                }
+            }
+        }
+        return worst;
+    }
+
+    private static int[] intList(String value) {
+        String[] parts = value.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+
+    // Wall clock, heap and GC for one run. Heap is the sum of the heap pools' peaks since the start,
+    // which bounds the peak used heap from above.
+    private static final class Run {
+        final String direction;
+        final int rowsPerJob;
+        final int concurrency;
+        long bytes;
+        long rows;
+        double p99Millis;
+        private long startNanos;
+        private long elapsedNanos;
+        private long gcCount;
+        private long gcMillis;
+        private long peakHeapBytes;
+
+        Run(String direction, int rowsPerJob, int concurrency, long bytes) {
+            this.direction = direction;
+            this.rowsPerJob = rowsPerJob;
+            this.concurrency = concurrency;
+            this.bytes = bytes;
+        }
+
+        void start() {
+            System.gc();
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    pool.resetPeakUsage();
+                }
+            }
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                gcCount -= gc.getCollectionCount();
+                gcMillis -= gc.getCollectionTime();
+            }
+            startNanos = System.nanoTime();
+        }
+
+        void stop() {
+            elapsedNanos = System.nanoTime() - startNanos;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                gcCount += gc.getCollectionCount();
+                gcMillis += gc.getCollectionTime();
+            }
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    peakHeapBytes += pool.getPeakUsage().getUsed();
+                }
+            }
+        }
+
+        void addRows(long rows) {
+            this.rows += rows;
+        }
+
+        void print() {
+            double seconds = elapsedNanos / 1e9;
+            System.out.printf("%-6s %,10d %4d %,12.0f %8.1f %9s %,10.0f %5d %,8d%n",
+                    direction, rowsPerJob, concurrency, rows / seconds, bytes / seconds / (1 << 20),
+                    Double.isNaN(p99Millis) ? "-" : String.format("%.2f", p99Millis),
+                    peakHeapBytes / (double) (1 << 20), gcCount, gcMillis);
+        }
+    }
+}
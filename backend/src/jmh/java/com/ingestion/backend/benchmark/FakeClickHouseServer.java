@@ -0,0 +1,265 @@
+package com.ingestion.backend.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Just enough of the ClickHouse HTTP interface to push the ingestion paths without a server:
+// INSERT ... FORMAT bodies are read and counted but not stored, SELECT ... FORMAT CSVWithNames is
+// answered with price-paid rows at a configurable rate, and DDL, EXISTS and KILL succeed with an
+// empty body. The two queries the JDBC driver sends when it connects are answered as well; the
+// driver has to be told not to compress, with "?compress=0" after the database name, because
+// responses here are never compressed. Every request can be held back by a fixed latency.
+public class FakeClickHouseServer implements AutoCloseable {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private volatile long latencyMillis;
+    private volatile long selectBytesPerSecond;
+    private volatile int selectRows = 100_000;
+
+    // Generated exports by row count, so repeated runs don't pay for the fixture again
+    private final Map<Integer, byte[]> selectBodies = new ConcurrentHashMap<>();
+
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong rowsInserted = new AtomicLong();
+    private final AtomicLong rowsSelected = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+
+    public FakeClickHouseServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        AtomicLong threads = new AtomicLong();
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "fake-clickhouse-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Added to every request before its response starts
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    // Upper bound on how fast SELECT results are written; 0 for as fast as the socket takes them
+    public void setSelectBytesPerSecond(long selectBytesPerSecond) {
+        this.selectBytesPerSecond = selectBytesPerSecond;
+    }
+
+    // Data rows returned by every SELECT
+    public void setSelectRows(int selectRows) {
+        this.selectRows = selectRows;
+    }
+
+    // Build the SELECT result ahead of a timed run
+    public void prepareSelect() throws IOException {
+        selectBody(selectRows);
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    public long getRowsInserted() {
+        return rowsInserted.get();
+    }
+
+    public long getRowsSelected() {
+        return rowsSelected.get();
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try (exchange) {
+            Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+            pause(latencyMillis);
+
+            String insert = params.get("query");
+            if (insert != null && insert.trim().toUpperCase(Locale.ROOT).startsWith("INSERT")) {
+                handleInsert(exchange, insert);
+                return;
+            }
+
+            String query = readQuery(exchange.getRequestBody()).trim();
+            String upper = query.toUpperCase(Locale.ROOT);
+            if (query.startsWith("select currentDatabase()")) {
+                respond(exchange, connectInfo(), "{}");
+            } else if (query.startsWith("select timezone(), version()")) {
+                respond(exchange, "timezone()\tversion()\nString\tString\nUTC\t23.8.1.1\n"
+                        .getBytes(StandardCharsets.UTF_8), "{}");
+            } else if (upper.startsWith("SELECT") && upper.contains(" FORMAT CSV")) {
+                handleSelect(exchange);
+            } else {
+                // CREATE, DROP, EXISTS, KILL and the driver's pings: nothing to return
+                respond(exchange, new byte[0], "{}");
+            }
+        } catch (InterruptedIOException e) {
+            // The client gave up on the request, e.g. a cancelled job
+        }
+    }
+
+    // Count rows by newline; the benchmark data has none inside quoted fields
+    private void handleInsert(HttpExchange exchange, String insert) throws IOException {
+        String format = insert.substring(insert.toUpperCase(Locale.ROOT).lastIndexOf("FORMAT") + 6).trim();
+        long newlines = 0;
+        long bytes = 0;
+        byte[] buffer = new byte[CHUNK_SIZE];
+        try (InputStream in = exchange.getRequestBody()) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bytes += read;
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        newlines++;
+                    }
+                }
+            }
+        }
+        long rows = 0;
+        if (format.startsWith("CSV") || format.startsWith("TSV") || format.startsWith("TabSeparated")) {
+            rows = format.contains("WithNames") ? Math.max(0, newlines - 1) : newlines;
+        }
+        bytesReceived.addAndGet(bytes);
+        rowsInserted.addAndGet(rows);
+        respond(exchange, new byte[0], "{\"written_rows\":\"" + rows + "\",\"written_bytes\":\"" + bytes + "\"}");
+    }
+
+    private void handleSelect(HttpExchange exchange) throws IOException {
+        int rows = selectRows;
+        byte[] body = selectBody(rows);
+        exchange.getResponseHeaders().set("X-ClickHouse-Summary",
+                "{\"read_rows\":\"" + rows + "\",\"result_rows\":\"" + rows + "\"}");
+        exchange.sendResponseHeaders(200, body.length);
+        long rate = selectBytesPerSecond;
+        long start = System.nanoTime();
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (int offset = 0; offset < body.length; offset += CHUNK_SIZE) {
+                int length = Math.min(CHUNK_SIZE, body.length - offset);
+                out.write(body, offset, length);
+                bytesSent.addAndGet(length);
+                if (rate > 0) {
+                    // Sleep off whatever was written ahead of the configured rate
+                    long dueNanos = (offset + length) * 1_000_000_000L / rate;
+                    pause((dueNanos - (System.nanoTime() - start)) / 1_000_000);
+                }
+            }
+        }
+        rowsSelected.addAndGet(rows);
+    }
+
+    private byte[] selectBody(int rows) throws IOException {
+        byte[] body = selectBodies.get(rows);
+        if (body == null) {
+            body = UkPricePaidFixtures.csv(rows);
+            selectBodies.put(rows, body);
+        }
+        return body;
+    }
+
+    private void respond(HttpExchange exchange, byte[] body, String summary) throws IOException {
+        exchange.getResponseHeaders().set("X-ClickHouse-Summary", summary);
+        exchange.sendResponseHeaders(200, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+            bytesSent.addAndGet(body.length);
+        }
+    }
+
+    // The driver's "select currentDatabase(), currentUser(), timezone(), version()" in
+    // RowBinaryWithNamesAndTypes: column count, names, types, then the one row
+    private static byte[] connectInfo() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(4);
+        for (String name : new String[]{"db", "user", "tz", "ver"}) {
+            writeString(out, name);
+        }
+        for (int i = 0; i < 4; i++) {
+            writeString(out, "String");
+        }
+        for (String value : new String[]{"default", "default", "UTC", "23.8.1.1"}) {
+            writeString(out, value);
+        }
+        return out.toByteArray();
+    }
+
+    // Short strings only, so the length always fits the first varint byte
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.write(bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static String readQuery(InputStream in) throws IOException {
+        try (in) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static void pause(long millis) throws InterruptedIOException {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while holding back a response");
+        }
+    }
+}
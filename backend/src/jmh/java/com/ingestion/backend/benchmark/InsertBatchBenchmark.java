@@ -0,0 +1,103 @@
+package com.ingestion.backend.benchmark;
+
+import com.ingestion.backend.util.ParallelCsvParser;
+import com.ingestion.backend.util.StreamingCsvParser;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+// Building the row batches the insert stage consumes: the original readLine + split loop cut
+// into 1000-row batches, the sequential parser used for upload streams, and the chunked parser
+// over a memory-mapped file. Binding the batches into the driver's INSERT needs a live server;
+// InsertEngineComparison covers the whole insert.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class InsertBatchBenchmark {
+
+    private static final int LEGACY_BATCH_ROWS = 1000;
+
+    @Param({"10000", "200000", "1000000"})
+    public int rows;
+
+    // Pool size for the chunked parser
+    @Param({"1", "4"})
+    public int threads;
+
+    private byte[] input;
+    private Path file;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() throws IOException {
+        input = UkPricePaidFixtures.csv(rows);
+        file = Files.createTempFile("insert_batch_", ".csv");
+        Files.write(file, input);
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        pool.shutdown();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void legacySplitBatches(Blackhole blackhole) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(input), StandardCharsets.UTF_8))) {
+            reader.readLine();
+            List<String[]> batch = new ArrayList<>(LEGACY_BATCH_ROWS);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                batch.add(line.split(","));
+                if (batch.size() == LEGACY_BATCH_ROWS) {
+                    blackhole.consume(batch);
+                    batch = new ArrayList<>(LEGACY_BATCH_ROWS);
+                }
+            }
+            blackhole.consume(batch);
+        }
+    }
+
+    @Benchmark
+    public long streamingParser(Blackhole blackhole) throws Exception {
+        StreamingCsvParser parser = new StreamingCsvParser(new ByteArrayInputStream(input), ",");
+        return parser.parse(blackhole::consume);
+    }
+
+    @Benchmark
+    public long chunkedParser(Blackhole blackhole) throws Exception {
+        // Small chunks so even the smallest fixture is split across the pool
+        ParallelCsvParser parser = new ParallelCsvParser(file, ",", 1 << 20,
+                ParallelCsvParser.DEFAULT_BATCH_ROWS, pool);
+        return parser.parse(blackhole::consume);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(InsertBatchBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,58 @@
+package com.ingestion.backend.benchmark;
+
+import com.ingestion.backend.BackendApplication;
+import com.ingestion.backend.model.IngestionRequest;
+import com.ingestion.backend.model.IngestionResult;
+import com.ingestion.backend.service.ClickHouseService;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayInputStream;
+
+// Loads the same UK price-paid shaped file through the BATCH and STREAM insert engines against a
+// live server and prints rows/s for each. Not a JMH benchmark: a single insert is seconds long
+// and dominated by the server, so wall-clock per run is what matters. The service comes from an
+// application context without the web server, since it needs its scheduler and job registry.
+//
+// Usage: -Dclickhouse.host=localhost -Dclickhouse.port=8123 -Dclickhouse.database=default
+//        -Dclickhouse.user=default -Dclickhouse.password= -Drows=1000000 [-Dfixture.file=...]
+public class InsertEngineComparison {
+
+    public static void main(String[] args) throws Exception {
+        int rows = Integer.getInteger("rows", 1_000_000);
+        byte[] csv = UkPricePaidFixtures.csv(rows);
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(BackendApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args)) {
+            ClickHouseService service = context.getBean(ClickHouseService.class);
+            for (String engine : new String[]{"BATCH", "STREAM"}) {
+                compare(service, engine, csv);
+            }
+        }
+    }
+
+    private static void compare(ClickHouseService service, String engine, byte[] csv) throws InterruptedException {
+        IngestionRequest request = new IngestionRequest();
+        request.setHost(System.getProperty("clickhouse.host", "localhost"));
+        request.setPort(Integer.getInteger("clickhouse.port", 8123));
+        request.setDatabase(System.getProperty("clickhouse.database", "default"));
+        request.setUsername(System.getProperty("clickhouse.user", "default"));
+        request.setPassword(System.getProperty("clickhouse.password", ""));
+        request.setDelimiter(",");
+        request.setTableName("insert_engine_" + engine.toLowerCase() + "_" + System.currentTimeMillis());
+        request.setInsertEngine(engine);
+
+        // Runs on this thread and returns once the insert is over
+        IngestionResult result = service.ingestFlatFileStream(new ByteArrayInputStream(csv), request);
+
+        double seconds = (result.getEndTime() - result.getStartTime()) / 1000.0;
+        System.out.printf("%-6s %-9s %,d rows in %.2fs (%,.0f rows/s, %.1f MB/s) into %s%n",
+                engine, result.getStatus(), result.getTotalRecords(), seconds,
+                result.getTotalRecords() / seconds, csv.length / seconds / (1 << 20), request.getTableName());
+        if ("FAILED".equals(result.getStatus())) {
+            System.out.println("  " + result.getMessage());
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.ingestion.backend.benchmark;
+
+import com.ingestion.backend.util.CsvTokenizer;
+import com.ingestion.backend.util.FieldParser;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// The previewFile row loop: the original readLine + split with Long/Double parse-and-catch
+// per value, against CsvTokenizer with FieldParser classifying the bytes in place. Most price-paid
+// columns are text, so the old loop throws and catches two exceptions for nearly every value.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class PreviewConversionBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    private byte[] input;
+
+    @Setup
+    public void setUp() throws IOException {
+        input = UkPricePaidFixtures.csv(rows);
+    }
+
+    @Benchmark
+    public void legacySplitAndCatch(Blackhole blackhole) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(input), StandardCharsets.UTF_8))) {
+            String[] headers = reader.readLine().split(",", -1);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] values = line.split(",", -1);
+                Map<String, Object> row = new HashMap<>();
+                for (int i = 0; i < Math.min(headers.length, values.length); i++) {
+                    String value = values[i];
+                    try {
+                        row.put(headers[i], Long.parseLong(value));
+                    } catch (NumberFormatException e1) {
+                        try {
+                            row.put(headers[i], Double.parseDouble(value));
+                        } catch (NumberFormatException e2) {
+                            row.put(headers[i], value);
+                        }
+                    }
+                }
+                blackhole.consume(row);
+            }
+        }
+    }
+
+    @Benchmark
+    public void tokenizerFieldParser(Blackhole blackhole) throws IOException {
+        CsvTokenizer tokenizer = CsvTokenizer.of(new ByteArrayInputStream(input), ",");
+        tokenizer.nextRecord();
+        String[] headers = tokenizer.toArray();
+        while (tokenizer.nextRecord()) {
+            Map<String, Object> row = new HashMap<>();
+            byte[] buffer = tokenizer.buffer();
+            for (int i = 0; i < Math.min(headers.length, tokenizer.fieldCount()); i++) {
+                row.put(headers[i], FieldParser.parse(buffer, tokenizer.fieldOffset(i), tokenizer.fieldLength(i)));
+            }
+            blackhole.consume(row);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(PreviewConversionBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,83 @@
+package com.ingestion.backend.benchmark;
+
+import com.ingestion.backend.model.TableSchema;
+import com.ingestion.backend.util.SchemaInferrer;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Column type inference over the same sample: the original getColumnType, two regex matches per
+// value with the last row winning, against SchemaInferrer, which widens per-column statistics
+// from the raw bytes and also tracks nullability, decimal scale, dates and cardinality.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class TypeInferenceBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    private byte[] input;
+
+    @Setup
+    public void setUp() throws IOException {
+        input = UkPricePaidFixtures.csv(rows);
+    }
+
+    @Benchmark
+    public Map<String, String> legacyGetColumnType() throws IOException {
+        Map<String, String> columnTypes = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(input), StandardCharsets.UTF_8))) {
+            String[] headers = reader.readLine().split(",");
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] values = line.split(",");
+                for (int i = 0; i < Math.min(headers.length, values.length); i++) {
+                    columnTypes.put(headers[i], getColumnType(values[i]));
+                }
+            }
+        }
+        return columnTypes;
+    }
+
+    @Benchmark
+    public void schemaInferrer(Blackhole blackhole) throws IOException {
+        TableSchema schema = SchemaInferrer.inferFromPrefix(input, input.length, true, ",", rows, "uk_price_paid");
+        blackhole.consume(schema);
+    }
+
+    private static String getColumnType(String value) {
+        if (value.matches("-?\\d+(\\.\\d+)?")) {
+            return "FLOAT";
+        } else if (value.matches("-?\\d+")) {
+            return "INT32";
+        } else {
+            return "String";
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(TypeInferenceBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
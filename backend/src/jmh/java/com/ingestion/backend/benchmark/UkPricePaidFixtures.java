@@ -0,0 +1,93 @@
+package com.ingestion.backend.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+
+// Deterministic rows shaped like the uk_price_paid example dataset. Set -Dfixture.file
+// to benchmark against a real export instead of generated data.
+public final class UkPricePaidFixtures {
+
+    public static final String[] HEADER = {
+            "price", "date", "postcode1", "postcode2", "type", "is_new", "duration", "addr1", "addr2",
+            "street", "locality", "town", "district", "county"
+    };
+
+    private static final String[] TYPES = {"terraced", "semi-detached", "detached", "flat", "other"};
+    private static final String[] DURATIONS = {"freehold", "leasehold", "unknown"};
+    private static final String[] TOWNS = {
+            "LONDON", "MANCHESTER", "BRISTOL", "BIRMINGHAM", "LEEDS", "NOTTINGHAM", "SHEFFIELD", "LIVERPOOL",
+            "READING", "OXFORD", "CAMBRIDGE", "NORWICH", "EXETER", "YORK", "BATH", "LEICESTER"
+    };
+    private static final String[] COUNTIES = {
+            "GREATER LONDON", "GREATER MANCHESTER", "CITY OF BRISTOL", "WEST MIDLANDS", "WEST YORKSHIRE",
+            "NOTTINGHAMSHIRE", "SOUTH YORKSHIRE", "MERSEYSIDE", "READING", "OXFORDSHIRE", "CAMBRIDGESHIRE",
+            "NORFOLK", "DEVON", "YORK", "BATH AND NORTH EAST SOMERSET", "LEICESTER"
+    };
+    private static final String[] STREETS = {
+            "HIGH STREET", "STATION ROAD", "CHURCH LANE", "MILL LANE", "VICTORIA ROAD", "GREEN LANE",
+            "MANOR ROAD", "PARK AVENUE", "THE AVENUE", "KING'S ROAD", "QUEENS ROAD", "NEW STREET"
+    };
+
+    private UkPricePaidFixtures() {
+    }
+
+    // CSV with a header row and the given number of data rows
+    public static byte[] csv(int rows) throws IOException {
+        String fixtureFile = System.getProperty("fixture.file");
+        if (fixtureFile != null) {
+            return Files.readAllBytes(Paths.get(fixtureFile));
+        }
+
+        Random random = new Random(42);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(rows * 120);
+        out.write((String.join(",", HEADER) + "\n").getBytes(StandardCharsets.UTF_8));
+        for (String[] row : rows(rows, random)) {
+            StringBuilder line = new StringBuilder(128);
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0) line.append(',');
+                String value = row[i];
+                if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0) {
+                    line.append('"').append(value.replace("\"", "\"\"")).append('"');
+                } else {
+                    line.append(value);
+                }
+            }
+            line.append('\n');
+            out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return out.toByteArray();
+    }
+
+    public static String[][] rows(int count) {
+        return rows(count, new Random(42));
+    }
+
+    private static String[][] rows(int count, Random random) {
+        String[][] rows = new String[count][];
+        for (int r = 0; r < count; r++) {
+            int town = random.nextInt(TOWNS.length);
+            boolean flat = random.nextInt(5) == 0;
+            rows[r] = new String[] {
+                    Integer.toString(50_000 + random.nextInt(950_000)),
+                    String.format("%04d-%02d-%02d", 1995 + random.nextInt(28), 1 + random.nextInt(12), 1 + random.nextInt(28)),
+                    (char) ('A' + random.nextInt(26)) + "" + (char) ('A' + random.nextInt(26)) + (1 + random.nextInt(20)),
+                    (1 + random.nextInt(9)) + "" + (char) ('A' + random.nextInt(26)) + (char) ('A' + random.nextInt(26)),
+                    TYPES[random.nextInt(TYPES.length)],
+                    random.nextInt(10) == 0 ? "1" : "0",
+                    DURATIONS[random.nextInt(DURATIONS.length)],
+                    Integer.toString(1 + random.nextInt(250)),
+                    flat ? "FLAT " + (1 + random.nextInt(30)) + ", " + (char) ('A' + random.nextInt(6)) : "",
+                    STREETS[random.nextInt(STREETS.length)],
+                    random.nextInt(3) == 0 ? "" : TOWNS[random.nextInt(TOWNS.length)],
+                    TOWNS[town],
+                    TOWNS[town],
+                    COUNTIES[town]
+            };
+        }
+        return rows;
+    }
+}
@@ -1,11 +1,10 @@
 package com.ingestion.backend.config;
 
+import com.ingestion.backend.service.ConnectionRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import javax.sql.DataSource;
-import ru.yandex.clickhouse.ClickHouseDataSource;
-import java.util.Properties;
 
 @Configuration
 public class ClickHouseConfig {
@@ -25,21 +24,14 @@ public class ClickHouseConfig {
     @Value("${clickhouse.password}")
     private String password;
 
-    @Bean
-    public DataSource clickHouseDataSource() {
+    // The registry owns the pool and closes it on shutdown
+    @Bean(destroyMethod = "")
+    public DataSource clickHouseDataSource(ConnectionRegistry connectionRegistry) {
         // Log values to confirm connection information
         System.out.println("Connecting to ClickHouse with user: " + username + " and database: " + database);
 
-        // Format the ClickHouse JDBC URL
-        String url = String.format("jdbc:clickhouse://%s:%d/%s?compress=0", host, port, database);
-
-        // Set properties for the connection
-        Properties properties = new Properties();
-        properties.setProperty("user", username);
-        properties.setProperty("password", password);
-        
-
-        // Return the ClickHouseDataSource bean
-        return new ClickHouseDataSource(url, properties);
+        // Pooled through the same registry as request-scoped connections, so it shows up in pool stats;
+        // responses stay uncompressed as they always have been for this DataSource
+        return connectionRegistry.getDataSource(host, port, database, username, password, "compress=0");
     }
 }
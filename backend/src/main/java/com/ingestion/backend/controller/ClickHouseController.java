@@ -1,17 +1,39 @@
 package com.ingestion.backend.controller;
 
 import com.ingestion.backend.service.ClickHouseService;
+import com.ingestion.backend.service.ConnectionRegistry;
+import com.ingestion.backend.service.JobRegistry;
+import com.ingestion.backend.service.MetadataCache;
+import com.ingestion.backend.service.ProgressBroadcaster;
+import com.ingestion.backend.service.TablePreview;
 import com.ingestion.backend.service.FlatFileService;
+import com.ingestion.backend.model.FilePreview;
 import com.ingestion.backend.model.IngestionRequest;
 import com.ingestion.backend.model.IngestionResult;
+import com.ingestion.backend.model.JobPage;
 import com.ingestion.backend.model.TableSchema;
+import com.ingestion.backend.util.CompressionCodec;
+import com.ingestion.backend.util.ExportQuery;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import org.apache.commons.fileupload2.core.FileItemInput;
+import org.apache.commons.fileupload2.core.FileItemInputIterator;
+import org.apache.commons.fileupload2.jakarta.servlet6.JakartaServletDiskFileUpload;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/data")
@@ -24,6 +46,21 @@ public class ClickHouseController {
     @Autowired
     private FlatFileService flatFileService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ConnectionRegistry connectionRegistry;
+
+    @Autowired
+    private MetadataCache metadataCache;
+
+    @Autowired
+    private ProgressBroadcaster progressBroadcaster;
+
+    @Autowired
+    private JobRegistry jobRegistry;
+
     // Other existing endpoints...
 
     // New endpoint to retrieve price data from uk_price_paid
@@ -53,6 +90,26 @@ public class ClickHouseController {
         }
     }
 
+    // Endpoint to inspect the pooled connections held for each ClickHouse target
+    @GetMapping("/connections/pools")
+    public ResponseEntity<?> getConnectionPools() {
+        try {
+            return ResponseEntity.ok(connectionRegistry.getStats());
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body("Error retrieving connection pools: " + e.getMessage());
+        }
+    }
+
+    // Endpoint to report hit/miss counts for cached table lists and schemas
+    @GetMapping("/metadata/cache")
+    public ResponseEntity<?> getMetadataCacheStats() {
+        try {
+            return ResponseEntity.ok(metadataCache.getStats());
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body("Error retrieving metadata cache stats: " + e.getMessage());
+        }
+    }
+
     // Endpoint to get list of tables from ClickHouse
     @PostMapping("/tables")
     public ResponseEntity<?> getTables(@RequestBody IngestionRequest request) {
@@ -88,6 +145,35 @@ public class ClickHouseController {
         }
     }
 
+    // Endpoint to stream one page of a table as {"columns", "rows", "nextCursor"}; pass nextCursor back
+    // for the following page. GET previews the default database, POST the target in the request body.
+    @RequestMapping(value = "/preview/{table}/rows", method = {RequestMethod.GET, RequestMethod.POST})
+    public ResponseEntity<StreamingResponseBody> streamTablePreview(@PathVariable String table,
+                                                                    @RequestBody(required = false) IngestionRequest request,
+                                                                    @RequestParam(defaultValue = "100") int limit,
+                                                                    @RequestParam(required = false) String cursor,
+                                                                    @RequestParam(required = false) Double sample) {
+        try {
+            TablePreview preview = clickHouseService.openTablePreview(table, request, limit, cursor, sample);
+            StreamingResponseBody body = out -> {
+                try (preview) {
+                    preview.writeTo(out);
+                }
+            };
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+        } catch (IllegalArgumentException e) {
+            String error = "Invalid preview request: " + e.getMessage();
+            return ResponseEntity.status(400)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(out -> out.write(error.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            String error = "Error previewing data: " + e.getMessage();
+            return ResponseEntity.status(500)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(out -> out.write(error.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
     // Endpoint to parse and preview flat file
     @PostMapping("/preview-file")
     public ResponseEntity<?> previewFileData(@RequestParam("file") MultipartFile file, 
@@ -101,17 +187,77 @@ public class ClickHouseController {
         }
     }
 
+    // Endpoint to preview rows and column statistics sampled from across a large file
+    @PostMapping("/preview-file/sample")
+    public ResponseEntity<?> sampleFileData(@RequestParam("file") MultipartFile file,
+                                            @RequestParam("delimiter") String delimiter,
+                                            @RequestParam(defaultValue = "100") int limit,
+                                            @RequestParam(defaultValue = "4096") int sampleRows) {
+        try {
+            FilePreview preview = flatFileService.sampleFile(file, delimiter, limit, sampleRows);
+            return ResponseEntity.ok(preview);
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body("Error sampling file: " + e.getMessage());
+        }
+    }
+
+    // Endpoint to preview the column types a file ingestion would create
+    @PostMapping("/preview-file/schema")
+    public ResponseEntity<?> inferFileSchema(@RequestParam("file") MultipartFile file,
+                                             @RequestParam("delimiter") String delimiter,
+                                             @RequestParam(defaultValue = "10000") int sampleRows,
+                                             @RequestParam(required = false) String tableName) {
+        try {
+            TableSchema schema = flatFileService.inferSchema(file, delimiter, sampleRows, tableName);
+            return ResponseEntity.ok(schema);
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body("Error inferring schema: " + e.getMessage());
+        }
+    }
+
     // Endpoint to handle ingestion requests from ClickHouse to FlatFile
     @PostMapping("/ingest/clickhouse-to-flatfile")
     public ResponseEntity<?> startIngestionClickHouseToFlatFile(@RequestBody IngestionRequest request) {
         try {
             IngestionResult result = clickHouseService.ingestClickHouseToFlatFile(request);
             return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body("Invalid ingestion request: " + e.getMessage());
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(503).body("Ingestion not queued: " + e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(500).body("Error during ingestion: " + e.getMessage());
         }
     }
 
+    // Endpoint to stream an export straight to the client as a chunked download
+    @PostMapping("/ingest/clickhouse-to-flatfile/download")
+    public ResponseEntity<StreamingResponseBody> downloadClickHouseToFlatFile(@RequestBody IngestionRequest request) {
+        try {
+            CompressionCodec codec = CompressionCodec.fromName(request.getCompression());
+            String extension = "\t".equals(request.getDelimiter()) ? ".tsv" : ".csv";
+            String fileName = request.getTableName() + extension + codec.getFileExtension();
+
+            // Compiled before the response starts, so a bad filter is still reported with a status
+            ExportQuery exportQuery = clickHouseService.exportQuery(request, ExportQuery.Placeholders.NAMED);
+            StreamingResponseBody body = out -> clickHouseService.streamClickHouseToFlatFile(request, exportQuery, out);
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString())
+                    .contentType(codec == CompressionCodec.NONE ? MediaType.parseMediaType("text/csv") : MediaType.APPLICATION_OCTET_STREAM)
+                    .body(body);
+        } catch (IllegalArgumentException e) {
+            String error = "Invalid download request: " + e.getMessage();
+            return ResponseEntity.status(400)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(out -> out.write(error.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            String error = "Error during download: " + e.getMessage();
+            return ResponseEntity.status(500)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(out -> out.write(error.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
     // Endpoint to handle ingestion from FlatFile to ClickHouse
     @PostMapping("/ingest/flatfile-to-clickhouse")
     public ResponseEntity<?> startIngestionFlatFileToClickHouse(
@@ -120,6 +266,40 @@ public class ClickHouseController {
         try {
             IngestionResult result = clickHouseService.ingestFlatFileToClickHouse(file, request);
             return ResponseEntity.ok(result);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(503).body("Ingestion not queued: " + e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body("Error during ingestion: " + e.getMessage());
+        }
+    }
+
+    // Single-pass variant of the above: the upload is parsed off the wire and inserted while it
+    // arrives, with no temp file. The "request" part must come before the "file" part, and the
+    // call returns once the whole upload has been ingested.
+    @PostMapping(value = "/ingest/flatfile-to-clickhouse/stream", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> streamIngestionFlatFileToClickHouse(HttpServletRequest servletRequest) {
+        try {
+            FileItemInputIterator parts = new JakartaServletDiskFileUpload().getItemIterator(servletRequest);
+            IngestionRequest request = null;
+            while (parts.hasNext()) {
+                FileItemInput part = parts.next();
+                if ("request".equals(part.getFieldName())) {
+                    try (InputStream in = part.getInputStream()) {
+                        request = objectMapper.readValue(in, IngestionRequest.class);
+                    }
+                } else if ("file".equals(part.getFieldName())) {
+                    if (request == null) {
+                        return ResponseEntity.badRequest().body("The request part must be sent before the file part");
+                    }
+                    try (InputStream in = part.getInputStream()) {
+                        IngestionResult result = clickHouseService.ingestFlatFileStream(in, request);
+                        return ResponseEntity.ok(result);
+                    }
+                }
+            }
+            return ResponseEntity.badRequest().body("Missing file part");
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(503).body("Ingestion not queued: " + e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(500).body("Error during ingestion: " + e.getMessage());
         }
@@ -135,4 +315,48 @@ public class ClickHouseController {
             return ResponseEntity.status(500).body("Error retrieving status: " + e.getMessage());
         }
     }
+
+    // Stop a queued or running job; it ends as CANCELLED once its queries are killed and its
+    // partial output removed
+    @PostMapping("/ingest/cancel/{ingestionId}")
+    public ResponseEntity<?> cancelIngestion(@PathVariable String ingestionId) {
+        try {
+            return ResponseEntity.ok(clickHouseService.cancelIngestion(ingestionId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(404).body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body("Error cancelling ingestion: " + e.getMessage());
+        }
+    }
+
+    // Job history, newest first; since and until bound the start time in epoch milliseconds
+    @GetMapping("/ingest/jobs")
+    public ResponseEntity<?> listIngestionJobs(@RequestParam(required = false) String status,
+                                               @RequestParam(required = false) String type,
+                                               @RequestParam(required = false) String table,
+                                               @RequestParam(required = false) Long since,
+                                               @RequestParam(required = false) Long until,
+                                               @RequestParam(defaultValue = "0") int offset,
+                                               @RequestParam(defaultValue = "50") int limit) {
+        try {
+            JobPage page = jobRegistry.query(status, type, table, since, until,
+                    Math.max(offset, 0), Math.min(Math.max(limit, 1), 1000));
+            return ResponseEntity.ok(page);
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body("Error listing jobs: " + e.getMessage());
+        }
+    }
+
+    // Server-sent events with the job's status and live progress, until it completes, fails or is cancelled.
+    // The body type has to be declared as the emitter for Spring to stream it, so errors carry no body.
+    @GetMapping(value = "/ingest/progress/{ingestionId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamIngestionProgress(@PathVariable String ingestionId) {
+        IngestionResult status;
+        try {
+            status = clickHouseService.getIngestionStatus(ingestionId);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(404).build();
+        }
+        return ResponseEntity.ok(progressBroadcaster.subscribe(status));
+    }
 }
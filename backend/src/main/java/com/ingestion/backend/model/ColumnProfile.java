@@ -0,0 +1,59 @@
+package com.ingestion.backend.model;
+
+// Statistics for one column of a sampled flat file
+public class ColumnProfile {
+    private String name;
+    private String type;  // Narrowest ClickHouse type consistent with the sample
+    private double nullRatio;  // Share of sampled values that were empty or \N
+    private Object min;  // Numeric when every value is a number, otherwise the lowest string
+    private Object max;
+    private long distinctEstimate;  // HyperLogLog estimate over the sample
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public double getNullRatio() {
+        return nullRatio;
+    }
+
+    public void setNullRatio(double nullRatio) {
+        this.nullRatio = nullRatio;
+    }
+
+    public Object getMin() {
+        return min;
+    }
+
+    public void setMin(Object min) {
+        this.min = min;
+    }
+
+    public Object getMax() {
+        return max;
+    }
+
+    public void setMax(Object max) {
+        this.max = max;
+    }
+
+    public long getDistinctEstimate() {
+        return distinctEstimate;
+    }
+
+    public void setDistinctEstimate(long distinctEstimate) {
+        this.distinctEstimate = distinctEstimate;
+    }
+}
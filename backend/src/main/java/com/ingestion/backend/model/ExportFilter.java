@@ -0,0 +1,71 @@
+package com.ingestion.backend.model;
+
+import java.util.List;
+
+// One row condition of an export; all of a request's filters must hold. Operands are plain
+// strings and are bound as parameters of the column's type, never spliced into the SQL.
+public class ExportFilter {
+    private String column;       // Column to test, optionally qualified with its table name
+    private String operator;     // =, !=, <, <=, >, >=, BETWEEN, IN, NOT IN, IS NULL, IS NOT NULL or LAST
+    private String value;        // Operand of a comparison; for LAST a window such as "7 DAY"
+    private List<String> values; // Operands of IN and NOT IN
+    private String from;         // Inclusive lower bound of BETWEEN; leave out for an open range
+    private String to;           // Inclusive upper bound of BETWEEN; leave out for an open range
+
+    public ExportFilter() {
+    }
+
+    public ExportFilter(String column, String operator, String value) {
+        this.column = column;
+        this.operator = operator;
+        this.value = value;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public void setColumn(String column) {
+        this.column = column;
+    }
+
+    public String getOperator() {
+        return operator;
+    }
+
+    public void setOperator(String operator) {
+        this.operator = operator;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+    }
+
+    public List<String> getValues() {
+        return values;
+    }
+
+    public void setValues(List<String> values) {
+        this.values = values;
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    public void setFrom(String from) {
+        this.from = from;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public void setTo(String to) {
+        this.to = to;
+    }
+}
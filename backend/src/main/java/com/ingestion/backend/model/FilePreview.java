@@ -0,0 +1,62 @@
+package com.ingestion.backend.model;
+
+import java.util.List;
+import java.util.Map;
+
+// Representative rows and per-column statistics from a sample of an uploaded file
+public class FilePreview {
+    private long fileSize;  // Bytes sampled from; the decompressed head for compressed uploads
+    private boolean compressed;
+    private int sampledRows;
+    private long estimatedRows;  // Total data rows, extrapolated from the sampled record sizes
+    private List<Map<String, Object>> rows;
+    private List<ColumnProfile> columns;
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    public void setCompressed(boolean compressed) {
+        this.compressed = compressed;
+    }
+
+    public int getSampledRows() {
+        return sampledRows;
+    }
+
+    public void setSampledRows(int sampledRows) {
+        this.sampledRows = sampledRows;
+    }
+
+    public long getEstimatedRows() {
+        return estimatedRows;
+    }
+
+    public void setEstimatedRows(long estimatedRows) {
+        this.estimatedRows = estimatedRows;
+    }
+
+    public List<Map<String, Object>> getRows() {
+        return rows;
+    }
+
+    public void setRows(List<Map<String, Object>> rows) {
+        this.rows = rows;
+    }
+
+    public List<ColumnProfile> getColumns() {
+        return columns;
+    }
+
+    public void setColumns(List<ColumnProfile> columns) {
+        this.columns = columns;
+    }
+}
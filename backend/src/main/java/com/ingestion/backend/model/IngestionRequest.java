@@ -18,6 +18,22 @@ public class IngestionRequest {
     private String jwtToken;             // JWT token for authentication
     private List<String> selectedColumns; // Columns to include in the ingestion
     private Map<String, String> joinConfig; // For bonus feature - JOIN configuration
+    private String exportMode;           // "JDBC" (default) or "NATIVE" for raw FORMAT streaming
+    private int parallelism;             // Number of concurrent export shards (0 or 1 = single query)
+    private String shardStrategy;        // "RANGE" (default; leading key ranges, else HASH), "HASH" or "PARTITION"
+    private boolean keepShards;          // Leave numbered shard files instead of stitching into filePath
+    private String compression;          // "NONE" (default), "GZIP", "ZSTD", "LZ4" or "BZIP2" for exported files
+    private String targetFormat;         // "CSV" (default), "PARQUET" or "ARROW" for exported files
+    private int rowGroupSize;            // Rows per Parquet row group / Arrow record batch
+    private List<String> dictionaryColumns; // String columns to dictionary-encode (auto-detected when null)
+    private String insertEngine;         // "BATCH" (default) for JDBC batches or "STREAM" for INSERT ... FORMAT over HTTP
+    private int insertBlockRows;         // Rows per block formed by the server for streamed inserts
+    private long insertBlockBytes;       // Minimum bytes per block for streamed inserts
+    private int insertConnections;       // Concurrent insert workers, each with its own connection
+    private int inferenceSampleRows;     // Rows sampled to infer column types for file ingestion
+    private Map<String, String> columnTypes; // Column types overriding the inferred ones, by column name
+    private int priority;                // Job queue priority; higher runs first (default 0)
+    private List<ExportFilter> filters;  // Row conditions for exports, all of which must hold
     
     // Constructor
     public IngestionRequest() {
@@ -137,4 +153,132 @@ public class IngestionRequest {
     public void setJoinConfig(Map<String, String> joinConfig) {
         this.joinConfig = joinConfig;
     }
+
+    public String getExportMode() {
+        return exportMode;
+    }
+
+    public void setExportMode(String exportMode) {
+        this.exportMode = exportMode;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public String getShardStrategy() {
+        return shardStrategy;
+    }
+
+    public void setShardStrategy(String shardStrategy) {
+        this.shardStrategy = shardStrategy;
+    }
+
+    public boolean isKeepShards() {
+        return keepShards;
+    }
+
+    public void setKeepShards(boolean keepShards) {
+        this.keepShards = keepShards;
+    }
+
+    public String getCompression() {
+        return compression;
+    }
+
+    public void setCompression(String compression) {
+        this.compression = compression;
+    }
+
+    public String getTargetFormat() {
+        return targetFormat;
+    }
+
+    public void setTargetFormat(String targetFormat) {
+        this.targetFormat = targetFormat;
+    }
+
+    public int getRowGroupSize() {
+        return rowGroupSize;
+    }
+
+    public void setRowGroupSize(int rowGroupSize) {
+        this.rowGroupSize = rowGroupSize;
+    }
+
+    public List<String> getDictionaryColumns() {
+        return dictionaryColumns;
+    }
+
+    public void setDictionaryColumns(List<String> dictionaryColumns) {
+        this.dictionaryColumns = dictionaryColumns;
+    }
+
+    public String getInsertEngine() {
+        return insertEngine;
+    }
+
+    public void setInsertEngine(String insertEngine) {
+        this.insertEngine = insertEngine;
+    }
+
+    public int getInsertBlockRows() {
+        return insertBlockRows;
+    }
+
+    public void setInsertBlockRows(int insertBlockRows) {
+        this.insertBlockRows = insertBlockRows;
+    }
+
+    public long getInsertBlockBytes() {
+        return insertBlockBytes;
+    }
+
+    public void setInsertBlockBytes(long insertBlockBytes) {
+        this.insertBlockBytes = insertBlockBytes;
+    }
+
+    public int getInsertConnections() {
+        return insertConnections;
+    }
+
+    public void setInsertConnections(int insertConnections) {
+        this.insertConnections = insertConnections;
+    }
+
+    public int getInferenceSampleRows() {
+        return inferenceSampleRows;
+    }
+
+    public void setInferenceSampleRows(int inferenceSampleRows) {
+        this.inferenceSampleRows = inferenceSampleRows;
+    }
+
+    public Map<String, String> getColumnTypes() {
+        return columnTypes;
+    }
+
+    public void setColumnTypes(Map<String, String> columnTypes) {
+        this.columnTypes = columnTypes;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    public List<ExportFilter> getFilters() {
+        return filters;
+    }
+
+    public void setFilters(List<ExportFilter> filters) {
+        this.filters = filters;
+    }
 }
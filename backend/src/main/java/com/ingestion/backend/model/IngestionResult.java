@@ -1,13 +1,23 @@
 // IngestionResult.java
 package com.ingestion.backend.model;
 
+import java.util.List;
+
 public class IngestionResult {
     private String ingestionId;
-    private String status; // STARTED, IN_PROGRESS, COMPLETED, FAILED
-    private int totalRecords;
+    private String status; // QUEUED, STARTED, IN_PROGRESS, COMPLETED, FAILED, CANCELLED
+    private String type; // CLICKHOUSE_TO_FLATFILE or FLATFILE_TO_CLICKHOUSE
+    private String tableName; // ClickHouse table read or written
+    private long totalRecords; // -1 when the count of a finished export could not be determined
     private String message;
     private long startTime;
     private long endTime;
+    private List<ShardProgress> shards; // Per-shard progress for parallel exports
+    private List<StageMetrics> stages; // Per-stage counters for pipelined file ingestion
+    private int priority; // Scheduling priority the job was queued with
+    private int queueDepth; // Position in the job queue while QUEUED, 0 once running
+    private long queuedMillis; // Time spent waiting for a slot, live while QUEUED
+    private final JobProgress progress = new JobProgress(); // Live rows, bytes, rates and ETA
     
     public IngestionResult() {
     }
@@ -28,11 +38,27 @@ public class IngestionResult {
         this.status = status;
     }
     
-    public int getTotalRecords() {
+    public String getType() {
+        return type;
+    }
+    
+    public void setType(String type) {
+        this.type = type;
+    }
+    
+    public String getTableName() {
+        return tableName;
+    }
+    
+    public void setTableName(String tableName) {
+        this.tableName = tableName;
+    }
+    
+    public long getTotalRecords() {
         return totalRecords;
     }
     
-    public void setTotalRecords(int totalRecords) {
+    public void setTotalRecords(long totalRecords) {
         this.totalRecords = totalRecords;
     }
     
@@ -60,6 +86,14 @@ public class IngestionResult {
         this.endTime = endTime;
     }
     
+    public List<ShardProgress> getShards() {
+        return shards;
+    }
+    
+    public void setShards(List<ShardProgress> shards) {
+        this.shards = shards;
+    }
+    
     // Convenience method to calculate duration
     public long getDurationMillis() {
         if (endTime > 0 && startTime > 0) {
@@ -67,4 +101,40 @@ public class IngestionResult {
         }
         return 0;
     }
-}
\ No newline at end of file
+    
+    public List<StageMetrics> getStages() {
+        return stages;
+    }
+    
+    public void setStages(List<StageMetrics> stages) {
+        this.stages = stages;
+    }
+    
+    public int getPriority() {
+        return priority;
+    }
+    
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+    
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+    
+    public void setQueueDepth(int queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+    
+    public long getQueuedMillis() {
+        return queuedMillis;
+    }
+    
+    public void setQueuedMillis(long queuedMillis) {
+        this.queuedMillis = queuedMillis;
+    }
+    
+    public JobProgress getProgress() {
+        return progress;
+    }
+}
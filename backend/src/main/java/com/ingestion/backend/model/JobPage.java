@@ -0,0 +1,43 @@
+package com.ingestion.backend.model;
+
+import java.util.List;
+
+// One page of the job history, newest first
+public class JobPage {
+    private List<IngestionResult> jobs;
+    private int total; // Jobs matching the filters across all pages
+    private int offset;
+    private int limit;
+
+    public List<IngestionResult> getJobs() {
+        return jobs;
+    }
+
+    public void setJobs(List<IngestionResult> jobs) {
+        this.jobs = jobs;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public void setOffset(int offset) {
+        this.offset = offset;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+}
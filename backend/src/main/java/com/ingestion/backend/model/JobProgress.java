@@ -0,0 +1,134 @@
+package com.ingestion.backend.model;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Live counters for one ingestion job. Workers bump striped adders, so updating them from many
+// threads per batch costs next to nothing; rates are worked out only when someone reads them.
+public class JobProgress {
+    // Rates are re-sampled at most this often and smoothed so a single slow batch doesn't jump
+    private static final long SAMPLE_MILLIS = 1000;
+    private static final double SMOOTHING = 0.5;
+
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private volatile String stage = "queued"; // queued, preparing, inferring schema, creating table, inserting, exporting, stitching, done
+    private volatile long totalBytes; // Input size when known, for the ETA
+    private volatile long startedAt;
+
+    private long sampledAt;
+    private boolean sampled;
+    private long rowsAtSample;
+    private long readAtSample;
+    private long writtenAtSample;
+    private double rowsPerSecond;
+    private double bytesReadPerSecond;
+    private double bytesWrittenPerSecond;
+
+    public void addRows(long count) {
+        rows.add(count);
+    }
+
+    public void addBytesRead(long count) {
+        bytesRead.add(count);
+    }
+
+    public void addBytesWritten(long count) {
+        bytesWritten.add(count);
+    }
+
+    // Entering a stage; the first one other than queued starts the clock for the rates
+    public void setStage(String stage) {
+        if (startedAt == 0) {
+            startedAt = System.currentTimeMillis();
+        }
+        this.stage = stage;
+    }
+
+    // The job is over; counts that are only known at the end (from the server summary) are topped up
+    public void finish(long totalRows) {
+        long missing = totalRows - rows.sum();
+        if (missing > 0) {
+            rows.add(missing);
+        }
+        stage = "done";
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    public long getRows() {
+        return rows.sum();
+    }
+
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    public double getRowsPerSecond() {
+        sample();
+        return rowsPerSecond;
+    }
+
+    public double getBytesReadPerSecond() {
+        sample();
+        return bytesReadPerSecond;
+    }
+
+    public double getBytesWrittenPerSecond() {
+        sample();
+        return bytesWrittenPerSecond;
+    }
+
+    // Seconds left at the current read rate; null until the input size and a rate are known
+    public Long getEtaSeconds() {
+        sample();
+        long total = totalBytes;
+        if (total <= 0 || bytesReadPerSecond <= 0 || "done".equals(stage)) {
+            return null;
+        }
+        return (long) Math.ceil(Math.max(0, total - bytesRead.sum()) / bytesReadPerSecond);
+    }
+
+    private synchronized void sample() {
+        long now = System.currentTimeMillis();
+        if (startedAt == 0 || "done".equals(stage)) {
+            return;
+        }
+        if (sampledAt == 0) {
+            sampledAt = startedAt;
+        }
+        long elapsed = now - sampledAt;
+        if (elapsed < SAMPLE_MILLIS) {
+            return;
+        }
+        long currentRows = rows.sum();
+        long currentRead = bytesRead.sum();
+        long currentWritten = bytesWritten.sum();
+        rowsPerSecond = smooth(rowsPerSecond, (currentRows - rowsAtSample) * 1000.0 / elapsed);
+        bytesReadPerSecond = smooth(bytesReadPerSecond, (currentRead - readAtSample) * 1000.0 / elapsed);
+        bytesWrittenPerSecond = smooth(bytesWrittenPerSecond, (currentWritten - writtenAtSample) * 1000.0 / elapsed);
+        sampled = true;
+        sampledAt = now;
+        rowsAtSample = currentRows;
+        readAtSample = currentRead;
+        writtenAtSample = currentWritten;
+    }
+
+    private double smooth(double previous, double current) {
+        return sampled ? SMOOTHING * current + (1 - SMOOTHING) * previous : current;
+    }
+}
@@ -0,0 +1,69 @@
+package com.ingestion.backend.model;
+
+// Progress of one shard of a parallel export
+public class ShardProgress {
+    private int shardIndex;
+    private volatile String status; // PENDING, IN_PROGRESS, COMPLETED, FAILED
+    private String predicate;
+    private String filePath;
+    private volatile long totalRecords;
+    private volatile long bytesWritten;
+    
+    public ShardProgress() {
+    }
+    
+    public ShardProgress(int shardIndex, String predicate, String filePath) {
+        this.shardIndex = shardIndex;
+        this.predicate = predicate;
+        this.filePath = filePath;
+        this.status = "PENDING";
+    }
+    
+    public int getShardIndex() {
+        return shardIndex;
+    }
+    
+    public void setShardIndex(int shardIndex) {
+        this.shardIndex = shardIndex;
+    }
+    
+    public String getStatus() {
+        return status;
+    }
+    
+    public void setStatus(String status) {
+        this.status = status;
+    }
+    
+    public String getPredicate() {
+        return predicate;
+    }
+    
+    public void setPredicate(String predicate) {
+        this.predicate = predicate;
+    }
+    
+    public String getFilePath() {
+        return filePath;
+    }
+    
+    public void setFilePath(String filePath) {
+        this.filePath = filePath;
+    }
+    
+    public long getTotalRecords() {
+        return totalRecords;
+    }
+    
+    public void setTotalRecords(long totalRecords) {
+        this.totalRecords = totalRecords;
+    }
+    
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+    
+    public void setBytesWritten(long bytesWritten) {
+        this.bytesWritten = bytesWritten;
+    }
+}
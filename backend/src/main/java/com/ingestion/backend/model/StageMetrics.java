@@ -0,0 +1,90 @@
+package com.ingestion.backend.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Live counters for one stage of the ingestion pipeline
+public class StageMetrics {
+    private final String stage;
+    private final int workers;
+    private final int queueCapacity;
+    private final long startTime;
+    private volatile long endTime;
+    private volatile int queueDepth;
+    private volatile int maxQueueDepth;
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong rows = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+
+    public StageMetrics(String stage, int workers, int queueCapacity) {
+        this.stage = stage;
+        this.workers = workers;
+        this.queueCapacity = queueCapacity;
+        this.startTime = System.currentTimeMillis();
+    }
+
+    // Count a batch that kept a worker busy for the given time
+    public void recordBatch(int batchRows, long nanos) {
+        batches.incrementAndGet();
+        rows.addAndGet(batchRows);
+        busyNanos.addAndGet(nanos);
+    }
+
+    // Depth of the queue feeding this stage, sampled whenever a batch moves through it
+    public void recordQueueDepth(int depth) {
+        queueDepth = depth;
+        if (depth > maxQueueDepth) {
+            maxQueueDepth = depth;
+        }
+    }
+
+    public void finish() {
+        queueDepth = 0;
+        endTime = System.currentTimeMillis();
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+
+    public long getRows() {
+        return rows.get();
+    }
+
+    public long getBusyMillis() {
+        return busyNanos.get() / 1_000_000;
+    }
+
+    public double getRowsPerSecond() {
+        long end = endTime > 0 ? endTime : System.currentTimeMillis();
+        long elapsed = Math.max(1, end - startTime);
+        return rows.get() * 1000.0 / elapsed;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getEndTime() {
+        return endTime;
+    }
+}
@@ -7,6 +7,11 @@ import java.util.Map;
 public class TableSchema {
     private String tableName;
     private List<ColumnDefinition> columns;
+    private int sampledRows; // Rows examined when the schema was inferred from a file
+    private String sortingKey; // ORDER BY expression of an existing MergeTree table, empty when unsorted
+    private String samplingKey; // SAMPLE BY expression, empty when the table can't be sampled
+    private String partitionKey; // PARTITION BY expression, empty when unpartitioned
+    private String primaryKey; // PRIMARY KEY expression, the sorting key unless declared separately
     
     public TableSchema() {
     }
@@ -31,6 +36,46 @@ public class TableSchema {
     public void setColumns(List<ColumnDefinition> columns) {
         this.columns = columns;
     }
+
+    public int getSampledRows() {
+        return sampledRows;
+    }
+
+    public void setSampledRows(int sampledRows) {
+        this.sampledRows = sampledRows;
+    }
+
+    public String getSortingKey() {
+        return sortingKey;
+    }
+
+    public void setSortingKey(String sortingKey) {
+        this.sortingKey = sortingKey;
+    }
+
+    public String getSamplingKey() {
+        return samplingKey;
+    }
+
+    public void setSamplingKey(String samplingKey) {
+        this.samplingKey = samplingKey;
+    }
+
+    public String getPartitionKey() {
+        return partitionKey;
+    }
+
+    public void setPartitionKey(String partitionKey) {
+        this.partitionKey = partitionKey;
+    }
+
+    public String getPrimaryKey() {
+        return primaryKey;
+    }
+
+    public void setPrimaryKey(String primaryKey) {
+        this.primaryKey = primaryKey;
+    }
     
     // Inner class for column definitions
     public static class ColumnDefinition {
@@ -2,18 +2,50 @@ package com.ingestion.backend.service;
 
 import com.ingestion.backend.model.IngestionRequest;
 import com.ingestion.backend.model.IngestionResult;
+import com.ingestion.backend.model.JobProgress;
 import com.ingestion.backend.model.TableSchema;
 import com.ingestion.backend.model.TableSchema.ColumnDefinition;
+import com.ingestion.backend.util.BatchParser;
+import com.ingestion.backend.util.ClickHouseHttpClient;
+import com.ingestion.backend.util.ColumnarRowCount;
+import com.ingestion.backend.util.CompressionCodec;
+import com.ingestion.backend.util.CsvEncoder;
+import com.ingestion.backend.util.ExportQuery;
+import com.ingestion.backend.util.ParallelCompressingOutputStream;
+import com.ingestion.backend.util.ParallelDecompressingInputStream;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ingestion.backend.util.ParallelCsvParser;
+import com.ingestion.backend.util.RecordCounter;
+import com.ingestion.backend.util.RowBatch;
+import com.ingestion.backend.util.SchemaInferrer;
+import com.ingestion.backend.util.StreamingCsvParser;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import ru.yandex.clickhouse.ClickHousePreparedStatement;
+import ru.yandex.clickhouse.ClickHouseStatement;
+import ru.yandex.clickhouse.settings.ClickHouseQueryParam;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.sql.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import javax.sql.DataSource;
@@ -25,7 +57,58 @@ import org.slf4j.LoggerFactory;
 public class ClickHouseService {
 
     private static final Logger logger = LoggerFactory.getLogger(ClickHouseService.class);
-    private final Map<String, IngestionResult> ingestionStatuses = new ConcurrentHashMap<>();
+    private static final int DEFAULT_ROW_GROUP_SIZE = 1_000_000;
+    private static final int DICTIONARY_SAMPLE_ROWS = 100_000;
+    private static final int DICTIONARY_MAX_DISTINCT = 10_000;
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    private static final int DEFAULT_INSERT_BLOCK_ROWS = 1_000_000;
+    private static final long DEFAULT_INSERT_BLOCK_BYTES = 256L << 20;
+    private static final int DEFAULT_INSERT_CONNECTIONS = 4;
+    private static final int STREAM_PREFIX_BYTES = 16 << 20;
+    private static final int ENCODE_BLOCK_ROWS = 8192;
+
+    @Value("${ingestion.export.max-shards:8}")
+    private int maxShards;
+
+    @Value("${ingestion.parse.threads:0}")
+    private int parseThreads;
+
+    @Value("${ingestion.parse.max-in-flight-mb:256}")
+    private long parseMaxInFlightMb;
+
+    // Parses uploads for every job; shared so concurrent jobs can't multiply the parsing threads
+    private ForkJoinPool parsePool;
+
+    @Autowired
+    private ConnectionRegistry connectionRegistry;
+
+    @Autowired
+    private MetadataCache metadataCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JobScheduler jobScheduler;
+
+    @Autowired
+    private JobRegistry jobRegistry;
+
+    @Autowired
+    private IngestionMetrics ingestionMetrics;
+
+    // Jobs that can still be cancelled, from submission until they finish
+    private final Map<String, JobControl> jobControls = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void start() {
+        parsePool = new ForkJoinPool(parseThreads > 0 ? parseThreads : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    public void stop() {
+        parsePool.shutdownNow();
+    }
 
     // Test connection to ClickHouse using the provided credentials
     public boolean testConnection(IngestionRequest request) {
@@ -39,6 +122,10 @@ public class ClickHouseService {
 
     // List all tables in the specified database
     public List<String> listTables(IngestionRequest request) throws SQLException {
+        return metadataCache.getTables(request, () -> loadTables(request));
+    }
+
+    private List<String> loadTables(IngestionRequest request) throws SQLException {
         List<String> tables = new ArrayList<>();
         
         try (Connection connection = getConnection(request);
@@ -54,6 +141,10 @@ public class ClickHouseService {
 
     // Get schema information for a specific table
     public TableSchema getTableSchema(String tableName, IngestionRequest request) throws SQLException {
+        return metadataCache.getSchema(request, tableName, () -> loadTableSchema(tableName, request));
+    }
+
+    private TableSchema loadTableSchema(String tableName, IngestionRequest request) throws SQLException {
         List<ColumnDefinition> columns = new ArrayList<>();
         
         try (Connection connection = getConnection(request);
@@ -67,9 +158,38 @@ public class ClickHouseService {
                     columns.add(new ColumnDefinition(columnName, columnType));
                 }
             }
+            
+            TableSchema schema = new TableSchema(tableName, columns);
+            loadTableKeys(connection, schema);
+            return schema;
+        }
+    }
+
+    // Sorting and sampling keys drive keyset pagination and SAMPLE in table previews; partition and
+    // primary keys decide which export filters go in PREWHERE. Left unset when system.tables can't
+    // be read, in which case previews fall back to offset paging and filters all go in WHERE.
+    private void loadTableKeys(Connection connection, TableSchema schema) {
+        String tableName = schema.getTableName();
+        int dot = tableName.indexOf('.');
+        String query = "SELECT sorting_key, sampling_key, partition_key, primary_key FROM system.tables WHERE database = "
+                + (dot > 0 ? "?" : "currentDatabase()") + " AND name = ?";
+        try (PreparedStatement stmt = connection.prepareStatement(query)) {
+            int index = 1;
+            if (dot > 0) {
+                stmt.setString(index++, tableName.substring(0, dot));
+            }
+            stmt.setString(index, dot > 0 ? tableName.substring(dot + 1) : tableName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    schema.setSortingKey(rs.getString("sorting_key"));
+                    schema.setSamplingKey(rs.getString("sampling_key"));
+                    schema.setPartitionKey(rs.getString("partition_key"));
+                    schema.setPrimaryKey(rs.getString("primary_key"));
+                }
+            }
+        } catch (SQLException e) {
+            logger.warn("Could not read sorting key for {}: {}", tableName, e.getMessage());
         }
-        
-        return new TableSchema(tableName, columns);
     }
 
     // Preview data from a table
@@ -105,17 +225,166 @@ public class ClickHouseService {
         return resultList;
     }
 
+    // Open one page of a table preview for streaming. Pages follow the table's ORDER BY key: the
+    // cursor carries the last row's key values (plus the remaining orderable columns, to break ties
+    // in a non-unique key) and the next page starts from them, so deep pages cost the same as the
+    // first. Rows that still tie on every cursor column are counted in the cursor and skipped
+    // rather than lost. Tables without a usable key page by offset. A null request previews the
+    // application's default target.
+    public TablePreview openTablePreview(String tableName, IngestionRequest request, int limit,
+                                         String cursor, Double sample) throws SQLException {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        TableSchema schema = getTableSchema(tableName, request);
+        if (schema.getColumns().isEmpty()) {
+            throw new IllegalArgumentException("Table not found: " + tableName);
+        }
+
+        List<String> selected = request != null ? request.getSelectedColumns() : null;
+        List<ColumnDefinition> columns = new ArrayList<>();
+        for (ColumnDefinition column : schema.getColumns()) {
+            if (selected == null || selected.isEmpty() || selected.contains(column.getName())) {
+                columns.add(column);
+            }
+        }
+        if (columns.isEmpty()) {
+            throw new IllegalArgumentException("None of the selected columns exist in " + tableName);
+        }
+
+        // Returned columns first, then any cursor columns not among them
+        List<ColumnDefinition> cursorColumns = keysetColumns(schema);
+        List<String> selectList = new ArrayList<>();
+        for (ColumnDefinition column : columns) {
+            selectList.add(column.getName());
+        }
+        int[] cursorIndexes = new int[cursorColumns.size()];
+        for (int i = 0; i < cursorColumns.size(); i++) {
+            String name = cursorColumns.get(i).getName();
+            int index = selectList.indexOf(name);
+            if (index < 0) {
+                selectList.add(name);
+                index = selectList.size() - 1;
+            }
+            cursorIndexes[i] = index + 1;
+        }
+
+        // Names are quoted in the SQL, since a column may be called anything
+        StringBuilder query = new StringBuilder("SELECT ")
+                .append(selectList.stream().map(ExportQuery::quoteIdentifier).collect(Collectors.joining(", ")))
+                .append(" FROM ").append(tableName);
+        if (sample != null) {
+            if (schema.getSamplingKey() == null || schema.getSamplingKey().isEmpty()) {
+                throw new IllegalArgumentException("Table " + tableName + " has no SAMPLE BY key");
+            }
+            if (sample <= 0) {
+                throw new IllegalArgumentException("sample must be a positive fraction or row count");
+            }
+            query.append(" SAMPLE ").append(sample <= 1 ? String.valueOf(sample) : String.valueOf(sample.longValue()));
+        }
+
+        Map<String, Object> position = TablePreview.decodeCursor(cursor, objectMapper);
+        List<String> after = TablePreview.cursorValues(position);
+        long offset = TablePreview.cursorOffset(position);
+        long tied = after != null ? TablePreview.cursorTied(position) : 0;
+        if (after != null) {
+            if (after.size() != cursorColumns.size()) {
+                throw new IllegalArgumentException("Cursor does not match the current table key");
+            }
+            List<String> names = new ArrayList<>();
+            List<String> bounds = new ArrayList<>();
+            for (ColumnDefinition column : cursorColumns) {
+                names.add(ExportQuery.quoteIdentifier(column.getName()));
+                bounds.add("CAST(? AS " + column.getType() + ")");
+            }
+            // Start at the cursor's values when rows there were already returned, then skip those
+            query.append(" WHERE (").append(String.join(", ", names)).append(tied > 0 ? ") >= (" : ") > (")
+                    .append(String.join(", ", bounds)).append(")");
+        }
+        if (!cursorColumns.isEmpty()) {
+            List<String> names = new ArrayList<>();
+            for (ColumnDefinition column : cursorColumns) {
+                names.add(ExportQuery.quoteIdentifier(column.getName()));
+            }
+            query.append(" ORDER BY ").append(String.join(", ", names));
+        }
+        query.append(" LIMIT ").append(limit);
+        if (cursorColumns.isEmpty() && offset > 0) {
+            query.append(" OFFSET ").append(offset);
+        } else if (tied > 0) {
+            query.append(" OFFSET ").append(tied);
+        }
+
+        Connection connection = getConnection(request);
+        try {
+            PreparedStatement stmt = connection.prepareStatement(query.toString());
+            if (after != null) {
+                for (int i = 0; i < after.size(); i++) {
+                    stmt.setString(i + 1, after.get(i));
+                }
+            }
+            ResultSet rs = stmt.executeQuery();
+            return new TablePreview(connection, stmt, rs, columns, cursorIndexes, limit, offset, after, tied, objectMapper);
+        } catch (SQLException | RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    // The leading plain columns of the sorting key, followed by every other orderable column as a
+    // tie-breaker. Empty when the key doesn't start with a plain column, since ordering by the
+    // tie-breakers alone would sort the whole table for every page.
+    private List<ColumnDefinition> keysetColumns(TableSchema schema) {
+        List<ColumnDefinition> keyset = new ArrayList<>();
+        if (schema.getSortingKey() == null || schema.getSortingKey().isBlank()) {
+            return keyset;
+        }
+        Map<String, ColumnDefinition> byName = new LinkedHashMap<>();
+        for (ColumnDefinition column : schema.getColumns()) {
+            byName.put(column.getName(), column);
+        }
+        for (String expression : schema.getSortingKey().split(",")) {
+            ColumnDefinition column = byName.get(expression.trim().replace("`", ""));
+            if (column == null || !isOrderable(column.getType())) {
+                break;
+            }
+            keyset.add(column);
+        }
+        if (keyset.isEmpty()) {
+            return keyset;
+        }
+        for (ColumnDefinition column : schema.getColumns()) {
+            if (!keyset.contains(column) && isOrderable(column.getType())) {
+                keyset.add(column);
+            }
+        }
+        return keyset;
+    }
+
+    // Scalar, non-Nullable types whose text form casts back to the same value
+    private static boolean isOrderable(String type) {
+        String base = type.startsWith("LowCardinality(") ? type.substring(15, type.length() - 1) : type;
+        return base.matches("U?Int\\d+|Float\\d+|Decimal.*|Date.*|String|FixedString.*|UUID|Enum.*|IPv[46]|Bool");
+    }
+
     // Ingest data from ClickHouse to a Flat File
     public IngestionResult ingestClickHouseToFlatFile(IngestionRequest request) {
+        if (request.getParallelism() < 0 || request.getParallelism() > maxShards) {
+            throw new IllegalArgumentException("parallelism must be between 0 and " + maxShards + " (0 or 1 runs a single query)");
+        }
+        if (isColumnarFormat(request.getTargetFormat())) {
+            columnarCompressionMethod(request.getCompression(), "PARQUET".equalsIgnoreCase(request.getTargetFormat()));
+        }
         String ingestionId = UUID.randomUUID().toString();
         IngestionResult result = new IngestionResult();
         result.setIngestionId(ingestionId);
+        result.setType("CLICKHOUSE_TO_FLATFILE");
+        result.setTableName(request.getTableName());
         result.setStatus("STARTED");
         result.setStartTime(System.currentTimeMillis());
-        ingestionStatuses.put(ingestionId, result);
         
-        // Start the ingestion in a separate thread
-        new Thread(() -> {
+        // Queue the ingestion; it starts once its ClickHouse host has a free slot
+        submitJob(request, result, () -> {
             try {
                 executeClickHouseToFlatFileIngestion(request, result);
             } catch (Exception e) {
@@ -124,45 +393,46 @@ public class ClickHouseService {
                 result.setMessage("Error: " + e.getMessage());
                 result.setEndTime(System.currentTimeMillis());
             }
-        }).start();
+        });
         
         return result;
     }
 
     private void executeClickHouseToFlatFileIngestion(IngestionRequest request, IngestionResult result) {
-        AtomicInteger recordCount = new AtomicInteger(0);
+        AtomicLong recordCount = new AtomicLong(0);
         
         try {
             result.setStatus("IN_PROGRESS");
+            result.getProgress().setStage("exporting");
+            // A cancelled export leaves no partial file behind; shard segments are removed by the exporter
+            onCancel(result, () -> Files.deleteIfExists(Paths.get(request.getFilePath())));
             
-            // Build the query using selected columns
-            StringBuilder queryBuilder = new StringBuilder("SELECT ");
-            if (request.getSelectedColumns() != null && !request.getSelectedColumns().isEmpty()) {
-                queryBuilder.append(String.join(", ", request.getSelectedColumns()));
-            } else {
-                queryBuilder.append("*");
-            }
-            queryBuilder.append(" FROM ").append(request.getTableName());
-            
-            // Handle JOIN configuration if provided
-            if (request.getJoinConfig() != null && !request.getJoinConfig().isEmpty()) {
-                String joinType = request.getJoinConfig().getOrDefault("type", "INNER JOIN");
-                String joinTable = request.getJoinConfig().get("table");
-                String joinCondition = request.getJoinConfig().get("condition");
-                
-                if (joinTable != null && joinCondition != null) {
-                    queryBuilder.append(" ").append(joinType).append(" ")
-                               .append(joinTable).append(" ON ")
-                               .append(joinCondition);
-                }
+            // Columnar targets are encoded by ClickHouse itself and streamed as a single file
+            if (isColumnarFormat(request.getTargetFormat())) {
+                executeColumnarExport(request, result);
+                return;
             }
-            
-            String query = queryBuilder.toString();
+
+            // Large exports are split into concurrent shards, each streamed in native format
+            if (request.getParallelism() > 1) {
+                executeShardedExport(request, result);
+                return;
+            }
+
+            // Native mode lets ClickHouse format the rows and copies the response bytes as-is
+            if ("NATIVE".equalsIgnoreCase(request.getExportMode())) {
+                executeNativeExport(request, result, exportQuery(request, ExportQuery.Placeholders.NAMED));
+                return;
+            }
+
+            ExportQuery exportQuery = exportQuery(request, ExportQuery.Placeholders.POSITIONAL);
+            String query = exportQuery.sql(request.getSelectedColumns(), null);
             logger.info("Executing query: {}", query);
-            
+            List<String> values = exportQuery.getValues();
+
             try (Connection connection = getConnection(request);
-                 Statement stmt = connection.createStatement();
-                 ResultSet rs = stmt.executeQuery(query)) {
+                 Statement stmt = abortOnCancel(result, values.isEmpty() ? connection.createStatement() : connection.prepareStatement(query));
+                 ResultSet rs = executeExportQuery(stmt, query, values, queryId(result, "export"))) {
                 
                 ResultSetMetaData meta = rs.getMetaData();
                 int columnCount = meta.getColumnCount();
@@ -170,173 +440,974 @@ public class ClickHouseService {
                 // Determine delimiter to use (default to comma)
                 String delimiter = request.getDelimiter() != null ? request.getDelimiter() : ",";
                 
-                try (FileWriter writer = new FileWriter(request.getFilePath())) {
+                // Integer columns are read with getLong and encoded as digits, skipping the String per cell
+                boolean[] integral = new boolean[columnCount + 1];
+                for (int i = 1; i <= columnCount; i++) {
+                    integral[i] = isLongCompatible(meta.getColumnTypeName(i));
+                }
+
+                CompressionCodec codec = CompressionCodec.fromName(request.getCompression());
+                try (CsvEncoder encoder = new CsvEncoder(
+                        ParallelCompressingOutputStream.openChannel(Paths.get(request.getFilePath()), codec), delimiter)) {
                     // Write headers
                     for (int i = 1; i <= columnCount; i++) {
-                        writer.append(meta.getColumnName(i));
-                        if (i < columnCount) writer.append(delimiter);
+                        encoder.writeField(meta.getColumnName(i));
                     }
-                    writer.append("\n");
+                    encoder.endRecord();
                     
-                    // Write data rows
+                    // Write data rows; a cancel interrupts the thread as well as killing the query.
+                    // Encoding is timed per block of rows so the clock isn't read for every row.
+                    IngestionMetrics.JobMeters meters = ingestionMetrics.meters(IngestionMetrics.EXPORT, request.getTableName());
+                    long blockStart = System.nanoTime();
                     while (rs.next()) {
+                        if (Thread.currentThread().isInterrupted()) {
+                            throw new InterruptedException("Export interrupted");
+                        }
                         for (int i = 1; i <= columnCount; i++) {
-                            String value = rs.getString(i);
-                            // Handle values that contain the delimiter
-                            if (value != null && value.contains(delimiter)) {
-                                writer.append("\"").append(value.replace("\"", "\"\"")).append("\"");
+                            if (integral[i]) {
+                                long value = rs.getLong(i);
+                                if (rs.wasNull()) {
+                                    encoder.writeNull();
+                                } else {
+                                    encoder.writeLong(value);
+                                }
                             } else {
-                                writer.append(value != null ? value : "");
+                                encoder.writeField(rs.getString(i));
                             }
-                            if (i < columnCount) writer.append(delimiter);
                         }
-                        writer.append("\n");
-                        recordCount.incrementAndGet();
+                        encoder.endRecord();
+                        if (recordCount.incrementAndGet() % ENCODE_BLOCK_ROWS == 0) {
+                            long now = System.nanoTime();
+                            meters.encoded(now - blockStart);
+                            blockStart = now;
+                        }
+                        result.getProgress().addRows(1);
                     }
+                    meters.encoded(System.nanoTime() - blockStart);
                 }
                 
+                result.getProgress().finish(recordCount.get());
                 result.setStatus("COMPLETED");
                 result.setTotalRecords(recordCount.get());
                 result.setMessage("Successfully exported " + recordCount.get() + " records to " + request.getFilePath());
             }
         } catch (Exception e) {
-            logger.error("Error during ClickHouse to Flat File ingestion: ", e);
-            result.setStatus("FAILED");
-            result.setMessage("Error: " + e.getMessage());
+            markFailed(result, "Error during ClickHouse to Flat File ingestion: ", e);
+        } finally {
+            result.setEndTime(System.currentTimeMillis());
+        }
+    }
+
+    // Stream "SELECT ... FORMAT CSVWithNames/TSVWithNames" straight into the target file
+    private void executeNativeExport(IngestionRequest request, IngestionResult result, ExportQuery exportQuery) throws IOException {
+        String delimiter = request.getDelimiter() != null ? request.getDelimiter() : ",";
+        Map<String, String> settings = nativeFormatSettings(delimiter);
+        settings.putAll(exportQuery.getParameters());
+
+        settings.put("send_progress_in_http_headers", "1");
+        settings.put("query_id", queryId(result, "export"));
+
+        String query = exportQuery.sql(request.getSelectedColumns(), null);
+        logger.info("Executing query: {}", query);
+        String formattedQuery = query + " FORMAT " + nativeOutputFormat(delimiter, true);
+
+        ClickHouseHttpClient client = new ClickHouseHttpClient(request);
+        CompressionCodec codec = CompressionCodec.fromName(request.getCompression());
+        try (ClickHouseHttpClient.Response response = abortOnCancel(result, client.query(formattedQuery, settings));
+             WritableByteChannel channel = ParallelCompressingOutputStream.openChannel(Paths.get(request.getFilePath()), codec)) {
+
+            // The result streams as it is produced, so rows are counted off the bytes rather than a final summary
+            RecordCounter records = new RecordCounter(delimiter, true, result.getProgress()::addRows);
+            long bytes = ClickHouseHttpClient.copy(response.getBody(), channel, result.getProgress()::addBytesWritten, records);
+            long rows = records.getRecords();
+
+            result.getProgress().finish(rows);
+            result.setStatus("COMPLETED");
+            result.setTotalRecords(rows);
+            result.setMessage("Successfully exported " + rows + " records (" + bytes + " bytes) to " + request.getFilePath());
+        }
+    }
+
+    // Run the export as parallel shards and stitch the segments into the target file
+    private void executeShardedExport(IngestionRequest request, IngestionResult result) throws Exception {
+        String delimiter = request.getDelimiter() != null ? request.getDelimiter() : ",";
+        Map<String, String> settings = nativeFormatSettings(delimiter);
+        ExportQuery exportQuery = exportQuery(request, ExportQuery.Placeholders.NAMED);
+        settings.putAll(exportQuery.getParameters());
+
+        // Every shard is a concurrent query on the host, and the host's jobs share one pool's worth of them
+        int shardCount = Math.min(request.getParallelism(),
+                Math.max(1, connectionRegistry.getMaxPoolSize() / jobScheduler.getMaxPerHost()));
+        if (shardCount < request.getParallelism()) {
+            logger.info("Limiting export shards from {} to {} for host {}", request.getParallelism(), shardCount, request.getHost());
+        }
+
+        ShardedExporter exporter = new ShardedExporter(request, new ClickHouseHttpClient(request),
+                predicate -> exportQuery.sql(request.getSelectedColumns(), predicate),
+                nativeOutputFormat(delimiter, true), nativeOutputFormat(delimiter, false), settings,
+                result.getProgress(), queryId(result, "shard"), shardCount, response -> abortOnCancel(result, response));
+
+        result.setShards(exporter.planShards());
+        logger.info("Exporting {} in {} shards", request.getTableName(), result.getShards().size());
+
+        long rows = exporter.export(result.getShards());
+
+        result.getProgress().finish(rows);
+        result.setStatus("COMPLETED");
+        result.setTotalRecords(rows);
+        result.setMessage(request.isKeepShards()
+                ? "Successfully exported " + rows + " records to " + result.getShards().size() + " shard files"
+                : "Successfully exported " + rows + " records to " + request.getFilePath());
+    }
+
+    // Export to Parquet or Arrow IPC, typed from the DESCRIBE schema with row groups bounded by rowGroupSize
+    private void executeColumnarExport(IngestionRequest request, IngestionResult result) throws Exception {
+        boolean parquet = "PARQUET".equalsIgnoreCase(request.getTargetFormat());
+        int rowGroupSize = request.getRowGroupSize() > 0 ? request.getRowGroupSize() : DEFAULT_ROW_GROUP_SIZE;
+        ClickHouseHttpClient client = new ClickHouseHttpClient(request);
+
+        List<String> projection = request.getSelectedColumns();
+        boolean hasJoin = request.getJoinConfig() != null && request.getJoinConfig().get("table") != null;
+        if (!hasJoin) {
+            // Wrap low-cardinality strings in toLowCardinality so both writers emit dictionary-encoded columns
+            TableSchema schema = getTableSchema(request.getTableName(), request);
+            Set<String> dictionaryColumns = request.getDictionaryColumns() != null
+                    ? new HashSet<>(request.getDictionaryColumns())
+                    : detectDictionaryColumns(client, request, schema);
+            projection = new ArrayList<>();
+            for (ColumnDefinition column : schema.getColumns()) {
+                if (request.getSelectedColumns() != null && !request.getSelectedColumns().isEmpty()
+                        && !request.getSelectedColumns().contains(column.getName())) {
+                    continue;
+                }
+                String name = ExportQuery.quoteIdentifier(column.getName());
+                projection.add(dictionaryColumns.contains(column.getName())
+                        ? "toLowCardinality(" + name + ") AS " + name
+                        : name);
+            }
+        }
+
+        Map<String, String> settings = new HashMap<>();
+        settings.put("max_block_size", Integer.toString(rowGroupSize));
+        settings.put("query_id", queryId(result, "export"));
+        // The toLowCardinality projections reuse the column names as aliases; filters must still see
+        // the stored columns, or a key condition is wrapped in the function and no longer prunes
+        settings.put("prefer_column_name_to_alias", "1");
+        String compression = columnarCompressionMethod(request.getCompression(), parquet);
+        logger.info("Writing {} with {} compression", parquet ? "Parquet" : "Arrow",
+                compression != null ? compression : "the format's default");
+        if (parquet) {
+            settings.put("output_format_parquet_row_group_size", Integer.toString(rowGroupSize));
+            settings.put("output_format_parquet_string_as_string", "1");
+            if (compression != null) {
+                settings.put("output_format_parquet_compression_method", compression);
+            }
+        } else {
+            settings.put("output_format_arrow_low_cardinality_as_dictionary", "1");
+            settings.put("output_format_arrow_string_as_string", "1");
+            if (compression != null) {
+                settings.put("output_format_arrow_compression_method", compression);
+            }
+        }
+
+        ExportQuery exportQuery = exportQuery(request, ExportQuery.Placeholders.NAMED);
+        settings.putAll(exportQuery.getParameters());
+        String query = exportQuery.sql(projection, null) + " FORMAT " + (parquet ? "Parquet" : "Arrow");
+        logger.info("Executing query: {}", query);
+
+        // The formats compress internally, so the file is written as-is
+        long bytes;
+        try (ClickHouseHttpClient.Response response = abortOnCancel(result, client.query(query, settings));
+             WritableByteChannel channel = ParallelCompressingOutputStream.openChannel(
+                     Paths.get(request.getFilePath()), CompressionCodec.NONE)) {
+            bytes = ClickHouseHttpClient.copy(response.getBody(), channel, result.getProgress()::addBytesWritten);
+        }
+
+        // Binary output can't be counted as it streams; the written file's metadata holds the row count.
+        // If it can't be read the count is reported as unknown (-1) rather than as zero rows
+        long rows;
+        try {
+            Path file = Paths.get(request.getFilePath());
+            rows = parquet ? ColumnarRowCount.parquet(file) : ColumnarRowCount.arrow(file);
+        } catch (IOException e) {
+            logger.warn("Could not read the row count of {}: {}", request.getFilePath(), e.getMessage());
+            rows = -1;
+        }
+
+        result.getProgress().finish(Math.max(rows, 0));
+        result.setStatus("COMPLETED");
+        result.setTotalRecords(rows);
+        result.setMessage("Successfully exported " + (rows >= 0 ? rows + " records" : "an unknown number of records")
+                + " (" + bytes + " bytes) as " + (parquet ? "Parquet" : "Arrow") + " to " + request.getFilePath());
+    }
+
+    // String columns whose distinct count in a sample stays under the dictionary threshold
+    private Set<String> detectDictionaryColumns(ClickHouseHttpClient client, IngestionRequest request,
+                                                TableSchema schema) throws IOException {
+        List<String> candidates = new ArrayList<>();
+        List<String> quoted = new ArrayList<>();
+        for (ColumnDefinition column : schema.getColumns()) {
+            String type = column.getType();
+            if (type.equals("String") || type.equals("Nullable(String)") || type.startsWith("FixedString")) {
+                candidates.add(column.getName());
+                quoted.add(ExportQuery.quoteIdentifier(column.getName()));
+            }
+        }
+        Set<String> dictionaryColumns = new HashSet<>();
+        if (candidates.isEmpty()) {
+            return dictionaryColumns;
+        }
+
+        StringBuilder query = new StringBuilder("SELECT ");
+        for (int i = 0; i < candidates.size(); i++) {
+            if (i > 0) query.append(", ");
+            query.append("uniq(").append(quoted.get(i)).append(")");
+        }
+        query.append(" FROM (SELECT ").append(String.join(", ", quoted))
+             .append(" FROM ").append(request.getTableName())
+             .append(" LIMIT ").append(DICTIONARY_SAMPLE_ROWS).append(")");
+
+        List<String[]> rows = client.queryRows(query.toString());
+        if (!rows.isEmpty()) {
+            String[] counts = rows.get(0);
+            for (int i = 0; i < candidates.size(); i++) {
+                if (Long.parseLong(counts[i]) <= DICTIONARY_MAX_DISTINCT) {
+                    dictionaryColumns.add(candidates.get(i));
+                }
+            }
+        }
+        logger.info("Dictionary-encoding columns {}", dictionaryColumns);
+        return dictionaryColumns;
+    }
+
+    // Map the export compression option onto the Parquet/Arrow internal codec names; null keeps the
+    // format's default. Codecs a writer lacks are refused rather than quietly written uncompressed.
+    private String columnarCompressionMethod(String compression, boolean parquet) {
+        CompressionCodec codec = CompressionCodec.fromName(compression);
+        switch (codec) {
+            case NONE: return compression == null || compression.isBlank() ? null : "none";
+            case ZSTD: return "zstd";
+            case LZ4: return parquet ? "lz4" : "lz4_frame";
+            case GZIP:
+                if (parquet) {
+                    return "gzip";
+                }
+                break;
+            default:
+                break;
+        }
+        throw new IllegalArgumentException((parquet ? "Parquet" : "Arrow") + " export does not support "
+                + codec.name().toLowerCase() + " compression; use " + (parquet ? "gzip, zstd, lz4" : "zstd, lz4") + " or none");
+    }
+
+    // Signed integers up to Int64 and unsigned up to UInt32 fit in a long
+    private boolean isLongCompatible(String columnTypeName) {
+        String type = columnTypeName.startsWith("Nullable(")
+                ? columnTypeName.substring(9, columnTypeName.length() - 1)
+                : columnTypeName;
+        switch (type) {
+            case "Int8": case "Int16": case "Int32": case "Int64":
+            case "UInt8": case "UInt16": case "UInt32":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean isColumnarFormat(String targetFormat) {
+        return "PARQUET".equalsIgnoreCase(targetFormat) || "ARROW".equalsIgnoreCase(targetFormat);
+    }
+
+    private String nativeOutputFormat(String delimiter, boolean withNames) {
+        String format = "\t".equals(delimiter) ? "TSV" : "CSV";
+        return withNames ? format + "WithNames" : format;
+    }
+
+    private Map<String, String> nativeFormatSettings(String delimiter) {
+        Map<String, String> settings = new HashMap<>();
+        if (!"\t".equals(delimiter) && !",".equals(delimiter)) {
+            if (delimiter.length() != 1) {
+                throw new IllegalArgumentException("Native export supports single-character delimiters only: " + delimiter);
+            }
+            settings.put("format_csv_delimiter", delimiter);
+        }
+        return settings;
+    }
+
+    // Compile the export query for the request. The table's schema and keys are read (from the
+    // metadata cache) only when there are filters to type, and the joined table's only when there
+    // is something to push below the JOIN.
+    public ExportQuery exportQuery(IngestionRequest request, ExportQuery.Placeholders placeholders) throws SQLException {
+        boolean filtered = request.getFilters() != null && !request.getFilters().isEmpty();
+        boolean projected = request.getSelectedColumns() != null && !request.getSelectedColumns().isEmpty();
+        TableSchema table = filtered ? getTableSchema(request.getTableName(), request) : null;
+        TableSchema joinTable = ExportQuery.hasJoin(request) && (filtered || projected)
+                ? getTableSchema(request.getJoinConfig().get("table"), request)
+                : null;
+        ExportQuery exportQuery = new ExportQuery(request, table, joinTable, placeholders);
+        if (!exportQuery.getKeyFilterColumns().isEmpty()) {
+            logger.info("Filters on key columns {} of {} go in PREWHERE", exportQuery.getKeyFilterColumns(), request.getTableName());
+        }
+        return exportQuery;
+    }
+
+    // Stream an export directly to the HTTP client instead of a server-side file. The download is a
+    // job like any other export: it waits for a slot on its host, is journalled and measured, and can
+    // be cancelled. It runs on the calling thread, since the client stream is only writable while the
+    // request is open. Writes block while the client is slow, so reads from ClickHouse pause with them.
+    public void streamClickHouseToFlatFile(IngestionRequest request, ExportQuery exportQuery, OutputStream clientStream) throws IOException {
+        IngestionResult result = new IngestionResult();
+        result.setIngestionId(UUID.randomUUID().toString());
+        result.setType("CLICKHOUSE_TO_FLATFILE");
+        result.setTableName(request.getTableName());
+        result.setStatus("STARTED");
+        result.setStartTime(System.currentTimeMillis());
+        track(request, result);
+        try {
+            jobScheduler.runInline(request.getHost(), request.getPriority(), result,
+                    recorded(result, () -> executeDownload(request, exportQuery, clientStream, result)));
+        } catch (RejectedExecutionException e) {
+            untrack(result);
+            throw e;
+        } catch (InterruptedException e) {
+            untrack(result);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a job slot");
+        }
+        // The response has started by now, so a download that didn't complete can only be cut short
+        if (!"COMPLETED".equals(result.getStatus())) {
+            throw new IOException("Download " + result.getStatus().toLowerCase() + ": " + result.getMessage());
+        }
+    }
+
+    private void executeDownload(IngestionRequest request, ExportQuery exportQuery, OutputStream clientStream,
+                                 IngestionResult result) {
+        try {
+            result.setStatus("IN_PROGRESS");
+            JobProgress progress = result.getProgress();
+            progress.setStage("exporting");
+            String delimiter = request.getDelimiter() != null ? request.getDelimiter() : ",";
+            Map<String, String> settings = nativeFormatSettings(delimiter);
+            settings.putAll(exportQuery.getParameters());
+            String queryId = queryId(result, "download");
+            settings.put("query_id", queryId);
+            settings.put("readonly", "2");
+            settings.put("cancel_http_readonly_queries_on_client_close", "1");
+
+            String query = exportQuery.sql(request.getSelectedColumns(), null) + " FORMAT " + nativeOutputFormat(delimiter, true);
+            logger.info("Streaming query {}: {}", queryId, query);
+
+            ClickHouseHttpClient client = new ClickHouseHttpClient(request);
+            CompressionCodec codec = CompressionCodec.fromName(request.getCompression());
+            OutputStream out = codec == CompressionCodec.NONE
+                    ? clientStream
+                    : new ParallelCompressingOutputStream(clientStream, codec);
+
+            RecordCounter records = new RecordCounter(delimiter, true, progress::addRows);
+            long bytes = 0;
+            try (ClickHouseHttpClient.Response response = abortOnCancel(result, client.query(query, settings))) {
+                InputStream in = response.getBody();
+                byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    try {
+                        out.write(buffer, 0, n);
+                    } catch (IOException e) {
+                        throw clientGone(client, queryId, bytes, e);
+                    }
+                    records.count(ByteBuffer.wrap(buffer, 0, n));
+                    progress.addBytesWritten(n);
+                    bytes += n;
+                }
+                // Closing the compressing stage writes its last blocks, so it can fail like any write
+                try {
+                    if (out != clientStream) {
+                        out.close();
+                    } else {
+                        out.flush();
+                    }
+                } catch (IOException e) {
+                    throw clientGone(client, queryId, bytes, e);
+                }
+            } catch (Exception e) {
+                // Release the compressing stage's worker threads all the same; a second close does nothing
+                if (out != clientStream) {
+                    try {
+                        out.close();
+                    } catch (IOException closeFailure) {
+                        e.addSuppressed(closeFailure);
+                    }
+                }
+                throw e;
+            }
+            logger.info("Streamed {} bytes for query {}", bytes, queryId);
+
+            long rows = records.getRecords();
+            progress.finish(rows);
+            result.setStatus("COMPLETED");
+            result.setTotalRecords(rows);
+            result.setMessage("Successfully streamed " + rows + " records (" + bytes + " bytes) to the client");
+        } catch (Exception e) {
+            markFailed(result, "Error during ClickHouse download: ", e);
         } finally {
             result.setEndTime(System.currentTimeMillis());
         }
     }
 
+    // The client went away: stop the query rather than letting it run to completion
+    private IOException clientGone(ClickHouseHttpClient client, String queryId, long bytes, IOException e) {
+        logger.info("Client disconnected after {} bytes, cancelling query {}", bytes, queryId);
+        cancelQuietly(client, queryId);
+        return e;
+    }
+
+    private void cancelQuietly(ClickHouseHttpClient client, String queryId) {
+        try {
+            client.killQuery(queryId);
+        } catch (IOException e) {
+            logger.warn("Could not kill query {}", queryId, e);
+        }
+    }
+
     // Ingest data from a Flat File to ClickHouse
-    public IngestionResult ingestFlatFileToClickHouse(MultipartFile file, IngestionRequest request) {
+    public IngestionResult ingestFlatFileToClickHouse(MultipartFile file, IngestionRequest request) throws IOException {
     String ingestionId = UUID.randomUUID().toString();
     IngestionResult result = new IngestionResult();
     result.setIngestionId(ingestionId);
+    result.setType("FLATFILE_TO_CLICKHOUSE");
+    result.setTableName(request.getTableName());
     result.setStatus("STARTED");
     result.setStartTime(System.currentTimeMillis());
-    ingestionStatuses.put(ingestionId, result);
     
-    // Start the ingestion in a separate thread
-    new Thread(() -> {
+    // The multipart part is deleted when the request ends, and the job may still be queued by
+    // then, so keep the upload in a file of our own (moved, not copied, when spooled to disk)
+    File upload = File.createTempFile("upload_", ".raw");
+    file.transferTo(upload);
+    
+    try {
+        submitJob(request, result, () -> {
+            try {
+                executeFlatFileToClickHouseIngestion(upload, request, result);
+            } catch (Exception e) {
+                logger.error("Error during ingestion: ", e);
+                result.setStatus("FAILED");
+                result.setMessage("Error: " + e.getMessage());
+                result.setEndTime(System.currentTimeMillis());
+            }
+        });
+    } catch (RejectedExecutionException e) {
+        Files.deleteIfExists(upload.toPath());
+        throw e;
+    }
+    
+    return result;
+}
+
+// Queue a background job against the request's ClickHouse host. A rejected job is not kept
+// in the registry.
+private void submitJob(IngestionRequest request, IngestionResult result, Runnable body) {
+    track(request, result);
+    try {
+        jobScheduler.submit(request.getHost(), request.getPriority(), result, recorded(result, body));
+    } catch (RejectedExecutionException e) {
+        untrack(result);
+        throw e;
+    }
+}
+
+private void track(IngestionRequest request, IngestionResult result) {
+    jobControls.put(result.getIngestionId(), new JobControl(request));
+    jobRegistry.register(result);
+}
+
+private void untrack(IngestionResult result) {
+    jobControls.remove(result.getIngestionId());
+    jobRegistry.discard(result.getIngestionId());
+}
+
+// Journal the job when it gets its slot and again when it is over. A cancelled job undoes its
+// partial output here, before its slot is given back.
+private Runnable recorded(IngestionResult result, Runnable body) {
+    return () -> {
+        jobRegistry.started(result);
+        ingestionMetrics.started(result);
         try {
-            executeFlatFileToClickHouseIngestion(file, request, result);
-        } catch (Exception e) {
-            logger.error("Error during ingestion: ", e);
-            result.setStatus("FAILED");
-            result.setMessage("Error: " + e.getMessage());
+            body.run();
+        } finally {
+            ingestionMetrics.finished(result);
+            JobControl control = jobControls.remove(result.getIngestionId());
+            if (control != null && "CANCELLED".equals(result.getStatus())) {
+                control.cleanUp(result.getIngestionId());
+            }
+            jobRegistry.finish(result);
+        }
+    };
+}
+
+// Stop a job: a queued one never starts, a running one has its thread interrupted and every
+// ClickHouse query it issued killed, then removes whatever it had written. Returns the job's
+// state, which for a running job turns CANCELLED once it has unwound.
+public IngestionResult cancelIngestion(String ingestionId) {
+    IngestionResult result = getIngestionStatus(ingestionId);
+    JobControl control = jobControls.get(ingestionId);
+    if (control == null) {
+        // Already over
+        return result;
+    }
+    control.cancelled = true;
+    switch (jobScheduler.cancel(result)) {
+        case QUEUED:
+            jobControls.remove(ingestionId);
+            result.setStatus("CANCELLED");
+            result.setMessage("Cancelled before the job started");
+            result.setQueueDepth(0);
             result.setEndTime(System.currentTimeMillis());
+            jobRegistry.finish(result);
+            break;
+        case RUNNING:
+            try {
+                new ClickHouseHttpClient(control.request).killQueriesWithPrefix(ingestionId);
+            } catch (IOException e) {
+                // Aborting what the job has open below still stops it
+                logger.warn("Could not kill queries of job {}", ingestionId, e);
+            }
+            control.abortOpen(ingestionId);
+            logger.info("Cancelling job {}", ingestionId);
+            break;
+        default:
+            break;
+    }
+    return result;
+}
+
+// Every statement a job sends carries an id starting with the job's, so one KILL QUERY stops them all
+private static String queryId(IngestionResult result, String statement) {
+    return result.getIngestionId() + "-" + statement;
+}
+
+// Only the legacy ru.yandex driver takes a query_id per statement. When DriverManager hands out
+// the newer com.clickhouse driver for the same URL, the statement runs untagged and a cancel
+// stops it through the thread interrupt and the closed connection instead.
+private static ResultSet executeQuery(Statement stmt, String sql, String queryId) throws SQLException {
+    if (stmt.isWrapperFor(ClickHouseStatement.class)) {
+        return stmt.unwrap(ClickHouseStatement.class).executeQuery(sql, Map.of(ClickHouseQueryParam.QUERY_ID, queryId));
+    }
+    return stmt.executeQuery(sql);
+}
+
+// Unfiltered exports run as plain statements; a filtered one is prepared, with its operands bound here
+private static ResultSet executeExportQuery(Statement stmt, String sql, List<String> values, String queryId) throws SQLException {
+    if (values.isEmpty()) {
+        return executeQuery(stmt, sql, queryId);
+    }
+    PreparedStatement prepared = (PreparedStatement) stmt;
+    for (int i = 0; i < values.size(); i++) {
+        prepared.setString(i + 1, values.get(i));
+    }
+    if (prepared.isWrapperFor(ClickHousePreparedStatement.class)) {
+        return prepared.unwrap(ClickHousePreparedStatement.class).executeQuery(Map.of(ClickHouseQueryParam.QUERY_ID, queryId));
+    }
+    return prepared.executeQuery();
+}
+
+private static void executeBatch(PreparedStatement stmt, String queryId) throws SQLException {
+    if (stmt.isWrapperFor(ClickHousePreparedStatement.class)) {
+        stmt.unwrap(ClickHousePreparedStatement.class).executeBatch(Map.of(ClickHouseQueryParam.QUERY_ID, queryId));
+    } else {
+        stmt.executeBatch();
+    }
+}
+
+// Let a cancel drop a response the job is reading; returns it for try-with-resources
+private ClickHouseHttpClient.Response abortOnCancel(IngestionResult result, ClickHouseHttpClient.Response response) {
+    return abortOnCancel(result, response, response::abort);
+}
+
+// Let a cancel stop a JDBC statement, which the newer driver runs without a query id to kill by
+private <T extends Statement> T abortOnCancel(IngestionResult result, T statement) {
+    return abortOnCancel(result, statement, statement::cancel);
+}
+
+private <T> T abortOnCancel(IngestionResult result, T resource, JobControl.Cleanup abort) {
+    JobControl control = jobControls.get(result.getIngestionId());
+    if (control != null) {
+        control.aborts.put(resource, abort);
+        // Opened just as the cancel went through
+        if (control.cancelled) {
+            control.abortOpen(result.getIngestionId());
         }
-    }).start();
-    
+    }
+    return resource;
+}
+
+// Undo step to run if the job ends up cancelled
+private void onCancel(IngestionResult result, JobControl.Cleanup cleanup) {
+    JobControl control = jobControls.get(result.getIngestionId());
+    if (control != null) {
+        control.cleanups.add(cleanup);
+    }
+}
+
+// A job that fails because it was cancelled ends as CANCELLED instead
+private void markFailed(IngestionResult result, String context, Exception e) {
+    JobControl control = jobControls.get(result.getIngestionId());
+    if (control != null && control.cancelled) {
+        logger.info("Job {} cancelled: {}", result.getIngestionId(), e.getMessage());
+        result.setStatus("CANCELLED");
+        result.setMessage("Cancelled after " + result.getProgress().getRows() + " records");
+        return;
+    }
+    logger.error(context, e);
+    result.setStatus("FAILED");
+    result.setMessage("Error: " + e.getMessage());
+}
+
+// Create the target table, remembering whether it is ours to drop if the job is cancelled. Rows
+// already inserted into a table that existed before can't be told apart, so they are kept.
+private void createTable(TableSchema schema, IngestionRequest request, IngestionResult result) throws Exception {
+    ClickHouseHttpClient client = new ClickHouseHttpClient(request);
+    String tableName = request.getTableName();
+    boolean existed = client.tableExists(tableName);
+    try (Connection connection = getConnection(request);
+         Statement stmt = connection.createStatement()) {
+        stmt.executeUpdate(buildCreateTableQuery(schema));
+    }
+    // The table list and any cached schema for this name are stale now
+    metadataCache.invalidateTable(request, tableName);
+    if (existed) {
+        onCancel(result, () -> result.setMessage(result.getMessage()
+                + "; rows inserted before the cancel remain in " + tableName));
+    } else {
+        onCancel(result, () -> {
+            try (ClickHouseHttpClient.Response response = client.query("DROP TABLE IF EXISTS " + tableName,
+                    Map.of("query_id", queryId(result, "drop")))) {
+                response.getBody().readAllBytes();
+            }
+            metadataCache.invalidateTable(request, tableName);
+        });
+    }
+}
+
+// Ingest an upload while it is still arriving, in a single pass and without touching disk. The
+// schema is inferred from a buffered prefix, the table is created, and the prefix followed by
+// the rest of the stream goes straight to the insert stage. Runs on the calling thread because
+// the stream is only readable for the duration of the request; it still waits for a job slot
+// on its host, holding the upload back until then.
+public IngestionResult ingestFlatFileStream(InputStream in, IngestionRequest request) throws InterruptedException {
+    IngestionResult result = new IngestionResult();
+    result.setIngestionId(UUID.randomUUID().toString());
+    result.setType("FLATFILE_TO_CLICKHOUSE");
+    result.setTableName(request.getTableName());
+    result.setStartTime(System.currentTimeMillis());
+    track(request, result);
+    try {
+        jobScheduler.runInline(request.getHost(), request.getPriority(), result,
+                recorded(result, () -> executeFlatFileStream(in, request, result)));
+    } catch (RejectedExecutionException | InterruptedException e) {
+        untrack(result);
+        throw e;
+    }
     return result;
 }
 
-private void executeFlatFileToClickHouseIngestion(MultipartFile file, IngestionRequest request, IngestionResult result) {
-    AtomicInteger recordCount = new AtomicInteger(0);
-    
+private void executeFlatFileStream(InputStream in, IngestionRequest request, IngestionResult result) {
     try {
         result.setStatus("IN_PROGRESS");
+        JobProgress progress = result.getProgress();
+        progress.setStage("inferring schema");
+        String delimiter = request.getDelimiter() != null ? request.getDelimiter() : ",";
+        
+        // Compressed uploads are decoded as they arrive, so the prefix and everything after it is plain text
+        in = ParallelDecompressingInputStream.open(in);
+        byte[] prefix = in.readNBytes(STREAM_PREFIX_BYTES);
+        boolean complete = prefix.length < STREAM_PREFIX_BYTES;
+        TableSchema schema = SchemaInferrer.inferFromPrefix(prefix, prefix.length, complete, delimiter,
+                request.getInferenceSampleRows(), request.getTableName());
+        applyColumnTypeOverrides(schema, request.getColumnTypes());
+        logger.info("Inferred schema for {} from {} buffered rows", request.getTableName(), schema.getSampledRows());
         
-        // Create a temporary file from the uploaded MultipartFile
-        File tempFile = File.createTempFile("upload_", ".csv");
-        file.transferTo(tempFile);
+        progress.setStage("creating table");
+        createTable(schema, request, result);
+        
+        progress.setStage("inserting");
+        InputStream whole = new SequenceInputStream(new ByteArrayInputStream(prefix), in);
+        long rows = insertRows(new StreamingCsvParser(whole, delimiter), out -> whole.transferTo(out),
+                schema, delimiter, request, result);
+        
+        progress.finish(rows);
+        result.setStatus("COMPLETED");
+        result.setTotalRecords(rows);
+        result.setMessage("Successfully ingested " + rows + " records from upload stream to ClickHouse.");
+    } catch (Exception e) {
+        markFailed(result, "Error during streaming Flat File to ClickHouse ingestion: ", e);
+    } finally {
+        result.setEndTime(System.currentTimeMillis());
+    }
+}
+
+private void executeFlatFileToClickHouseIngestion(File upload, IngestionRequest request, IngestionResult result) {
+    File tempFile = upload;
+    try {
+        result.setStatus("IN_PROGRESS");
+        JobProgress progress = result.getProgress();
+        progress.setStage("preparing");
+        
+        // Decompress gzip, zstd, bzip2 or lz4 uploads into a temporary file so the parser can
+        // memory-map plain text; a plain upload is parsed where it is
+        File csvFile = decompressUpload(upload);
+        tempFile = csvFile;
+        progress.setTotalBytes(csvFile.length());
         
         // Determine delimiter to use (default to comma)
         String delimiter = request.getDelimiter() != null ? request.getDelimiter() : ",";
         
-        // Parse the CSV file to get headers and data types
-        List<String> headers = new ArrayList<>();
-        Map<String, String> columnTypes = new HashMap<>();
+        // Memory-map the file and parse record-aligned chunks in parallel
+        ParallelCsvParser parser = new ParallelCsvParser(csvFile.toPath(), delimiter, parsePool, parseMaxInFlightMb << 20);
         
-        try (BufferedReader br = new BufferedReader(new FileReader(tempFile))) {
-            // Read headers
-            String headerLine = br.readLine();
-            if (headerLine != null) {
-                headers = Arrays.asList(headerLine.split(delimiter));
-            }
-            
-            // Read first data row to determine types
-            String dataLine = br.readLine();
-            if (dataLine != null) {
-                String[] values = dataLine.split(delimiter);
-                for (int i = 0; i < values.length; i++) {
-                    columnTypes.put(headers.get(i), getColumnType(values[i]));
-                }
-            }
-        }
+        // Infer column types from a sample of the file; explicit types in the request win
+        progress.setStage("inferring schema");
+        TableSchema schema = new SchemaInferrer(csvFile.toPath(), delimiter, request.getInferenceSampleRows())
+                .infer(request.getTableName());
+        applyColumnTypeOverrides(schema, request.getColumnTypes());
+        logger.info("Inferred schema for {} from {} sampled rows", request.getTableName(), schema.getSampledRows());
         
         // Create ClickHouse table using inferred column types
-        String createTableQuery = buildCreateTableQuery(request.getTableName(), headers, columnTypes);
-        try (Connection connection = getConnection(request);
-             Statement stmt = connection.createStatement()) {
-            stmt.executeUpdate(createTableQuery);
-        }
+        progress.setStage("creating table");
+        createTable(schema, request, result);
         
-        // Insert data in batches
-        try (BufferedReader br = new BufferedReader(new FileReader(tempFile))) {
-            // Skip header line
-            br.readLine();
-            
-            String insertQuery = buildInsertQuery(request.getTableName(), headers);
-            try (Connection connection = getConnection(request);
-                 PreparedStatement stmt = connection.prepareStatement(insertQuery)) {
-                
-                String line;
-                while ((line = br.readLine()) != null) {
-                    String[] values = line.split(delimiter);
-                    for (int i = 0; i < values.length; i++) {
-                        stmt.setString(i + 1, values[i]);
-                    }
-                    stmt.addBatch();
-                    
-                    if (recordCount.incrementAndGet() % 1000 == 0) {
-                        stmt.executeBatch();
-                    }
-                }
-                
-                // Execute remaining batch
-                stmt.executeBatch();
-            }
-        }
+        // Insert with the requested engine
+        progress.setStage("inserting");
+        long rows = insertRows(parser, out -> Files.copy(csvFile.toPath(), out), schema, delimiter, request, result);
         
+        progress.finish(rows);
         result.setStatus("COMPLETED");
-        result.setTotalRecords(recordCount.get());
-        result.setMessage("Successfully ingested " + recordCount.get() + " records from file to ClickHouse.");
+        result.setTotalRecords(rows);
+        result.setMessage("Successfully ingested " + rows + " records from file to ClickHouse.");
     } catch (Exception e) {
-        logger.error("Error during Flat File to ClickHouse ingestion: ", e);
-        result.setStatus("FAILED");
-        result.setMessage("Error: " + e.getMessage());
+        markFailed(result, "Error during Flat File to ClickHouse ingestion: ", e);
     } finally {
+        // Drop the temp file whether or not the ingestion got as far as inserting
+        try {
+            Files.deleteIfExists(tempFile.toPath());
+        } catch (IOException e) {
+            logger.warn("Could not delete {}", tempFile, e);
+        }
         result.setEndTime(System.currentTimeMillis());
     }
 }
 
+// The plain-text form of an upload: the file itself, or a decompressed copy that replaces it
+private File decompressUpload(File upload) throws IOException {
+    byte[] magic;
+    try (InputStream in = new FileInputStream(upload)) {
+        magic = in.readNBytes(8);
+    }
+    if (CompressionCodec.detect(magic, magic.length) == CompressionCodec.NONE) {
+        return upload;
+    }
+    File csvFile = File.createTempFile("upload_", ".csv");
+    try (InputStream in = ParallelDecompressingInputStream.open(new FileInputStream(upload))) {
+        Files.copy(in, csvFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+        Files.deleteIfExists(csvFile.toPath());
+        throw e;
+    } finally {
+        Files.deleteIfExists(upload.toPath());
+    }
+    return csvFile;
+}
+
+    // Each worker binds its batches through its own JDBC connection, one executeBatch per parsed batch.
+    // Empty fields go in as NULL for typed columns, which the server turns into NULL or the default.
+    private IngestionPipeline.InsertWorker batchInsertWorker(TableSchema schema, IngestionRequest request,
+                                                            IngestionResult result) {
+        List<String> headers = new ArrayList<>();
+        for (ColumnDefinition column : schema.getColumns()) {
+            headers.add(column.getName());
+        }
+        String insertQuery = buildInsertQuery(request.getTableName(), headers);
+        int columnCount = headers.size();
+        boolean[] emptyAsNull = new boolean[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            emptyAsNull[i] = !schema.getColumns().get(i).getType().contains("String");
+        }
+        return (index, source) -> {
+            long rows = 0;
+            try (Connection connection = getConnection(request);
+                 PreparedStatement stmt = abortOnCancel(result, connection.prepareStatement(insertQuery))) {
+                RowBatch batch;
+                while ((batch = source.next()) != null) {
+                    for (String[] values : batch.getRows()) {
+                        for (int i = 0; i < columnCount; i++) {
+                            String value = i < values.length ? values[i] : "";
+                            if (value.isEmpty() && emptyAsNull[i]) {
+                                stmt.setNull(i + 1, Types.NULL);
+                            } else {
+                                stmt.setString(i + 1, value);
+                            }
+                        }
+                        stmt.addBatch();
+                    }
+                    executeBatch(stmt, queryId(result, "insert-" + index + "-" + batch.getSequence()));
+                    rows += batch.size();
+                }
+            }
+            return rows;
+        };
+    }
+
+    // Each worker holds one INSERT ... FORMAT CSVWithNames request open and encodes its batches into
+    // the body, so every connection produces large server-side blocks of its own
+    private IngestionPipeline.InsertWorker streamInsertWorker(List<String> headers, IngestionRequest request,
+                                                             IngestionResult result, IngestionMetrics.JobMeters meters) {
+        String insertQuery = buildStreamInsertQuery(request.getTableName(), headers);
+        Map<String, String> settings = streamInsertSettings(request);
+        int columnCount = headers.size();
+        return (index, source) -> {
+            ClickHouseHttpClient client = new ClickHouseHttpClient(request);
+            Map<String, String> workerSettings = new HashMap<>(settings);
+            workerSettings.put("query_id", queryId(result, "insert-" + index));
+            try (ClickHouseHttpClient.Response response = client.insert(insertQuery, workerSettings, out -> {
+                // The encoder must not close the HTTP stream; the client closes it after the body
+                CsvEncoder encoder = new CsvEncoder(Channels.newChannel(out), ",");
+                for (String header : headers) {
+                    encoder.writeField(header);
+                }
+                encoder.endRecord();
+                try {
+                    RowBatch batch;
+                    while ((batch = source.next()) != null) {
+                        long start = System.nanoTime();
+                        for (String[] values : batch.getRows()) {
+                            for (int i = 0; i < columnCount; i++) {
+                                encoder.writeField(i < values.length ? values[i] : "");
+                            }
+                            encoder.endRecord();
+                        }
+                        meters.encoded(System.nanoTime() - start);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while streaming insert");
+                }
+                encoder.flush();
+            })) {
+                response.getBody().readAllBytes();
+                return response.getSummaryValue("written_rows");
+            }
+        };
+    }
+
+    // Load the parsed rows with the requested engine. A single STREAM connection with a delimiter
+    // ClickHouse understands sends the raw input as is; everything else goes through the pipeline.
+    private long insertRows(BatchParser parser, ClickHouseHttpClient.BodyWriter rawInput, TableSchema schema,
+                            String delimiter, IngestionRequest request, IngestionResult result) throws Exception {
+        List<String> headers = new ArrayList<>();
+        for (ColumnDefinition column : schema.getColumns()) {
+            headers.add(column.getName());
+        }
+
+        boolean stream = "STREAM".equalsIgnoreCase(request.getInsertEngine());
+        if (stream && request.getInsertConnections() <= 1 && isSingleByte(delimiter)) {
+            return rawInsert(rawInput, headers, delimiter, request, result);
+        }
+
+        int connections = request.getInsertConnections() > 0 ? request.getInsertConnections() : DEFAULT_INSERT_CONNECTIONS;
+        if (!stream && connections > connectionRegistry.getMaxPoolSize()) {
+            // Each batch worker holds a pooled connection for the whole load
+            logger.info("Limiting insert connections from {} to the pool size {}", connections, connectionRegistry.getMaxPoolSize());
+            connections = connectionRegistry.getMaxPoolSize();
+        }
+        IngestionMetrics.JobMeters meters = ingestionMetrics.meters(IngestionMetrics.IMPORT, request.getTableName());
+        IngestionPipeline pipeline = new IngestionPipeline(parser, connections,
+                stream ? streamInsertWorker(headers, request, result, meters) : batchInsertWorker(schema, request, result),
+                result.getProgress(), meters);
+        result.setStages(pipeline.getStages());
+        return pipeline.run();
+    }
+
+    // Send the input untouched as the body of INSERT ... FORMAT CSVWithNames and let the server
+    // parse it into large blocks; only possible for delimiters ClickHouse understands
+    private long rawInsert(ClickHouseHttpClient.BodyWriter input, List<String> headers, String delimiter,
+                           IngestionRequest request, IngestionResult result) throws IOException {
+        Map<String, String> settings = streamInsertSettings(request);
+        if (!",".equals(delimiter)) {
+            settings.put("format_csv_delimiter", delimiter);
+        }
+        settings.put("query_id", queryId(result, "insert"));
+
+        // Rows are only counted by the server, so progress follows the bytes sent. Copying the
+        // input doesn't notice interrupts, so a cancel is picked up here between writes.
+        JobProgress progress = result.getProgress();
+        ClickHouseHttpClient.BodyWriter counted = out -> input.writeTo(new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Insert interrupted");
+                }
+                out.write(b, off, len);
+                progress.addBytesRead(len);
+            }
+        });
+        ClickHouseHttpClient client = new ClickHouseHttpClient(request);
+        try (ClickHouseHttpClient.Response response = client.insert(
+                buildStreamInsertQuery(request.getTableName(), headers), settings, counted)) {
+            response.getBody().readAllBytes();
+            return response.getSummaryValue("written_rows");
+        }
+    }
+
+    private Map<String, String> streamInsertSettings(IngestionRequest request) {
+        int blockRows = request.getInsertBlockRows() > 0 ? request.getInsertBlockRows() : DEFAULT_INSERT_BLOCK_ROWS;
+        long blockBytes = request.getInsertBlockBytes() > 0 ? request.getInsertBlockBytes() : DEFAULT_INSERT_BLOCK_BYTES;
+
+        Map<String, String> settings = new HashMap<>();
+        settings.put("max_insert_block_size", String.valueOf(blockRows));
+        settings.put("min_insert_block_size_rows", String.valueOf(blockRows));
+        settings.put("min_insert_block_size_bytes", String.valueOf(blockBytes));
+        // Respond only once the insert has finished so the summary carries written_rows
+        settings.put("wait_end_of_query", "1");
+        return settings;
+    }
+
+    private String buildStreamInsertQuery(String tableName, List<String> headers) {
+        return "INSERT INTO " + tableName + " (" + String.join(", ", headers) + ") FORMAT CSVWithNames";
+    }
+
+    // ClickHouse only accepts one-character CSV delimiters
+    private static boolean isSingleByte(String delimiter) {
+        return delimiter.getBytes(StandardCharsets.UTF_8).length == 1;
+    }
+
+    // Borrow a pooled connection to the request's target; calls without a request use the configured default
     private Connection getConnection(IngestionRequest request) throws SQLException {
-        String jdbcUrl = String.format("jdbc:clickhouse://%s:%d/%s", request.getHost(), request.getPort(), request.getDatabase());
-        return DriverManager.getConnection(jdbcUrl, request.getUsername(), request.getPassword());
+        if (request == null) {
+            return dataSource.getConnection();
+        }
+        return connectionRegistry.getConnection(request);
     }
 
-    private String getColumnType(String value) {
-        // Simple heuristic to determine column type (you can expand this as needed)
-        if (value.matches("-?\\d+(\\.\\d+)?")) {
-            return "FLOAT";
-        } else if (value.matches("-?\\d+")) {
-            return "INT32";
-        } else {
-            return "String";
+    private void applyColumnTypeOverrides(TableSchema schema, Map<String, String> columnTypes) {
+        if (columnTypes == null) {
+            return;
+        }
+        for (ColumnDefinition column : schema.getColumns()) {
+            String type = columnTypes.get(column.getName());
+            if (type != null && !type.isBlank()) {
+                column.setType(type);
+            }
         }
     }
 
-    private String buildCreateTableQuery(String tableName, List<String> headers, Map<String, String> columnTypes) {
+    private String buildCreateTableQuery(TableSchema schema) {
         StringBuilder queryBuilder = new StringBuilder("CREATE TABLE IF NOT EXISTS ");
-        queryBuilder.append(tableName).append(" (");
+        queryBuilder.append(schema.getTableName()).append(" (");
         
-        for (int i = 0; i < headers.size(); i++) {
-            String columnName = headers.get(i);
-            String columnType = columnTypes.get(columnName);
-            queryBuilder.append(columnName).append(" ").append(columnType);
-            if (i < headers.size() - 1) {
+        List<ColumnDefinition> columns = schema.getColumns();
+        for (int i = 0; i < columns.size(); i++) {
+            ColumnDefinition column = columns.get(i);
+            queryBuilder.append(column.getName()).append(" ").append(column.getType());
+            if (i < columns.size() - 1) {
                 queryBuilder.append(", ");
             }
         }
@@ -359,7 +1430,7 @@ private void executeFlatFileToClickHouseIngestion(MultipartFile file, IngestionR
     }
 
     public IngestionResult getIngestionStatus(String ingestionId) {
-    IngestionResult result = ingestionStatuses.get(ingestionId);
+    IngestionResult result = jobRegistry.get(ingestionId);
     
     if (result == null) {
         throw new IllegalArgumentException("Ingestion not found for the given ID: " + ingestionId);
@@ -371,6 +1442,15 @@ private void executeFlatFileToClickHouseIngestion(MultipartFile file, IngestionR
     private DataSource dataSource;
 
     public List<String> getColumnsForTable(String tableName) throws SQLException {
+        try {
+            return metadataCache.getColumns(tableName, () -> loadColumnsForTable(tableName));
+        } catch (SQLException e) {
+            logger.warn("Could not load the columns of {}: {}", tableName, e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    private List<String> loadColumnsForTable(String tableName) throws SQLException {
         String query = "DESCRIBE TABLE " + tableName;
         List<String> columns = new ArrayList<>();
 
@@ -381,10 +1461,44 @@ private void executeFlatFileToClickHouseIngestion(MultipartFile file, IngestionR
             while (rs.next()) {
                 columns.add(rs.getString("name")); // "name" column gives column name in ClickHouse
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            // Optionally log or rethrow
         }
         return columns;
     }
+
+    // What cancelling a job needs: the target to send KILL QUERY to, what the job has open, and
+    // the steps that undo its partial output
+    private static final class JobControl {
+        interface Cleanup {
+            void run() throws Exception;
+        }
+
+        final IngestionRequest request;
+        final List<Cleanup> cleanups = new CopyOnWriteArrayList<>();
+        final Map<Object, Cleanup> aborts = new ConcurrentHashMap<>();
+        volatile boolean cancelled;
+
+        JobControl(IngestionRequest request) {
+            this.request = request;
+        }
+
+        void abortOpen(String ingestionId) {
+            aborts.forEach((resource, abort) -> {
+                try {
+                    abort.run();
+                } catch (Exception e) {
+                    logger.debug("Aborting {} of job {} failed: {}", resource, ingestionId, e.getMessage());
+                }
+            });
+        }
+
+        void cleanUp(String ingestionId) {
+            for (Cleanup cleanup : cleanups) {
+                try {
+                    cleanup.run();
+                } catch (Exception e) {
+                    logger.warn("Cleanup after cancelling job {} failed", ingestionId, e);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,293 @@
+package com.ingestion.backend.service;
+
+import com.ingestion.backend.model.ConnectionPoolStats;
+import com.ingestion.backend.model.IngestionRequest;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import com.zaxxer.hikari.pool.HikariPool.PoolInitializationException;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// One bounded JDBC pool per ClickHouse target, so previews and schema lookups reuse warm
+// connections instead of paying the driver handshake on every call. Pools nobody has used
+// for a while are closed, and the number of targets held open at once is capped.
+@Service
+public class ConnectionRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionRegistry.class);
+
+    @Value("${clickhouse.pool.max-size:10}")
+    private int maxPoolSize;
+
+    @Value("${clickhouse.pool.min-idle:1}")
+    private int minIdle;
+
+    @Value("${clickhouse.pool.idle-timeout-ms:60000}")
+    private long idleTimeoutMs;
+
+    @Value("${clickhouse.pool.max-lifetime-ms:1800000}")
+    private long maxLifetimeMs;
+
+    @Value("${clickhouse.pool.connection-timeout-ms:10000}")
+    private long connectionTimeoutMs;
+
+    @Value("${clickhouse.pool.retire-after-ms:600000}")
+    private long retireAfterMs;
+
+    @Value("${clickhouse.pool.max-pools:16}")
+    private int maxPools;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<PoolKey, Pool> pools = new ConcurrentHashMap<>();
+    private final AtomicInteger poolSequence = new AtomicInteger();
+    private ScheduledExecutorService reaper;
+
+    @PostConstruct
+    public void start() {
+        reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-registry-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.min(retireAfterMs, 60_000);
+        reaper.scheduleWithFixedDelay(this::retireIdlePools, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void close() {
+        reaper.shutdownNow();
+        pools.values().forEach(pool -> pool.dataSource.close());
+        pools.clear();
+    }
+
+    // Borrow a connection to the request's target; closing it returns it to the pool
+    public Connection getConnection(IngestionRequest request) throws SQLException {
+        return getConnection(request.getHost(), request.getPort(), request.getDatabase(),
+                request.getUsername(), request.getPassword());
+    }
+
+    public Connection getConnection(String host, int port, String database, String username, String password) throws SQLException {
+        PoolKey key = new PoolKey(host, port, database, username, password);
+        try {
+            // A pool retired between lookup and borrow hands out nothing; a fresh pool takes its place
+            Connection connection;
+            do {
+                connection = pool(key, false, null).borrow();
+            } while (connection == null);
+            return connection;
+        } catch (PoolInitializationException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new SQLException("Could not connect to " + key + ": " + cause.getMessage(), cause);
+        }
+    }
+
+    // The pool behind the application's own DataSource. It connects lazily, so startup does
+    // not depend on ClickHouse being up, and it is never retired. urlOptions are appended to its JDBC URL.
+    public DataSource getDataSource(String host, int port, String database, String username, String password,
+                                    String urlOptions) {
+        return pool(new PoolKey(host, port, database, username, password), true, urlOptions).dataSource;
+    }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    public List<ConnectionPoolStats> getStats() {
+        List<ConnectionPoolStats> stats = new ArrayList<>();
+        pools.forEach((key, pool) -> {
+            ConnectionPoolStats entry = new ConnectionPoolStats();
+            entry.setHost(key.host);
+            entry.setPort(key.port);
+            entry.setDatabase(key.database);
+            entry.setUsername(key.username);
+            entry.setApplicationDefault(pool.applicationDefault);
+            entry.setMaxPoolSize(pool.dataSource.getMaximumPoolSize());
+            HikariPoolMXBean mxBean = pool.dataSource.getHikariPoolMXBean();
+            if (mxBean != null) {
+                entry.setActiveConnections(mxBean.getActiveConnections());
+                entry.setIdleConnections(mxBean.getIdleConnections());
+                entry.setTotalConnections(mxBean.getTotalConnections());
+                entry.setThreadsAwaitingConnection(mxBean.getThreadsAwaitingConnection());
+            }
+            entry.setCreatedAt(pool.createdAt);
+            entry.setLastUsedAt(pool.lastUsed);
+            stats.add(entry);
+        });
+        return stats;
+    }
+
+    private Pool pool(PoolKey key, boolean applicationDefault, String urlOptions) {
+        Pool pool = pools.get(key);
+        if (pool != null) {
+            return pool;
+        }
+        if (pools.size() >= maxPools) {
+            retireLeastRecentlyUsed();
+        }
+        // A new request-scoped pool opens its first connection up front, so bad credentials or
+        // an unreachable host fail straight away and the pool is not kept. That handshake happens
+        // outside the map, so it never holds up lookups of other targets; when two threads race
+        // to open the same target, the one that loses closes its pool and uses the winner's.
+        Pool created = new Pool(createDataSource(key, applicationDefault, urlOptions), applicationDefault);
+        Pool existing = pools.putIfAbsent(key, created);
+        if (existing != null) {
+            created.dataSource.close();
+            return existing;
+        }
+        return created;
+    }
+
+    private HikariDataSource createDataSource(PoolKey key, boolean applicationDefault, String urlOptions) {
+        HikariConfig config = new HikariConfig();
+        // Every pool needs its own name, or their meters collide: the key leaves out the password,
+        // and a target's pool may be reopened after it was retired
+        config.setPoolName("clickhouse-" + key + "-" + poolSequence.incrementAndGet());
+        config.setJdbcUrl(String.format("jdbc:clickhouse://%s:%d/%s", key.host, key.port, key.database)
+                + (urlOptions != null ? "?" + urlOptions : ""));
+        config.setUsername(key.username);
+        config.setPassword(key.password);
+        config.setMaximumPoolSize(maxPoolSize);
+        config.setMinimumIdle(Math.min(minIdle, maxPoolSize));
+        config.setIdleTimeout(idleTimeoutMs);
+        config.setMaxLifetime(maxLifetimeMs);
+        config.setConnectionTimeout(connectionTimeoutMs);
+        config.setInitializationFailTimeout(applicationDefault ? -1 : 1);
+        // Publishes hikaricp.connections.acquire and the pool gauges, tagged with the pool name
+        config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        logger.info("Opening connection pool for {}", key);
+        return new HikariDataSource(config);
+    }
+
+    // Close pools with nothing borrowed that have not been used within retire-after-ms
+    private void retireIdlePools() {
+        long cutoff = System.currentTimeMillis() - retireAfterMs;
+        pools.forEach((key, pool) -> {
+            if (pool.lastUsed < cutoff) {
+                retire(key, pool);
+            }
+        });
+    }
+
+    // Make room for a new target by closing the idle pool used longest ago
+    private void retireLeastRecentlyUsed() {
+        pools.entrySet().stream()
+                .filter(entry -> !entry.getValue().applicationDefault && entry.getValue().activeConnections() == 0)
+                .min(Comparator.comparingLong(entry -> entry.getValue().lastUsed))
+                .ifPresent(entry -> retire(entry.getKey(), entry.getValue()));
+    }
+
+    // Borrows hold the pool's read lock, so none can slip in between the check and the close;
+    // one in progress means the pool is in use and stays
+    private void retire(PoolKey key, Pool pool) {
+        if (pool.applicationDefault || !pool.lock.writeLock().tryLock()) {
+            return;
+        }
+        try {
+            if (pool.activeConnections() > 0 || !pools.remove(key, pool)) {
+                return;
+            }
+            pool.retired = true;
+        } finally {
+            pool.lock.writeLock().unlock();
+        }
+        logger.info("Closing idle connection pool for {}", key);
+        pool.dataSource.close();
+    }
+
+    private static final class Pool {
+        final HikariDataSource dataSource;
+        final boolean applicationDefault;
+        final long createdAt = System.currentTimeMillis();
+        final ReadWriteLock lock = new ReentrantReadWriteLock();
+        volatile long lastUsed = createdAt;
+        boolean retired;
+
+        Pool(HikariDataSource dataSource, boolean applicationDefault) {
+            this.dataSource = dataSource;
+            this.applicationDefault = applicationDefault;
+        }
+
+        // null once the pool has been retired
+        Connection borrow() throws SQLException {
+            lock.readLock().lock();
+            try {
+                if (retired) {
+                    return null;
+                }
+                lastUsed = System.currentTimeMillis();
+                return dataSource.getConnection();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        int activeConnections() {
+            HikariPoolMXBean mxBean = dataSource.getHikariPoolMXBean();
+            return mxBean != null ? mxBean.getActiveConnections() : 0;
+        }
+    }
+
+    // The password is part of the key so a request can never borrow a connection that was
+    // authenticated with someone else's credentials
+    private static final class PoolKey {
+        final String host;
+        final int port;
+        final String database;
+        final String username;
+        final String password;
+
+        PoolKey(String host, int port, String database, String username, String password) {
+            this.host = host;
+            this.port = port;
+            this.database = database;
+            this.username = username;
+            this.password = password;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof PoolKey)) {
+                return false;
+            }
+            PoolKey other = (PoolKey) o;
+            return port == other.port && Objects.equals(host, other.host) && Objects.equals(database, other.database)
+                    && Objects.equals(username, other.username) && Objects.equals(password, other.password);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(host, port, database, username, password);
+        }
+
+        @Override
+        public String toString() {
+            return username + "@" + host + ":" + port + "/" + database;
+        }
+    }
+}
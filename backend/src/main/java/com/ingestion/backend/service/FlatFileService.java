@@ -1,10 +1,25 @@
 package com.ingestion.backend.service;
 
+import com.ingestion.backend.model.FilePreview;
+import com.ingestion.backend.model.TableSchema;
+import com.ingestion.backend.util.CompressionCodec;
+import com.ingestion.backend.util.CsvTokenizer;
+import com.ingestion.backend.util.FieldParser;
+import com.ingestion.backend.util.FileSampler;
+import com.ingestion.backend.util.ParallelDecompressingInputStream;
+import com.ingestion.backend.util.SchemaInferrer;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,42 +29,34 @@ public class FlatFileService {
 
     private static final Logger logger = LoggerFactory.getLogger(FlatFileService.class);
 
+    // Decompressed bytes a compressed upload is sampled from, since it can't be seeked
+    private static final int COMPRESSED_SAMPLE_BYTES = 8 * 1024 * 1024;
+
     // Preview contents of a flat file
     public List<Map<String, Object>> previewFile(MultipartFile file, String delimiter, int limit) throws Exception {
         List<Map<String, Object>> result = new ArrayList<>();
         
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream()))) {
+        // gzip, zstd, bzip2 and lz4 uploads are recognised by their magic bytes and decoded on the fly
+        try (InputStream in = ParallelDecompressingInputStream.open(file.getInputStream())) {
+            // Quoted fields may contain the delimiter or newlines, so tokenize records rather than lines
+            CsvTokenizer tokenizer = CsvTokenizer.of(in, delimiter);
+
             // Read header
-            String headerLine = reader.readLine();
-            if (headerLine == null) {
+            if (!tokenizer.nextRecord()) {
                 throw new IllegalArgumentException("File is empty");
             }
             
-            String[] headers = headerLine.split(delimiter, -1);
+            String[] headers = tokenizer.toArray();
             
             // Read data rows
-            String line;
             int count = 0;
-            while ((line = reader.readLine()) != null && count < limit) {
-                String[] values = line.split(delimiter, -1);
+            while (count < limit && tokenizer.nextRecord()) {
                 Map<String, Object> row = new HashMap<>();
                 
-                for (int i = 0; i < Math.min(headers.length, values.length); i++) {
-                    String header = headers[i];
-                    String value = values[i];
-                    
-                    // Try to convert to appropriate data type
-                    try {
-                        Long longVal = Long.parseLong(value);
-                        row.put(header, longVal);
-                    } catch (NumberFormatException e1) {
-                        try {
-                            Double doubleVal = Double.parseDouble(value);
-                            row.put(header, doubleVal);
-                        } catch (NumberFormatException e2) {
-                            row.put(header, value);
-                        }
-                    }
+                byte[] buffer = tokenizer.buffer();
+                for (int i = 0; i < Math.min(headers.length, tokenizer.fieldCount()); i++) {
+                    // Long, Double or String, classified without parse-and-catch
+                    row.put(headers[i], FieldParser.parse(buffer, tokenizer.fieldOffset(i), tokenizer.fieldLength(i)));
                 }
                 
                 result.add(row);
@@ -59,4 +66,56 @@ public class FlatFileService {
         
         return result;
     }
-}
\ No newline at end of file
+
+    // Infer the ClickHouse schema an ingestion of this file would create, without creating it
+    public TableSchema inferSchema(MultipartFile file, String delimiter, int sampleRows, String tableName) throws Exception {
+        // Sampling seeks to random offsets, so the upload needs to be on disk
+        File tempFile = File.createTempFile("infer_", ".csv");
+        try (InputStream in = ParallelDecompressingInputStream.open(file.getInputStream())) {
+            Files.copy(in, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return new SchemaInferrer(tempFile.toPath(), delimiter, sampleRows).infer(tableName);
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
+    // Preview representative rows and per-column statistics from random offsets across the file,
+    // so the cost does not grow with the file size
+    public FilePreview sampleFile(MultipartFile file, String delimiter, int limit, int sampleRows) throws Exception {
+        CompressionCodec codec;
+        try (InputStream in = file.getInputStream()) {
+            byte[] magic = in.readNBytes(8);
+            codec = CompressionCodec.detect(magic, magic.length);
+        }
+
+        if (codec != CompressionCodec.NONE) {
+            // Only the head of a compressed upload can be reached without decoding all of it
+            byte[] head;
+            boolean complete;
+            try (InputStream in = ParallelDecompressingInputStream.open(file.getInputStream())) {
+                head = in.readNBytes(COMPRESSED_SAMPLE_BYTES);
+                complete = in.read() < 0;
+            }
+            int end = head.length;
+            while (!complete && end > 0 && head[end - 1] != '\n') {
+                end--;
+            }
+            try (SeekableByteChannel channel = new SeekableInMemoryByteChannel(Arrays.copyOf(head, end))) {
+                FilePreview preview = new FileSampler(channel, delimiter, limit, sampleRows).sample();
+                preview.setCompressed(true);
+                return preview;
+            }
+        }
+
+        // A multipart upload spooled to disk is moved rather than copied here
+        Path tempFile = Files.createTempFile("sample_", ".csv");
+        try {
+            file.transferTo(tempFile.toFile());
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.READ)) {
+                return new FileSampler(channel, delimiter, limit, sampleRows).sample();
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+}
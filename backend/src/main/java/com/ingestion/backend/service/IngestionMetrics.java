@@ -0,0 +1,206 @@
+package com.ingestion.backend.service;
+
+import com.ingestion.backend.model.IngestionResult;
+import com.ingestion.backend.model.JobProgress;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Micrometer meters for ingestion, exported on /actuator/prometheus. Rows and bytes are not
+// counted twice: the counters read the striped adders every job already keeps in its
+// JobProgress, so the hot loops pay nothing extra for them. Timers and histograms are recorded
+// once per batch or block of rows, never per row. Every job meter is tagged with the direction
+// (import from a file, export to one) and the table; only the first max-tables tables get a tag
+// of their own, so ad-hoc table names can't grow the number of series without bound.
+@Service
+public class IngestionMetrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(IngestionMetrics.class);
+
+    public static final String IMPORT = "import";
+    public static final String EXPORT = "export";
+    // Tag shared by every table past the cap
+    public static final String OTHER_TABLES = "_other";
+
+    @Value("${ingestion.metrics.max-tables:100}")
+    private int maxTables;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Autowired
+    private JobScheduler jobScheduler;
+
+    private final Map<String, Flow> flows = new ConcurrentHashMap<>();
+    private final Map<String, JobMeters> jobMeters = new ConcurrentHashMap<>();
+    private final Set<String> taggedTables = ConcurrentHashMap.newKeySet();
+    private boolean capReached;
+
+    @PostConstruct
+    public void start() {
+        Gauge.builder("ingestion.jobs.queued", jobScheduler, JobScheduler::getQueuedCount)
+                .description("Jobs waiting for a slot")
+                .register(registry);
+        Gauge.builder("ingestion.jobs.running", jobScheduler, JobScheduler::getRunningCount)
+                .description("Jobs holding a slot")
+                .register(registry);
+    }
+
+    // A job got its slot; its rows and bytes count from here on
+    public void started(IngestionResult result) {
+        flow(direction(result), result.getTableName()).add(result.getProgress());
+    }
+
+    // Whatever the job moved stays in the totals after it is gone
+    public void finished(IngestionResult result) {
+        flow(direction(result), result.getTableName()).remove(result.getProgress());
+    }
+
+    // Timers and histograms for one direction and table; look them up once per job, not per batch
+    public JobMeters meters(String direction, String tableName) {
+        String table = tableTag(tableName);
+        return jobMeters.computeIfAbsent(direction + "/" + table, key -> new JobMeters(registry, direction, table));
+    }
+
+    public static String direction(IngestionResult result) {
+        return "CLICKHOUSE_TO_FLATFILE".equals(result.getType()) ? EXPORT : IMPORT;
+    }
+
+    private Flow flow(String direction, String tableName) {
+        String table = tableTag(tableName);
+        return flows.computeIfAbsent(direction + "/" + table, key -> new Flow(registry, direction, table));
+    }
+
+    // Tables are never untagged, so a table keeps the tag it first got and a job's start and finish
+    // always reach the same counters
+    private String tableTag(String tableName) {
+        String table = tableName != null ? tableName : "";
+        if (taggedTables.contains(table)) {
+            return table;
+        }
+        synchronized (taggedTables) {
+            if (taggedTables.contains(table) || taggedTables.size() < maxTables) {
+                taggedTables.add(table);
+                return table;
+            }
+            if (!capReached) {
+                capReached = true;
+                logger.warn("Metrics are tagged for {} tables already; further tables are counted as {}",
+                        maxTables, OTHER_TABLES);
+            }
+        }
+        return OTHER_TABLES;
+    }
+
+    public static final class JobMeters {
+        private final Timer batchLatency;
+        private final DistributionSummary batchSize;
+        private final Timer parseTime;
+        private final Timer encodeTime;
+
+        private JobMeters(MeterRegistry registry, String direction, String table) {
+            batchLatency = Timer.builder("ingestion.batch.latency")
+                    .description("Time to insert one parsed batch")
+                    .tags("direction", direction, "table", table)
+                    .publishPercentileHistogram()
+                    .register(registry);
+            batchSize = DistributionSummary.builder("ingestion.batch.size")
+                    .description("Rows per inserted batch")
+                    .baseUnit("rows")
+                    .tags("direction", direction, "table", table)
+                    .publishPercentileHistogram()
+                    .register(registry);
+            // Divided by the rate of ingestion.bytes these give the time spent per MB
+            parseTime = Timer.builder("ingestion.parse.time")
+                    .description("Time spent parsing input into batches")
+                    .tags("direction", direction, "table", table)
+                    .register(registry);
+            encodeTime = Timer.builder("ingestion.encode.time")
+                    .description("Time spent encoding rows into output bytes")
+                    .tags("direction", direction, "table", table)
+                    .register(registry);
+        }
+
+        public void batchInserted(int rows, long nanos) {
+            batchLatency.record(nanos, TimeUnit.NANOSECONDS);
+            batchSize.record(rows);
+        }
+
+        public void parsed(long nanos) {
+            parseTime.record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        public void encoded(long nanos) {
+            encodeTime.record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Running totals for one direction and table: what finished jobs moved plus the live
+    // counters of the running ones. Jobs move from live to finished under the lock, so a scrape
+    // never sees the counter go backwards.
+    private static final class Flow {
+        private final boolean export;
+        private final Set<JobProgress> live = new HashSet<>();
+        private long finishedRows;
+        private long finishedBytes;
+
+        Flow(MeterRegistry registry, String direction, String table) {
+            export = EXPORT.equals(direction);
+            FunctionCounter.builder("ingestion.rows", this, Flow::rows)
+                    .description("Rows moved")
+                    .baseUnit("rows")
+                    .tags("direction", direction, "table", table)
+                    .register(registry);
+            FunctionCounter.builder("ingestion.bytes", this, Flow::bytes)
+                    .description("Input bytes read on import, output bytes written on export")
+                    .baseUnit("bytes")
+                    .tags("direction", direction, "table", table)
+                    .register(registry);
+        }
+
+        synchronized void add(JobProgress progress) {
+            live.add(progress);
+        }
+
+        synchronized void remove(JobProgress progress) {
+            if (live.remove(progress)) {
+                finishedRows += progress.getRows();
+                finishedBytes += bytes(progress);
+            }
+        }
+
+        synchronized double rows() {
+            long rows = finishedRows;
+            for (JobProgress progress : live) {
+                rows += progress.getRows();
+            }
+            return rows;
+        }
+
+        synchronized double bytes() {
+            long bytes = finishedBytes;
+            for (JobProgress progress : live) {
+                bytes += bytes(progress);
+            }
+            return bytes;
+        }
+
+        private long bytes(JobProgress progress) {
+            return export ? progress.getBytesWritten() : progress.getBytesRead();
+        }
+    }
+}
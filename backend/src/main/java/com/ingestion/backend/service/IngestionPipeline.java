@@ -0,0 +1,201 @@
+package com.ingestion.backend.service;
+
+import com.ingestion.backend.model.JobProgress;
+import com.ingestion.backend.model.StageMetrics;
+import com.ingestion.backend.util.BatchParser;
+import com.ingestion.backend.util.RowBatch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs file ingestion as overlapping stages: the input is parsed (in parallel chunks for a mapped
+// file, sequentially for an upload stream), parsed batches go through a bounded queue, and K
+// insert workers drain it, each over its own connection. The parser blocks when the queue is
+// full, so at most (chunks in flight + queue capacity + K) batches are held in memory at any time.
+class IngestionPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(IngestionPipeline.class);
+
+    // Marks the end of input for one worker
+    private static final RowBatch END = new RowBatch(-1, List.of());
+    private static final long POLL_MILLIS = 100;
+
+    // Where an insert worker takes its batches from; null once the input is exhausted
+    interface BatchSource {
+        RowBatch next() throws InterruptedException;
+    }
+
+    // One insert worker; returns the number of rows it wrote
+    interface InsertWorker {
+        long run(int index, BatchSource source) throws Exception;
+    }
+
+    private final BatchParser parser;
+    private final int workers;
+    private final InsertWorker worker;
+    private final BlockingQueue<RowBatch> queue;
+    private final StageMetrics parseMetrics;
+    private final StageMetrics insertMetrics;
+    private final JobProgress progress;
+    private final IngestionMetrics.JobMeters meters;
+
+    private volatile boolean aborted;
+
+    IngestionPipeline(BatchParser parser, int workers, InsertWorker worker, JobProgress progress,
+                      IngestionMetrics.JobMeters meters) {
+        this.parser = parser;
+        this.workers = workers;
+        this.worker = worker;
+        this.progress = progress;
+        this.meters = meters;
+        this.queue = new ArrayBlockingQueue<>(workers * 2);
+        this.parseMetrics = new StageMetrics("parse", parser.getParallelism(), parser.getMaxChunksInFlight());
+        this.insertMetrics = new StageMetrics("insert", workers, workers * 2);
+    }
+
+    List<StageMetrics> getStages() {
+        return Arrays.asList(parseMetrics, insertMetrics);
+    }
+
+    // Parse and insert everything; returns the total rows written by the workers
+    long run() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "ingest-insert");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger finished = new AtomicInteger();
+        List<Future<Long>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < workers; i++) {
+                int index = i;
+                futures.add(executor.submit(() -> {
+                    try {
+                        return worker.run(index, newSource());
+                    } catch (Exception e) {
+                        // Stop the parser and the other workers instead of letting them block on the queue
+                        aborted = true;
+                        throw e;
+                    } finally {
+                        finished.incrementAndGet();
+                    }
+                }));
+            }
+
+            try {
+                long[] last = {System.nanoTime()};
+                long[] bytesReported = {0};
+                parser.parse(batch -> {
+                    long now = System.nanoTime();
+                    parseMetrics.recordBatch(batch.size(), now - last[0]);
+                    meters.parsed(now - last[0]);
+                    parseMetrics.recordQueueDepth(parser.getChunksInFlight());
+                    long bytes = parser.getBytesRead();
+                    progress.addBytesRead(bytes - bytesReported[0]);
+                    bytesReported[0] = bytes;
+                    put(batch, finished);
+                    last[0] = System.nanoTime();
+                });
+                for (int i = 0; i < workers; i++) {
+                    put(END, finished);
+                }
+            } catch (Exception e) {
+                aborted = true;
+                // If a worker failed, that is the root cause rather than the parser giving up
+                try {
+                    collect(futures);
+                } catch (CancellationException workersStopped) {
+                    // The workers only stopped because the parser did
+                }
+                throw e;
+            } finally {
+                parseMetrics.finish();
+            }
+
+            return collect(futures);
+        } finally {
+            insertMetrics.finish();
+            executor.shutdownNow();
+        }
+    }
+
+    private void put(RowBatch batch, AtomicInteger finished) throws InterruptedException {
+        while (!queue.offer(batch, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (aborted || finished.get() == workers) {
+                throw new CancellationException("Insert workers stopped");
+            }
+        }
+        insertMetrics.recordQueueDepth(queue.size());
+    }
+
+    // Each worker gets its own source so the time spent on a batch can be charged to the insert stage
+    private BatchSource newSource() {
+        return new BatchSource() {
+            private RowBatch current;
+            private long takenAt;
+
+            @Override
+            public RowBatch next() throws InterruptedException {
+                // Asking for the next batch means the last one has been written
+                if (current != null) {
+                    long nanos = System.nanoTime() - takenAt;
+                    insertMetrics.recordBatch(current.size(), nanos);
+                    meters.batchInserted(current.size(), nanos);
+                    progress.addRows(current.size());
+                }
+                current = take();
+                takenAt = System.nanoTime();
+                return current;
+            }
+        };
+    }
+
+    private RowBatch take() throws InterruptedException {
+        while (true) {
+            if (aborted) {
+                throw new CancellationException("Ingestion aborted");
+            }
+            RowBatch batch = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if (batch == null) {
+                continue;
+            }
+            insertMetrics.recordQueueDepth(queue.size());
+            return batch == END ? null : batch;
+        }
+    }
+
+    // Waits for every worker and sums their rows. A worker that stopped only because another one
+    // failed reports a CancellationException, so the first other failure wins.
+    private static long collect(List<Future<Long>> futures) throws Exception {
+        long rows = 0;
+        Exception failure = null;
+        for (Future<Long> future : futures) {
+            try {
+                rows += future.get();
+            } catch (ExecutionException e) {
+                Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                if (failure == null || failure instanceof CancellationException) {
+                    failure = cause;
+                }
+            }
+        }
+        if (failure != null) {
+            logger.debug("Insert worker failed", failure);
+            throw failure;
+        }
+        return rows;
+    }
+}
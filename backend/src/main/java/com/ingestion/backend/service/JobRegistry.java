@@ -0,0 +1,291 @@
+package com.ingestion.backend.service;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ingestion.backend.model.IngestionResult;
+import com.ingestion.backend.model.JobPage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Status of every ingestion job. Jobs that are queued or running are held in memory, which the
+// scheduler's queue and slot limits keep bounded; finished ones stay in a size- and time-bounded
+// cache for quick status checks. Each job's state is appended to a JSON-lines journal when it
+// starts and when it ends, so history survives restarts; the journal is compacted to the newest
+// max-history jobs once superseded records pile up. Those same jobs are indexed in memory, so
+// lookups and listings never read the file, which is only read back at startup.
+@Service
+public class JobRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobRegistry.class);
+
+    // Live counters and queue position mean nothing once the job is over
+    private static final List<String> TRANSIENT_FIELDS = List.of("progress", "stages", "queueDepth", "durationMillis");
+
+    private static final Comparator<IngestionResult> NEWEST_FIRST = Comparator
+            .comparingLong(IngestionResult::getStartTime).reversed()
+            .thenComparing(IngestionResult::getIngestionId);
+
+    @Value("${ingestion.registry.max-finished:1000}")
+    private long maxFinished;
+
+    @Value("${ingestion.registry.finished-ttl-ms:3600000}")
+    private long finishedTtlMs;
+
+    @Value("${ingestion.registry.journal-path:${user.home}/.ingestion/jobs.jsonl}")
+    private String journalPath;
+
+    @Value("${ingestion.registry.max-history:10000}")
+    private int maxHistory;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Map<String, IngestionResult> active = new ConcurrentHashMap<>();
+    // Latest journal record of the newest max-history jobs; read without the lock, updated under it
+    private final Map<String, IngestionResult> history = new ConcurrentHashMap<>();
+    private final TreeSet<IngestionResult> historyOrder = new TreeSet<>(NEWEST_FIRST);
+    private Cache<String, IngestionResult> finished;
+    private ObjectReader reader;
+    private Path journal;
+    private BufferedWriter writer;
+    private int journalRecords;
+    private boolean closed;
+
+    @PostConstruct
+    public void start() throws IOException {
+        // Evicting on the calling thread keeps the bound exact rather than eventually enforced
+        finished = Caffeine.newBuilder()
+                .executor(Runnable::run)
+                .maximumSize(maxFinished)
+                .expireAfterWrite(finishedTtlMs, TimeUnit.MILLISECONDS)
+                .build();
+        // Older journals may carry fields this version no longer has
+        reader = objectMapper.readerFor(IngestionResult.class).without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        journal = Paths.get(journalPath);
+        recover();
+    }
+
+    // Track a job from the moment it is accepted
+    public void register(IngestionResult result) {
+        active.put(result.getIngestionId(), result);
+    }
+
+    // A job that was refused before it was queued leaves no trace
+    public void discard(String ingestionId) {
+        active.remove(ingestionId);
+    }
+
+    // Recorded when the job gets its slot, so one cut off by a crash still shows up afterwards
+    public void started(IngestionResult result) {
+        append(result);
+    }
+
+    public void finish(IngestionResult result) {
+        finished.put(result.getIngestionId(), result);
+        active.remove(result.getIngestionId());
+        append(result);
+    }
+
+    // Live state for queued, running and recently finished jobs; the journal's record for older ones
+    public IngestionResult get(String ingestionId) {
+        IngestionResult result = active.get(ingestionId);
+        if (result == null) {
+            result = finished.getIfPresent(ingestionId);
+        }
+        if (result == null) {
+            result = history.get(ingestionId);
+        }
+        return result;
+    }
+
+    // Jobs matching every filter given, newest first. since and until bound the start time.
+    public JobPage query(String status, String type, String tableName, Long since, Long until, int offset, int limit) {
+        Map<String, IngestionResult> jobs = new HashMap<>(history);
+        jobs.putAll(finished.asMap());
+        jobs.putAll(active);
+
+        List<IngestionResult> matching = new ArrayList<>();
+        for (IngestionResult job : jobs.values()) {
+            if ((status == null || status.equalsIgnoreCase(job.getStatus()))
+                    && (type == null || type.equalsIgnoreCase(job.getType()))
+                    && (tableName == null || tableName.equals(job.getTableName()))
+                    && (since == null || job.getStartTime() >= since)
+                    && (until == null || job.getStartTime() < until)) {
+                matching.add(job);
+            }
+        }
+        matching.sort(NEWEST_FIRST);
+
+        JobPage page = new JobPage();
+        page.setTotal(matching.size());
+        page.setOffset(offset);
+        page.setLimit(limit);
+        page.setJobs(offset >= matching.size()
+                ? List.of()
+                : new ArrayList<>(matching.subList(offset, Math.min(matching.size(), offset + limit))));
+        return page;
+    }
+
+    // Runs after the scheduler has shut down, so jobs it cut short are recorded as failed
+    @PreDestroy
+    public synchronized void shutdown() {
+        for (IngestionResult result : active.values()) {
+            append(result);
+        }
+        closed = true;
+        closeWriter();
+    }
+
+    // Jobs the journal last saw unfinished were lost with the previous process
+    private synchronized void recover() throws IOException {
+        if (!Files.exists(journal)) {
+            return;
+        }
+        Map<String, IngestionResult> jobs = readJournal();
+        int lost = 0;
+        for (IngestionResult job : jobs.values()) {
+            String status = job.getStatus();
+            if (!"COMPLETED".equals(status) && !"FAILED".equals(status) && !"CANCELLED".equals(status)) {
+                job.setStatus("FAILED");
+                job.setMessage("Server stopped before the job finished");
+                lost++;
+            }
+        }
+        if (lost > 0) {
+            logger.warn("Marked {} jobs left unfinished by the previous run as failed", lost);
+        }
+        for (IngestionResult job : jobs.values()) {
+            index(job);
+        }
+        rewrite();
+    }
+
+    private synchronized void append(IngestionResult result) {
+        if (closed) {
+            return;
+        }
+        try {
+            if (writer == null) {
+                if (journal.getParent() != null) {
+                    Files.createDirectories(journal.getParent());
+                }
+                writer = Files.newBufferedWriter(journal, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            String record = toRecord(result);
+            writer.write(record);
+            writer.newLine();
+            writer.flush();
+            journalRecords++;
+            // A copy as read back from the journal, so later changes to the live job don't leak in
+            index(reader.readValue(record));
+            if (journalRecords > 2 * maxHistory) {
+                rewrite();
+            }
+        } catch (IOException e) {
+            // History is best effort; a full disk must not fail the job itself
+            logger.warn("Could not write job {} to the journal {}", result.getIngestionId(), journal, e);
+        }
+    }
+
+    // Latest record per job, in the order jobs were last updated. Partly written lines from a
+    // crash are skipped.
+    private Map<String, IngestionResult> readJournal() {
+        Map<String, IngestionResult> jobs = new LinkedHashMap<>();
+        if (!Files.exists(journal)) {
+            return jobs;
+        }
+        try (BufferedReader in = Files.newBufferedReader(journal, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    IngestionResult job = reader.readValue(line);
+                    jobs.remove(job.getIngestionId());
+                    jobs.put(job.getIngestionId(), job);
+                } catch (IOException e) {
+                    logger.warn("Skipping unreadable journal record: {}", e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Could not read the job journal {}", journal, e);
+        }
+        return jobs;
+    }
+
+    // Hold a job's latest record, dropping the oldest jobs beyond max-history as compaction would
+    private synchronized void index(IngestionResult job) {
+        IngestionResult previous = history.put(job.getIngestionId(), job);
+        if (previous != null) {
+            historyOrder.remove(previous);
+        }
+        historyOrder.add(job);
+        while (historyOrder.size() > maxHistory) {
+            history.remove(historyOrder.pollLast().getIngestionId());
+        }
+    }
+
+    // Replace the journal with one record per indexed job
+    private synchronized void rewrite() throws IOException {
+        closeWriter();
+        Path temp = journal.resolveSibling(journal.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            // Oldest first, as if appended in order
+            for (Iterator<IngestionResult> jobs = historyOrder.descendingIterator(); jobs.hasNext(); ) {
+                out.write(toRecord(jobs.next()));
+                out.newLine();
+            }
+        }
+        Files.move(temp, journal, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        journalRecords = historyOrder.size();
+    }
+
+    private String toRecord(IngestionResult result) throws IOException {
+        ObjectNode node = objectMapper.valueToTree(result);
+        node.remove(TRANSIENT_FIELDS);
+        return objectMapper.writeValueAsString(node);
+    }
+
+    private void closeWriter() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            logger.warn("Could not close the job journal {}", journal, e);
+        }
+        writer = null;
+    }
+}
@@ -0,0 +1,303 @@
+package com.ingestion.backend.service;
+
+import com.ingestion.backend.model.IngestionResult;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Runs ingestion jobs from a bounded priority queue. At most max-concurrent jobs run at once and
+// at most max-per-host against any one ClickHouse node; a job whose host is busy waits without
+// holding up jobs for other hosts. Jobs run on virtual threads when the JVM has them.
+// The job registry outlives the scheduler so jobs failed at shutdown still reach the journal.
+@Service
+@DependsOn("jobRegistry")
+public class JobScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobScheduler.class);
+
+    // Higher priority first, then first come first served
+    private static final Comparator<Job> ORDER = Comparator.comparingInt((Job job) -> -job.priority)
+            .thenComparingLong(job -> job.sequence);
+
+    @Value("${ingestion.jobs.max-concurrent:8}")
+    private int maxConcurrent;
+
+    @Value("${ingestion.jobs.max-per-host:2}")
+    private int maxPerHost;
+
+    @Value("${ingestion.jobs.max-queued:100}")
+    private int maxQueued;
+
+    @Value("${ingestion.jobs.shutdown-timeout-ms:30000}")
+    private long shutdownTimeoutMs;
+
+    private final PriorityQueue<Job> queue = new PriorityQueue<>(ORDER);
+    private final Map<String, Integer> runningPerHost = new HashMap<>();
+    private final List<Job> running = new ArrayList<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private ExecutorService executor;
+    private boolean shuttingDown;
+
+    @PostConstruct
+    public void start() {
+        executor = newExecutor();
+    }
+
+    // Queue a job to run in the background. Throws RejectedExecutionException when the queue
+    // is full or the server is shutting down.
+    public void submit(String host, int priority, IngestionResult result, Runnable body) {
+        enqueue(new Job(host, priority, result, body, false));
+    }
+
+    // Wait for a slot and run the job on the calling thread, for work that can only be done while
+    // the request is open, such as reading an upload off the wire
+    public void runInline(String host, int priority, IngestionResult result, Runnable body) throws InterruptedException {
+        Job job = new Job(host, priority, result, body, true);
+        enqueue(job);
+        try {
+            job.started.await();
+        } catch (InterruptedException e) {
+            synchronized (this) {
+                if (queue.remove(job)) {
+                    updateQueuePositions();
+                    throw e;
+                }
+            }
+            // Dispatched just as the wait was interrupted; the slot is ours, so give it back
+            finish(job);
+            throw e;
+        }
+        // Cancelled by shutdown while waiting; the result already says so
+        if (job.cancelled) {
+            return;
+        }
+        run(job);
+    }
+
+    // Where a job was when it was cancelled
+    public enum Cancellation { QUEUED, RUNNING, NOT_FOUND }
+
+    // Take a waiting job out of the queue, or interrupt a running one. A job that has already
+    // finished, or was never submitted, is NOT_FOUND.
+    public synchronized Cancellation cancel(IngestionResult result) {
+        for (Job job : queue) {
+            if (job.result == result) {
+                queue.remove(job);
+                job.cancelled = true;
+                job.started.countDown();
+                updateQueuePositions();
+                return Cancellation.QUEUED;
+            }
+        }
+        for (Job job : running) {
+            if (job.result == result) {
+                job.cancelled = true;
+                if (job.thread != null) {
+                    job.thread.interrupt();
+                }
+                return Cancellation.RUNNING;
+            }
+        }
+        return Cancellation.NOT_FOUND;
+    }
+
+    public synchronized int getQueuedCount() {
+        return queue.size();
+    }
+
+    public synchronized int getRunningCount() {
+        return running.size();
+    }
+
+    public int getMaxPerHost() {
+        return maxPerHost;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        synchronized (this) {
+            shuttingDown = true;
+            for (Job job : queue) {
+                IngestionResult result = job.result;
+                result.setStatus("FAILED");
+                result.setMessage("Server shut down before the job started");
+                result.setQueueDepth(0);
+                result.setEndTime(System.currentTimeMillis());
+                job.cancelled = true;
+                job.started.countDown();
+            }
+            queue.clear();
+            if (!running.isEmpty()) {
+                logger.info("Waiting up to {} ms for {} running ingestion jobs", shutdownTimeoutMs, running.size());
+            }
+            // Let running jobs finish; finish() wakes this up as each one ends
+            long deadline = System.currentTimeMillis() + shutdownTimeoutMs;
+            long remaining = shutdownTimeoutMs;
+            while (!running.isEmpty() && remaining > 0) {
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                remaining = deadline - System.currentTimeMillis();
+            }
+            // Whatever did not finish in time is recorded with the progress it had made
+            for (Job job : running) {
+                IngestionResult result = job.result;
+                result.setStatus("FAILED");
+                result.setMessage("Interrupted by server shutdown after " + result.getTotalRecords() + " records");
+                result.setEndTime(System.currentTimeMillis());
+                if (job.thread != null) {
+                    job.thread.interrupt();
+                }
+            }
+        }
+        executor.shutdownNow();
+    }
+
+    private synchronized void enqueue(Job job) {
+        if (shuttingDown) {
+            throw new RejectedExecutionException("Server is shutting down");
+        }
+        if (queue.size() >= maxQueued) {
+            throw new RejectedExecutionException("Ingestion queue is full (" + maxQueued + " jobs waiting)");
+        }
+        job.result.setStatus("QUEUED");
+        job.result.setPriority(job.priority);
+        queue.add(job);
+        updateQueuePositions();
+        dispatch();
+    }
+
+    // Start every queued job that has both a global and a per-host slot free, best first
+    private synchronized void dispatch() {
+        if (shuttingDown || running.size() >= maxConcurrent) {
+            return;
+        }
+        List<Job> waiting = new ArrayList<>(queue);
+        waiting.sort(ORDER);
+        boolean started = false;
+        for (Job job : waiting) {
+            if (running.size() >= maxConcurrent) {
+                break;
+            }
+            if (runningPerHost.getOrDefault(job.host, 0) >= maxPerHost) {
+                continue;
+            }
+            queue.remove(job);
+            running.add(job);
+            runningPerHost.merge(job.host, 1, Integer::sum);
+            long now = System.currentTimeMillis();
+            job.result.setQueueDepth(0);
+            job.result.setQueuedMillis(now - job.queuedAt);
+            started = true;
+            if (job.inline) {
+                job.started.countDown();
+            } else {
+                executor.execute(() -> run(job));
+            }
+        }
+        if (started) {
+            updateQueuePositions();
+        }
+    }
+
+    private void run(Job job) {
+        job.thread = Thread.currentThread();
+        // Cancelled between dispatch and here, before there was a thread to interrupt
+        if (job.cancelled) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            job.body.run();
+        } catch (RuntimeException e) {
+            logger.error("Ingestion job {} failed: ", job.result.getIngestionId(), e);
+            job.result.setStatus("FAILED");
+            job.result.setMessage("Error: " + e.getMessage());
+            job.result.setEndTime(System.currentTimeMillis());
+        } finally {
+            job.thread = null;
+            // Don't leave a cancel's interrupt behind for whatever the thread does next
+            if (job.cancelled) {
+                Thread.interrupted();
+            }
+            finish(job);
+        }
+    }
+
+    private synchronized void finish(Job job) {
+        running.remove(job);
+        runningPerHost.computeIfPresent(job.host, (host, count) -> count > 1 ? count - 1 : null);
+        dispatch();
+        notifyAll();
+    }
+
+    // How many jobs would start before each waiting one, and how long it has waited so far
+    private void updateQueuePositions() {
+        List<Job> waiting = new ArrayList<>(queue);
+        waiting.sort(ORDER);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < waiting.size(); i++) {
+            Job job = waiting.get(i);
+            job.result.setQueueDepth(i + 1);
+            job.result.setQueuedMillis(now - job.queuedAt);
+        }
+    }
+
+    // Virtual threads need Java 21; the build targets 17, so they are looked up at runtime and
+    // plain daemon threads are used on older JVMs. Either way the slots above bound concurrency.
+    private static ExecutorService newExecutor() {
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            logger.info("Running ingestion jobs on virtual threads");
+            return executor;
+        } catch (ReflectiveOperationException e) {
+            logger.info("Virtual threads unavailable, running ingestion jobs on platform threads");
+            AtomicLong threads = new AtomicLong();
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "ingestion-job-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private final class Job {
+        final String host;
+        final int priority;
+        final IngestionResult result;
+        final Runnable body;
+        final boolean inline;
+        final long sequence = JobScheduler.this.sequence.incrementAndGet();
+        final long queuedAt = System.currentTimeMillis();
+        final CountDownLatch started = new CountDownLatch(1);
+        volatile Thread thread;
+        volatile boolean cancelled;
+
+        Job(String host, int priority, IngestionResult result, Runnable body, boolean inline) {
+            this.host = host;
+            this.priority = priority;
+            this.result = result;
+            this.body = body;
+            this.inline = inline;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.ingestion.backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.ingestion.backend.model.IngestionRequest;
+import com.ingestion.backend.model.MetadataCacheStats;
+import com.ingestion.backend.model.TableSchema;
+import com.ingestion.backend.model.TableSchema.ColumnDefinition;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+// Table lists, schemas and column names, cached per target so the form can click around without
+// a metadata query each time. Concurrent misses for the same entry share one load; failed loads
+// are not cached. Table lists expire sooner than schemas since new tables appear more often than
+// existing ones change.
+@Service
+public class MetadataCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetadataCache.class);
+
+    // Loads an entry on a miss
+    public interface Loader<T> {
+        T load() throws SQLException;
+    }
+
+    private enum Kind { TABLES, SCHEMA, COLUMNS }
+
+    @Value("${clickhouse.metadata.tables-ttl-ms:30000}")
+    private long tablesTtlMs;
+
+    @Value("${clickhouse.metadata.schema-ttl-ms:300000}")
+    private long schemaTtlMs;
+
+    @Value("${clickhouse.metadata.max-entries:1000}")
+    private long maxEntries;
+
+    private Cache<MetadataKey, Object> cache;
+
+    @PostConstruct
+    public void start() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfter(new Expiry<MetadataKey, Object>() {
+                    @Override
+                    public long expireAfterCreate(MetadataKey key, Object value, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(key.kind == Kind.TABLES ? tablesTtlMs : schemaTtlMs);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(MetadataKey key, Object value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(MetadataKey key, Object value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    public List<String> getTables(IngestionRequest request, Loader<List<String>> loader) throws SQLException {
+        return get(new MetadataKey(Kind.TABLES, request, null), () -> List.copyOf(loader.load()));
+    }
+
+    // Each caller gets its own copy of the schema, so changing it can't leak into the cache
+    public TableSchema getSchema(IngestionRequest request, String tableName, Loader<TableSchema> loader) throws SQLException {
+        return copy(get(new MetadataKey(Kind.SCHEMA, request, tableName), () -> copy(loader.load())));
+    }
+
+    // Columns of a table on the application's default target
+    public List<String> getColumns(String tableName, Loader<List<String>> loader) throws SQLException {
+        return get(new MetadataKey(Kind.COLUMNS, null, tableName), () -> List.copyOf(loader.load()));
+    }
+
+    // Drop everything the tool knows about a table it has just created or altered
+    public void invalidateTable(IngestionRequest request, String tableName) {
+        cache.invalidate(new MetadataKey(Kind.TABLES, request, null));
+        cache.invalidate(new MetadataKey(Kind.SCHEMA, request, tableName));
+        cache.invalidate(new MetadataKey(Kind.COLUMNS, null, tableName));
+        logger.debug("Invalidated cached metadata for {}", tableName);
+    }
+
+    public MetadataCacheStats getStats() {
+        CacheStats stats = cache.stats();
+        MetadataCacheStats result = new MetadataCacheStats();
+        result.setSize(cache.estimatedSize());
+        result.setMaxEntries(maxEntries);
+        result.setHitCount(stats.hitCount());
+        result.setMissCount(stats.missCount());
+        result.setHitRate(stats.hitRate());
+        result.setLoadSuccessCount(stats.loadSuccessCount());
+        result.setLoadFailureCount(stats.loadFailureCount());
+        result.setAverageLoadMillis(stats.averageLoadPenalty() / 1_000_000.0);
+        result.setEvictionCount(stats.evictionCount());
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(MetadataKey key, Loader<T> loader) throws SQLException {
+        try {
+            return (T) cache.get(key, k -> {
+                try {
+                    return loader.load();
+                } catch (SQLException e) {
+                    throw new LoadFailure(e);
+                }
+            });
+        } catch (LoadFailure e) {
+            throw (SQLException) e.getCause();
+        }
+    }
+
+    private static TableSchema copy(TableSchema schema) {
+        List<ColumnDefinition> columns = new ArrayList<>();
+        for (ColumnDefinition column : schema.getColumns()) {
+            columns.add(new ColumnDefinition(column.getName(), column.getType()));
+        }
+        TableSchema copy = new TableSchema(schema.getTableName(), columns);
+        copy.setSortingKey(schema.getSortingKey());
+        copy.setSamplingKey(schema.getSamplingKey());
+        copy.setPartitionKey(schema.getPartitionKey());
+        copy.setPrimaryKey(schema.getPrimaryKey());
+        return copy;
+    }
+
+    // Carries a checked SQLException out of the cache's mapping function
+    private static class LoadFailure extends RuntimeException {
+        LoadFailure(SQLException cause) {
+            super(cause);
+        }
+    }
+
+    // Entries are per credentials as well as per target, since what a user can see depends on
+    // their grants and a wrong password must not be answered from the cache
+    private static final class MetadataKey {
+        final Kind kind;
+        final String host;
+        final int port;
+        final String database;
+        final String username;
+        final String password;
+        final String tableName;
+
+        MetadataKey(Kind kind, IngestionRequest request, String tableName) {
+            this.kind = kind;
+            this.host = request != null ? request.getHost() : null;
+            this.port = request != null ? request.getPort() : 0;
+            this.database = request != null ? request.getDatabase() : null;
+            this.username = request != null ? request.getUsername() : null;
+            this.password = request != null ? request.getPassword() : null;
+            this.tableName = tableName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof MetadataKey)) {
+                return false;
+            }
+            MetadataKey other = (MetadataKey) o;
+            return kind == other.kind && port == other.port && Objects.equals(host, other.host)
+                    && Objects.equals(database, other.database) && Objects.equals(username, other.username)
+                    && Objects.equals(password, other.password) && Objects.equals(tableName, other.tableName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(kind, host, port, database, username, password, tableName);
+        }
+    }
+}
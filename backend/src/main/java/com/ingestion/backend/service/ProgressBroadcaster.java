@@ -0,0 +1,108 @@
+package com.ingestion.backend.service;
+
+import com.ingestion.backend.model.IngestionResult;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Pushes job status to server-sent event subscribers. One timer reads every watched job at a
+// fixed cadence, so the cost follows the number of subscribers rather than how fast jobs move,
+// and clients no longer poll the status endpoint. A job's last event carries its final status.
+@Service
+public class ProgressBroadcaster {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProgressBroadcaster.class);
+
+    @Value("${ingestion.progress.interval-ms:1000}")
+    private long intervalMs;
+
+    private final Map<IngestionResult, CopyOnWriteArrayList<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    private ScheduledExecutorService timer;
+
+    @PostConstruct
+    public void start() {
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ingestion-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleAtFixedRate(this::broadcast, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Open an event stream for a job; the current state is sent straight away
+    public SseEmitter subscribe(IngestionResult result) {
+        SseEmitter emitter = new SseEmitter(0L);
+        emitter.onCompletion(() -> remove(result, emitter));
+        emitter.onTimeout(() -> remove(result, emitter));
+        emitter.onError(e -> remove(result, emitter));
+        subscribers.computeIfAbsent(result, key -> new CopyOnWriteArrayList<>()).add(emitter);
+        if (send(emitter, result)) {
+            finishIfDone(result);
+        }
+        return emitter;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+        subscribers.values().forEach(emitters -> emitters.forEach(SseEmitter::complete));
+        subscribers.clear();
+    }
+
+    private void broadcast() {
+        try {
+            for (Map.Entry<IngestionResult, CopyOnWriteArrayList<SseEmitter>> entry : subscribers.entrySet()) {
+                IngestionResult result = entry.getKey();
+                for (SseEmitter emitter : entry.getValue()) {
+                    send(emitter, result);
+                }
+                finishIfDone(result);
+            }
+        } catch (RuntimeException e) {
+            // An exception would cancel the schedule for every subscriber
+            logger.warn("Progress broadcast failed", e);
+        }
+    }
+
+    private boolean send(SseEmitter emitter, IngestionResult result) {
+        try {
+            emitter.send(SseEmitter.event().name("progress").data(result, MediaType.APPLICATION_JSON));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            // The client went away; the container reports it through onError or onCompletion too
+            remove(result, emitter);
+            return false;
+        }
+    }
+
+    private void finishIfDone(IngestionResult result) {
+        String status = result.getStatus();
+        if (!"COMPLETED".equals(status) && !"FAILED".equals(status) && !"CANCELLED".equals(status)) {
+            return;
+        }
+        CopyOnWriteArrayList<SseEmitter> emitters = subscribers.remove(result);
+        if (emitters != null) {
+            emitters.forEach(SseEmitter::complete);
+        }
+    }
+
+    private void remove(IngestionResult result, SseEmitter emitter) {
+        subscribers.computeIfPresent(result, (key, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+}
@@ -0,0 +1,337 @@
+package com.ingestion.backend.service;
+
+import com.ingestion.backend.model.IngestionRequest;
+import com.ingestion.backend.model.JobProgress;
+import com.ingestion.backend.model.ShardProgress;
+import com.ingestion.backend.util.ClickHouseHttpClient;
+import com.ingestion.backend.util.CompressionCodec;
+import com.ingestion.backend.util.ParallelCompressingOutputStream;
+import com.ingestion.backend.util.RecordCounter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+// Splits one export into N disjoint shards that run concurrently, each into its own segment file
+class ShardedExporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardedExporter.class);
+    // Interrupted shards stop at their next read or write; this only bounds a stuck one
+    private static final long SHARD_STOP_TIMEOUT_SECONDS = 30;
+
+    private final IngestionRequest request;
+    private final ClickHouseHttpClient client;
+    private final Function<String, String> queryForPredicate;
+    private final String headerFormat;
+    private final String bodyFormat;
+    private final Map<String, String> settings;
+    private final JobProgress progress;
+    private final String queryIdPrefix;
+    private final int shardCount;
+    // Registers each shard's response so a cancel can drop it
+    private final UnaryOperator<ClickHouseHttpClient.Response> opened;
+    private ExecutorService compressionPool;
+    private int blocksPerShard;
+
+    ShardedExporter(IngestionRequest request, ClickHouseHttpClient client, Function<String, String> queryForPredicate,
+                    String headerFormat, String bodyFormat, Map<String, String> settings, JobProgress progress,
+                    String queryIdPrefix, int shardCount, UnaryOperator<ClickHouseHttpClient.Response> opened) {
+        this.request = request;
+        this.client = client;
+        this.queryForPredicate = queryForPredicate;
+        this.headerFormat = headerFormat;
+        this.bodyFormat = bodyFormat;
+        this.settings = settings;
+        this.progress = progress;
+        this.queryIdPrefix = queryIdPrefix;
+        this.shardCount = shardCount;
+        this.opened = opened;
+    }
+
+    // Work out the shard predicates and create one progress entry per shard
+    List<ShardProgress> planShards() throws IOException {
+        String strategy = request.getShardStrategy() != null ? request.getShardStrategy().toUpperCase() : "RANGE";
+        String sortingKey = sortingKey();
+        List<String> predicates = null;
+
+        if (strategy.equals("PARTITION")) {
+            predicates = partitionPredicates(shardCount);
+            if (predicates == null) {
+                logger.info("Table {} has a single partition, falling back to hash sharding", request.getTableName());
+            }
+        } else if (strategy.equals("RANGE")) {
+            predicates = rangePredicates(shardCount, sortingKey);
+            if (predicates == null) {
+                logger.info("Table {} has no integer or date leading key to range over, falling back to hash sharding",
+                        request.getTableName());
+            }
+        }
+        if (predicates == null) {
+            predicates = hashPredicates(shardCount, sortingKey);
+        }
+
+        List<ShardProgress> shards = new ArrayList<>();
+        for (int i = 0; i < predicates.size(); i++) {
+            shards.add(new ShardProgress(i, predicates.get(i), String.format("%s.part-%04d", request.getFilePath(), i)));
+        }
+        return shards;
+    }
+
+    // Run all shards on a fixed pool, then stitch or keep the segment files. The shards compress on one
+    // pool sized to the machine rather than a pool each.
+    long export(List<ShardProgress> shards) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(shards.size());
+        if (CompressionCodec.fromName(request.getCompression()) != CompressionCodec.NONE) {
+            int threads = Runtime.getRuntime().availableProcessors();
+            compressionPool = ParallelCompressingOutputStream.newPool(threads);
+            // Split the pool's block budget between the shards so memory doesn't grow with their number
+            blocksPerShard = Math.max(2, threads * 2 / shards.size());
+        }
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (ShardProgress shard : shards) {
+                futures.add(pool.submit(() -> {
+                    exportShard(shard);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException | InterruptedException e) {
+            // One failed shard fails the whole export, as does cancelling the job. Segments are only
+            // deleted once every shard has stopped, so none is created or written to afterwards.
+            pool.shutdownNow();
+            boolean interrupted = e instanceof InterruptedException;
+            try {
+                if (!pool.awaitTermination(SHARD_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    logger.warn("Shards of {} did not stop within {}s; their segments may be left behind",
+                            request.getFilePath(), SHARD_STOP_TIMEOUT_SECONDS);
+                }
+            } catch (InterruptedException again) {
+                interrupted = true;
+            }
+            deleteSegments(shards);
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } finally {
+            pool.shutdownNow();
+            if (compressionPool != null) {
+                compressionPool.shutdownNow();
+            }
+        }
+
+        if (!request.isKeepShards()) {
+            progress.setStage("stitching");
+            stitchSegments(shards);
+        }
+        return shards.stream().mapToLong(ShardProgress::getTotalRecords).sum();
+    }
+
+    private void exportShard(ShardProgress shard) throws IOException {
+        shard.setStatus("IN_PROGRESS");
+
+        // Only the first segment carries the header unless shards are kept as standalone files
+        boolean withHeader = request.isKeepShards() || shard.getShardIndex() == 0;
+        String query = queryForPredicate.apply(shard.getPredicate())
+                + " FORMAT " + (withHeader ? headerFormat : bodyFormat);
+
+        // Each shard's query gets its own id under the job's prefix
+        Map<String, String> shardSettings = new HashMap<>(settings);
+        shardSettings.put("query_id", queryIdPrefix + "-" + shard.getShardIndex());
+
+        // Compressed segments are complete gzip/zstd/lz4 streams, so stitching stays a plain concatenation
+        try (ClickHouseHttpClient.Response response = opened.apply(client.query(query, shardSettings));
+             WritableByteChannel channel = ParallelCompressingOutputStream.openChannel(
+                     Paths.get(shard.getFilePath()), CompressionCodec.fromName(request.getCompression()),
+                     compressionPool, blocksPerShard)) {
+            // Rows are counted off the streamed bytes, so progress advances while the shard is still running
+            RecordCounter records = new RecordCounter(
+                    request.getDelimiter() != null ? request.getDelimiter() : ",", withHeader, progress::addRows);
+            shard.setBytesWritten(ClickHouseHttpClient.copy(response.getBody(), channel, progress::addBytesWritten, records));
+            shard.setTotalRecords(records.getRecords());
+            shard.setStatus("COMPLETED");
+        } catch (IOException | RuntimeException e) {
+            shard.setStatus("FAILED");
+            throw e;
+        }
+    }
+
+    // Concatenate the segments in shard order with zero-copy transfers, removing each one afterwards
+    private void stitchSegments(List<ShardProgress> shards) throws IOException {
+        try (FileChannel target = FileChannel.open(Paths.get(request.getFilePath()),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (ShardProgress shard : shards) {
+                Path segment = Paths.get(shard.getFilePath());
+                try (FileChannel source = FileChannel.open(segment, StandardOpenOption.READ)) {
+                    long size = source.size();
+                    long position = 0;
+                    while (position < size) {
+                        position += source.transferTo(position, size - position, target);
+                    }
+                }
+                Files.delete(segment);
+                shard.setFilePath(request.getFilePath());
+            }
+        }
+    }
+
+    private void deleteSegments(List<ShardProgress> shards) {
+        for (ShardProgress shard : shards) {
+            try {
+                Files.deleteIfExists(Paths.get(shard.getFilePath()));
+            } catch (IOException e) {
+                logger.warn("Could not delete shard segment {}", shard.getFilePath(), e);
+            }
+        }
+    }
+
+    // Split the leading sorting key column's min..max into equal-width ranges, so each shard reads only
+    // the granules the primary index leaves it. null when the column isn't an integer or date type.
+    private List<String> rangePredicates(int shardCount, String sortingKey) throws IOException {
+        String column = sortingKey.split(",")[0].trim();
+        if (!column.matches("[A-Za-z_][A-Za-z0-9_]*")) {
+            return null;
+        }
+        String[] table = splitTableName();
+        List<String[]> types = client.queryRows("SELECT type FROM system.columns WHERE database = "
+                + table[0] + " AND table = " + table[1] + " AND name = " + ClickHouseHttpClient.quote(column));
+        // toInt64 is monotonic over these, so the index still prunes on it
+        if (types.isEmpty() || !types.get(0)[0].matches("U?Int(8|16|32)|Int64|Date|Date32|DateTime(\\(.*\\))?")) {
+            return null;
+        }
+
+        String key = "toInt64(" + qualify(column) + ")";
+        List<String[]> bounds = client.queryRows("SELECT toInt64(min(" + column + ")), toInt64(max(" + column
+                + ")) FROM " + request.getTableName());
+        BigInteger min = new BigInteger(bounds.get(0)[0]);
+        BigInteger span = new BigInteger(bounds.get(0)[1]).subtract(min).add(BigInteger.ONE);
+        int ranges = span.min(BigInteger.valueOf(shardCount)).intValue();
+        if (ranges < 2) {
+            return null;
+        }
+
+        // The first and last ranges are open so rows added since the bounds were read aren't missed
+        List<String> predicates = new ArrayList<>();
+        for (int i = 0; i < ranges; i++) {
+            String lower = min.add(span.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(ranges))).toString();
+            String upper = min.add(span.multiply(BigInteger.valueOf(i + 1)).divide(BigInteger.valueOf(ranges))).toString();
+            if (i == 0) {
+                predicates.add(key + " < " + upper);
+            } else if (i == ranges - 1) {
+                predicates.add(key + " >= " + lower);
+            } else {
+                predicates.add(key + " >= " + lower + " AND " + key + " < " + upper);
+            }
+        }
+        return predicates;
+    }
+
+    // cityHash64 over the sorting key (or every column when there is none) modulo the shard count
+    private List<String> hashPredicates(int shardCount, String sortingKey) throws IOException {
+        String[] table = splitTableName();
+        List<String> keyColumns = new ArrayList<>();
+        if (!sortingKey.isEmpty()) {
+            keyColumns.addAll(Arrays.asList(sortingKey.split(",\\s*")));
+        } else {
+            for (String[] column : client.queryRows("SELECT name FROM system.columns WHERE database = "
+                    + table[0] + " AND table = " + table[1] + " ORDER BY position")) {
+                keyColumns.add(column[0]);
+            }
+        }
+
+        // Qualify plain identifiers so JOINed tables with the same column names stay unambiguous;
+        // keys containing expressions are passed through untouched
+        boolean hasJoin = request.getJoinConfig() != null && request.getJoinConfig().get("table") != null;
+        boolean plainIdentifiers = keyColumns.stream().allMatch(column -> column.matches("[A-Za-z_][A-Za-z0-9_]*"));
+        String hashArguments;
+        if (hasJoin && plainIdentifiers) {
+            List<String> qualified = new ArrayList<>();
+            for (String column : keyColumns) {
+                qualified.add(qualify(column));
+            }
+            hashArguments = String.join(", ", qualified);
+        } else {
+            hashArguments = sortingKey.isEmpty() ? String.join(", ", keyColumns) : sortingKey;
+        }
+
+        String hashExpression = "cityHash64(" + hashArguments + ")";
+        List<String> predicates = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            predicates.add(hashExpression + " % " + shardCount + " = " + i);
+        }
+        return predicates;
+    }
+
+    // Distribute active partitions round-robin across shards; null when the table has only one
+    private List<String> partitionPredicates(int shardCount) throws IOException {
+        String[] table = splitTableName();
+        List<String[]> rows = client.queryRows("SELECT DISTINCT partition_id FROM system.parts WHERE database = "
+                + table[0] + " AND table = " + table[1] + " AND active ORDER BY partition_id");
+        if (rows.size() < 2) {
+            return null;
+        }
+
+        int groups = Math.min(shardCount, rows.size());
+        List<List<String>> partitionsByShard = new ArrayList<>();
+        for (int i = 0; i < groups; i++) {
+            partitionsByShard.add(new ArrayList<>());
+        }
+        for (int i = 0; i < rows.size(); i++) {
+            partitionsByShard.get(i % groups).add(ClickHouseHttpClient.quote(rows.get(i)[0]));
+        }
+
+        List<String> predicates = new ArrayList<>();
+        for (List<String> partitions : partitionsByShard) {
+            predicates.add(request.getTableName() + "._partition_id IN (" + String.join(", ", partitions) + ")");
+        }
+        return predicates;
+    }
+
+    private String sortingKey() throws IOException {
+        String[] table = splitTableName();
+        List<String[]> rows = client.queryRows("SELECT sorting_key FROM system.tables WHERE database = "
+                + table[0] + " AND name = " + table[1]);
+        return rows.isEmpty() ? "" : rows.get(0)[0];
+    }
+
+    // Qualify a column of the exported table so a JOINed table with the same column names stays unambiguous
+    private String qualify(String column) {
+        boolean hasJoin = request.getJoinConfig() != null && request.getJoinConfig().get("table") != null;
+        return hasJoin ? request.getTableName() + "." + column : column;
+    }
+
+    // Returns the quoted database and table literals for system table lookups
+    private String[] splitTableName() {
+        String tableName = request.getTableName();
+        int dot = tableName.indexOf('.');
+        if (dot > 0) {
+            return new String[] {
+                    ClickHouseHttpClient.quote(tableName.substring(0, dot)),
+                    ClickHouseHttpClient.quote(tableName.substring(dot + 1))
+            };
+        }
+        String database = request.getDatabase() != null && !request.getDatabase().isEmpty()
+                ? ClickHouseHttpClient.quote(request.getDatabase())
+                : "currentDatabase()";
+        return new String[] { database, ClickHouseHttpClient.quote(tableName) };
+    }
+}
@@ -0,0 +1,172 @@
+package com.ingestion.backend.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ingestion.backend.model.TableSchema.ColumnDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// One page of a table preview, opened before the response starts so query errors still get a
+// proper status, then written straight from the result set as
+// {"columns": [...], "rows": [[...], ...], "rowCount": n, "nextCursor": "..."}.
+// Nothing is held per row, so memory does not grow with the page size.
+public class TablePreview implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(TablePreview.class);
+
+    private final Connection connection;
+    private final Statement statement;
+    private final ResultSet resultSet;
+    private final List<ColumnDefinition> columns;
+    private final int[] cursorIndexes;
+    private final int limit;
+    private final long offset;
+    private final List<String> after;
+    private final long tied;
+    private final ObjectMapper objectMapper;
+
+    // The first columns.size() result columns are returned; cursorIndexes point at the columns whose
+    // last values make the next cursor. Without cursor columns pages are addressed by offset. after
+    // and tied come from the request's cursor: earlier pages ended with tied rows whose cursor
+    // columns equal after, so rows of this page that still equal it add to that count.
+    TablePreview(Connection connection, Statement statement, ResultSet resultSet, List<ColumnDefinition> columns,
+                 int[] cursorIndexes, int limit, long offset, List<String> after, long tied, ObjectMapper objectMapper) {
+        this.connection = connection;
+        this.statement = statement;
+        this.resultSet = resultSet;
+        this.columns = columns;
+        this.cursorIndexes = cursorIndexes;
+        this.limit = limit;
+        this.offset = offset;
+        this.after = after;
+        this.tied = tied;
+        this.objectMapper = objectMapper;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("columns");
+            for (ColumnDefinition column : columns) {
+                generator.writeStartObject();
+                generator.writeStringField("name", column.getName());
+                generator.writeStringField("type", column.getType());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+
+            int rows = 0;
+            String[] last = after != null ? after.toArray(new String[0]) : null;
+            String[] key = new String[cursorIndexes.length];
+            // Rows returned so far whose cursor columns equal the last row's
+            long lastTied = tied;
+            generator.writeArrayFieldStart("rows");
+            while (resultSet.next()) {
+                generator.writeStartArray();
+                for (int i = 1; i <= columns.size(); i++) {
+                    writeValue(generator, resultSet.getObject(i));
+                }
+                generator.writeEndArray();
+                for (int i = 0; i < cursorIndexes.length; i++) {
+                    key[i] = resultSet.getString(cursorIndexes[i]);
+                }
+                lastTied = Arrays.equals(key, last) ? lastTied + 1 : 1;
+                String[] previous = last;
+                last = key;
+                key = previous != null ? previous : new String[cursorIndexes.length];
+                rows++;
+            }
+            generator.writeEndArray();
+
+            generator.writeNumberField("rowCount", rows);
+            // A short page is the last one
+            if (rows < limit) {
+                generator.writeNullField("nextCursor");
+            } else {
+                generator.writeStringField("nextCursor", cursorIndexes.length > 0
+                        ? encodeCursor(Map.of("after", Arrays.asList(last), "tied", lastTied))
+                        : encodeCursor(Map.of("offset", offset + rows)));
+            }
+            generator.writeEndObject();
+        } catch (SQLException e) {
+            // The status is already sent; the client sees a truncated document
+            logger.error("Table preview failed mid-stream: ", e);
+            throw new IOException("Error reading preview rows: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            resultSet.close();
+            statement.close();
+        } catch (SQLException e) {
+            logger.warn("Could not close preview query", e);
+        } finally {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                logger.warn("Could not return preview connection", e);
+            }
+        }
+    }
+
+    // Decode a cursor into either "after" (cursor column values) with "tied" (rows already returned
+    // with those values) or "offset"; null means the first page
+    static Map<String, Object> decodeCursor(String cursor, ObjectMapper objectMapper) {
+        if (cursor == null || cursor.isBlank()) {
+            return new LinkedHashMap<>();
+        }
+        try {
+            byte[] json = Base64.getUrlDecoder().decode(cursor);
+            return objectMapper.readValue(json, new TypeReference<Map<String, Object>>() {});
+        } catch (IllegalArgumentException | IOException e) {
+            throw new IllegalArgumentException("Invalid preview cursor");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<String> cursorValues(Map<String, Object> position) {
+        Object after = position.get("after");
+        return after instanceof List ? new ArrayList<>((List<String>) after) : null;
+    }
+
+    static long cursorOffset(Map<String, Object> position) {
+        Object offset = position.get("offset");
+        return offset instanceof Number ? ((Number) offset).longValue() : 0;
+    }
+
+    static long cursorTied(Map<String, Object> position) {
+        Object tied = position.get("tied");
+        return tied instanceof Number ? Math.max(0, ((Number) tied).longValue()) : 0;
+    }
+
+    private String encodeCursor(Map<String, Object> position) throws IOException {
+        String json = objectMapper.writeValueAsString(position);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeValue(JsonGenerator generator, Object value) throws IOException, SQLException {
+        if (value instanceof Array) {
+            generator.writeObject(((Array) value).getArray());
+        } else {
+            generator.writeObject(value);
+        }
+    }
+}
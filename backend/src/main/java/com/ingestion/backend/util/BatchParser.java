@@ -0,0 +1,26 @@
+package com.ingestion.backend.util;
+
+// Turns a delimited input into ordered RowBatches for the insert stage
+public interface BatchParser {
+
+    // Receives parsed batches in input order on the calling thread
+    interface BatchHandler {
+        void handle(RowBatch batch) throws Exception;
+    }
+
+    String[] getHeader() throws Exception;
+
+    // Parse all data rows and hand them to the handler in order; returns the row count
+    long parse(BatchHandler handler) throws Exception;
+
+    // Threads doing the parsing
+    int getParallelism();
+
+    // Parsed work waiting to be handed over, and its bound
+    int getChunksInFlight();
+
+    int getMaxChunksInFlight();
+
+    // Input bytes behind the batches handed over so far, including the one being handed over
+    long getBytesRead();
+}
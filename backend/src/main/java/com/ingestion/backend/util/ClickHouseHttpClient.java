@@ -0,0 +1,338 @@
+package com.ingestion.backend.util;
+
+import com.ingestion.backend.model.IngestionRequest;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongConsumer;
+import java.util.function.UnaryOperator;
+
+// Thin client for the ClickHouse HTTP interface, used where the JDBC driver's
+// per-cell conversion is too expensive and raw response bytes are wanted instead
+public class ClickHouseHttpClient {
+
+    private static final int COPY_BUFFER_SIZE = 1 << 20;
+    private static final int CONNECT_TIMEOUT_MS = 10_000;
+    // Long enough for a selective filter to scan between result blocks, short enough that a
+    // server that has gone away doesn't hold a job forever
+    private static final int READ_TIMEOUT_MS = 600_000;
+
+    // Queries go through the JDK client because its response body can be dropped from another
+    // thread; HttpURLConnection's close waits for a blocked read to finish
+    private static final HttpClient QUERY_CLIENT = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofMillis(CONNECT_TIMEOUT_MS))
+            .build();
+
+    private final String baseUrl;
+    private final String database;
+    private final String username;
+    private final String password;
+
+    public ClickHouseHttpClient(String host, int port, String database, String username, String password) {
+        this.baseUrl = String.format("http://%s:%d/", host, port);
+        this.database = database;
+        this.username = username;
+        this.password = password;
+    }
+
+    public ClickHouseHttpClient(IngestionRequest request) {
+        this(request.getHost(), request.getPort(), request.getDatabase(), request.getUsername(), request.getPassword());
+    }
+
+    // Send a query and return the open response; the caller must close it
+    public Response query(String query, Map<String, String> settings) throws IOException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(url(settings))
+                .timeout(Duration.ofMillis(READ_TIMEOUT_MS))
+                .POST(HttpRequest.BodyPublishers.ofString(query, StandardCharsets.UTF_8));
+        if (username != null) {
+            request.header("X-ClickHouse-User", username);
+        }
+        if (password != null) {
+            request.header("X-ClickHouse-Key", password);
+        }
+        try {
+            return Response.of(QUERY_CLIENT.send(request.build(), info -> new HttpBodyStream(READ_TIMEOUT_MS)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for ClickHouse");
+        }
+    }
+
+    // Writes the data part of an INSERT request
+    public interface BodyWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    // Send an INSERT whose data is streamed as the request body. The statement travels in the
+    // query parameter, so the body is nothing but rows in the statement's FORMAT; chunked
+    // transfer keeps memory flat regardless of the input size.
+    public Response insert(String insertQuery, Map<String, String> settings, BodyWriter body) throws IOException {
+        Map<String, String> params = new LinkedHashMap<>();
+        if (settings != null) {
+            params.putAll(settings);
+        }
+        params.put("query", insertQuery);
+
+        HttpURLConnection connection = open(params);
+        connection.setChunkedStreamingMode(COPY_BUFFER_SIZE);
+        try (OutputStream out = connection.getOutputStream()) {
+            body.writeTo(out);
+        } catch (IOException e) {
+            // The server may have rejected the insert mid-stream; prefer its error message
+            try {
+                Response.of(connection).close();
+            } catch (IOException serverError) {
+                serverError.addSuppressed(e);
+                throw serverError;
+            }
+            throw e;
+        }
+        return Response.of(connection);
+    }
+
+    // Run a small metadata query and return its rows as TabSeparated fields
+    public List<String[]> queryRows(String query) throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        try (Response response = query(query + " FORMAT TabSeparated", null);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(response.getBody(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", -1);
+                for (int i = 0; i < fields.length; i++) {
+                    fields[i] = unescapeTabSeparated(fields[i]);
+                }
+                rows.add(fields);
+            }
+        }
+        return rows;
+    }
+
+    // Ask the server to stop a running query; ASYNC returns without waiting for it to finish
+    public void killQuery(String queryId) throws IOException {
+        try (Response response = query("KILL QUERY WHERE query_id = " + quote(queryId) + " ASYNC", null)) {
+            response.getBody().readAllBytes();
+        }
+    }
+
+    // Stop every running query whose id starts with the prefix, such as all statements of one job
+    public void killQueriesWithPrefix(String queryIdPrefix) throws IOException {
+        try (Response response = query("KILL QUERY WHERE startsWith(query_id, " + quote(queryIdPrefix) + ") ASYNC", null)) {
+            response.getBody().readAllBytes();
+        }
+    }
+
+    public boolean tableExists(String tableName) throws IOException {
+        List<String[]> rows = queryRows("EXISTS TABLE " + tableName);
+        return !rows.isEmpty() && "1".equals(rows.get(0)[0]);
+    }
+
+    // Quote a value as a ClickHouse string literal
+    public static String quote(String value) {
+        return "'" + value.replace("\\", "\\\\").replace("'", "\\'") + "'";
+    }
+
+    private static String unescapeTabSeparated(String field) {
+        if (field.indexOf('\\') < 0) {
+            return field;
+        }
+        StringBuilder sb = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '\\' && i + 1 < field.length()) {
+                char next = field.charAt(++i);
+                switch (next) {
+                    case 't': sb.append('\t'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case '0': sb.append('\0'); break;
+                    default: sb.append(next);
+                }
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private URI url(Map<String, String> settings) {
+        Map<String, String> params = new LinkedHashMap<>();
+        if (database != null && !database.isEmpty()) {
+            params.put("database", database);
+        }
+        if (settings != null) {
+            params.putAll(settings);
+        }
+
+        StringBuilder url = new StringBuilder(baseUrl);
+        char separator = '?';
+        for (Map.Entry<String, String> param : params.entrySet()) {
+            url.append(separator)
+               .append(URLEncoder.encode(param.getKey(), StandardCharsets.UTF_8))
+               .append('=')
+               .append(URLEncoder.encode(param.getValue(), StandardCharsets.UTF_8));
+            separator = '&';
+        }
+        return URI.create(url.toString());
+    }
+
+    private HttpURLConnection open(Map<String, String> settings) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url(settings).toURL().openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        if (username != null) {
+            connection.setRequestProperty("X-ClickHouse-User", username);
+        }
+        if (password != null) {
+            connection.setRequestProperty("X-ClickHouse-Key", password);
+        }
+        return connection;
+    }
+
+    // Copy a stream into a channel through a single reusable direct buffer
+    public static long copy(InputStream in, WritableByteChannel out) throws IOException {
+        return copy(in, out, bytes -> { });
+    }
+
+    // As above, reporting the bytes of each buffer as it is written
+    public static long copy(InputStream in, WritableByteChannel out, LongConsumer written) throws IOException {
+        return copy(in, out, written, null);
+    }
+
+    // As above, also passing each buffer through a record counter when one is given
+    public static long copy(InputStream in, WritableByteChannel out, LongConsumer written,
+                            RecordCounter records) throws IOException {
+        ReadableByteChannel source = Channels.newChannel(in);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(COPY_BUFFER_SIZE);
+        long total = 0;
+
+        while (source.read(buffer) != -1) {
+            // Keep filling until the buffer is full so writes stay large
+            if (buffer.hasRemaining()) {
+                continue;
+            }
+            buffer.flip();
+            if (records != null) {
+                records.count(buffer);
+            }
+            written.accept(buffer.remaining());
+            while (buffer.hasRemaining()) {
+                total += out.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        buffer.flip();
+        if (records != null) {
+            records.count(buffer);
+        }
+        written.accept(buffer.remaining());
+        while (buffer.hasRemaining()) {
+            total += out.write(buffer);
+        }
+        return total;
+    }
+
+    public static class Response implements Closeable {
+        private final InputStream body;
+        private final UnaryOperator<String> headers;
+        private final Closeable connection;
+        private final Runnable abort;
+        private final JSONObject summary;
+
+        private Response(InputStream body, UnaryOperator<String> headers, Closeable connection, Runnable abort) {
+            this.body = body;
+            this.headers = headers;
+            this.connection = connection;
+            this.abort = abort;
+
+            String summaryHeader = headers.apply("X-ClickHouse-Summary");
+            this.summary = summaryHeader != null ? new JSONObject(summaryHeader) : new JSONObject();
+        }
+
+        static Response of(HttpResponse<HttpBodyStream> response) throws IOException {
+            if (response.statusCode() != HttpURLConnection.HTTP_OK) {
+                String error;
+                try (InputStream errorStream = response.body()) {
+                    error = new String(errorStream.readAllBytes(), StandardCharsets.UTF_8).trim();
+                }
+                throw new IOException("ClickHouse returned HTTP " + response.statusCode() + ": " + error);
+            }
+            HttpBodyStream body = response.body();
+            return new Response(body, name -> response.headers().firstValue(name).orElse(null), () -> { }, body::close);
+        }
+
+        static Response of(HttpURLConnection connection) throws IOException {
+            int status = connection.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                String error;
+                try (InputStream errorStream = connection.getErrorStream()) {
+                    error = errorStream != null ? new String(errorStream.readAllBytes(), StandardCharsets.UTF_8).trim() : "";
+                }
+                connection.disconnect();
+                throw new IOException("ClickHouse returned HTTP " + status + ": " + error);
+            }
+            // Insert responses are read once the body is sent, so there is no long read to abort
+            return new Response(connection.getInputStream(), connection::getHeaderField, connection::disconnect, () -> { });
+        }
+
+        public InputStream getBody() {
+            return body;
+        }
+
+        public String getQueryId() {
+            return headers.apply("X-ClickHouse-Query-Id");
+        }
+
+        // Values in X-ClickHouse-Summary are sent as quoted numbers
+        public long getSummaryValue(String key) {
+            return summary.has(key) ? Long.parseLong(summary.get(key).toString()) : 0L;
+        }
+
+        public long getResultRows() {
+            return getSummaryValue("result_rows");
+        }
+
+        public long getReadRows() {
+            return getSummaryValue("read_rows");
+        }
+
+        // Fail a read blocked on the body; unlike close() it never waits, so another thread may call it
+        public void abort() {
+            abort.run();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                body.close();
+            } finally {
+                connection.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.ingestion.backend.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Reads the row count of a Parquet or Arrow file from its metadata, without decoding any column
+// data: Parquet keeps num_rows in its footer, Arrow gives each record batch's length in the batch's
+// message header. Only the few metadata fields needed are read, straight from the file.
+public final class ColumnarRowCount {
+
+    private static final byte[] PARQUET_MAGIC = "PAR1".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ARROW_MAGIC = "ARROW1".getBytes(StandardCharsets.US_ASCII);
+    private static final int ARROW_CONTINUATION = 0xFFFFFFFF;
+    private static final int ARROW_RECORD_BATCH = 3;
+
+    // Thrift compact protocol field types
+    private static final int T_BOOLEAN_TRUE = 1;
+    private static final int T_BOOLEAN_FALSE = 2;
+    private static final int T_BYTE = 3;
+    private static final int T_I16 = 4;
+    private static final int T_I32 = 5;
+    private static final int T_I64 = 6;
+    private static final int T_DOUBLE = 7;
+    private static final int T_BINARY = 8;
+    private static final int T_LIST = 9;
+    private static final int T_SET = 10;
+    private static final int T_MAP = 11;
+    private static final int T_STRUCT = 12;
+
+    private ColumnarRowCount() {
+    }
+
+    // num_rows of the Parquet FileMetaData: the file ends with the Thrift-encoded footer, its
+    // length and the magic
+    public static long parquet(Path path) throws IOException {
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = file.size();
+            if (size < 12) {
+                throw new IOException("Not a Parquet file: " + path);
+            }
+            ByteBuffer tail = read(file, size - 8, 8);
+            int footerLength = tail.getInt();
+            if (!hasMagic(tail, 4, PARQUET_MAGIC) || footerLength < 0 || footerLength > size - 12) {
+                throw new IOException("Not a Parquet file: " + path);
+            }
+            ByteBuffer footer = read(file, size - 8 - footerLength, footerLength);
+
+            // FileMetaData field 3 is num_rows; every other field is skipped
+            int fieldId = 0;
+            while (true) {
+                int header = footer.get() & 0xFF;
+                int type = header & 0x0F;
+                if (type == 0) {
+                    throw new IOException("Parquet footer has no row count: " + path);
+                }
+                int delta = header >>> 4;
+                fieldId = delta != 0 ? fieldId + delta : (short) zigzag(varint(footer));
+                if (fieldId == 3 && type == T_I64) {
+                    return zigzag(varint(footer));
+                }
+                skipThrift(footer, type);
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Unreadable Parquet footer in " + path + ": " + e, e);
+        }
+    }
+
+    // Sum of the record batch lengths of an Arrow IPC file (or stream), walking the message headers
+    // and skipping each body
+    public static long arrow(Path path) throws IOException {
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = file.size();
+            // The file format opens with the magic padded to 8 bytes; a stream starts with a message
+            long position = size >= 8 && hasMagic(read(file, 0, 6), 0, ARROW_MAGIC) ? 8 : 0;
+            long rows = 0;
+            while (position + 4 <= size) {
+                int length = read(file, position, 4).getInt();
+                position += 4;
+                if (length == ARROW_CONTINUATION) {
+                    if (position + 4 > size) {
+                        break;
+                    }
+                    length = read(file, position, 4).getInt();
+                    position += 4;
+                }
+                // A zero length marks the end of the stream; the file footer follows it
+                if (length == 0) {
+                    break;
+                }
+                if (length < 0 || position + length > size) {
+                    throw new IOException("Truncated Arrow message in " + path);
+                }
+                ByteBuffer message = read(file, position, length);
+                position += length;
+
+                // Message table: version (0), header_type (1), header (2), bodyLength (3)
+                int table = message.getInt(0);
+                long bodyLength = flatLong(message, table, 3);
+                if (flatByte(message, table, 1) == ARROW_RECORD_BATCH) {
+                    int header = flatOffset(message, table, 2);
+                    // RecordBatch table: length (0)
+                    rows += header > 0 ? flatLong(message, header, 0) : 0;
+                }
+                position += bodyLength;
+            }
+            return rows;
+        } catch (RuntimeException e) {
+            throw new IOException("Unreadable Arrow metadata in " + path + ": " + e, e);
+        }
+    }
+
+    private static ByteBuffer read(FileChannel file, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (file.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static boolean hasMagic(ByteBuffer buffer, int offset, byte[] magic) {
+        for (int i = 0; i < magic.length; i++) {
+            if (buffer.get(offset + i) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long varint(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void skipThrift(ByteBuffer buffer, int type) {
+        switch (type) {
+            case T_BOOLEAN_TRUE:
+            case T_BOOLEAN_FALSE:
+                break;
+            case T_BYTE:
+                buffer.get();
+                break;
+            case T_I16:
+            case T_I32:
+            case T_I64:
+                varint(buffer);
+                break;
+            case T_DOUBLE:
+                buffer.position(buffer.position() + 8);
+                break;
+            case T_BINARY: {
+                int length = (int) varint(buffer);
+                buffer.position(buffer.position() + length);
+                break;
+            }
+            case T_LIST:
+            case T_SET: {
+                int header = buffer.get() & 0xFF;
+                long count = header >>> 4 == 15 ? varint(buffer) : header >>> 4;
+                int elementType = header & 0x0F;
+                for (long i = 0; i < count; i++) {
+                    // Booleans inside a collection take a byte each
+                    skipThrift(buffer, elementType == T_BOOLEAN_TRUE || elementType == T_BOOLEAN_FALSE ? T_BYTE : elementType);
+                }
+                break;
+            }
+            case T_MAP: {
+                long count = varint(buffer);
+                if (count > 0) {
+                    int types = buffer.get() & 0xFF;
+                    for (long i = 0; i < count; i++) {
+                        skipThrift(buffer, collectionType(types >>> 4));
+                        skipThrift(buffer, collectionType(types & 0x0F));
+                    }
+                }
+                break;
+            }
+            case T_STRUCT:
+                while (true) {
+                    int header = buffer.get() & 0xFF;
+                    if (header == 0) {
+                        break;
+                    }
+                    if (header >>> 4 == 0) {
+                        varint(buffer);
+                    }
+                    skipThrift(buffer, header & 0x0F);
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown Thrift type " + type);
+        }
+    }
+
+    private static int collectionType(int type) {
+        return type == T_BOOLEAN_TRUE || type == T_BOOLEAN_FALSE ? T_BYTE : type;
+    }
+
+    // Position of a flatbuffer table field, or 0 when the field is absent
+    private static int flatField(ByteBuffer buffer, int table, int field) {
+        int vtable = table - buffer.getInt(table);
+        int slot = 4 + 2 * field;
+        if (slot >= (buffer.getShort(vtable) & 0xFFFF)) {
+            return 0;
+        }
+        int offset = buffer.getShort(vtable + slot) & 0xFFFF;
+        return offset == 0 ? 0 : table + offset;
+    }
+
+    private static long flatLong(ByteBuffer buffer, int table, int field) {
+        int position = flatField(buffer, table, field);
+        return position == 0 ? 0 : buffer.getLong(position);
+    }
+
+    private static int flatByte(ByteBuffer buffer, int table, int field) {
+        int position = flatField(buffer, table, field);
+        return position == 0 ? 0 : buffer.get(position) & 0xFF;
+    }
+
+    // Target of a field holding an offset to another table
+    private static int flatOffset(ByteBuffer buffer, int table, int field) {
+        int position = flatField(buffer, table, field);
+        return position == 0 ? 0 : position + buffer.getInt(position);
+    }
+}
@@ -0,0 +1,230 @@
+package com.ingestion.backend.util;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdInputStream;
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+// Codecs whose compressed blocks can be concatenated into one valid stream,
+// which is what lets ParallelCompressingOutputStream compress blocks independently
+// and ParallelDecompressingInputStream decode them independently
+public enum CompressionCodec {
+
+    NONE("") {
+        @Override
+        public byte[] compressBlock(byte[] data, int length) {
+            byte[] copy = new byte[length];
+            System.arraycopy(data, 0, copy, 0, length);
+            return copy;
+        }
+
+        @Override
+        public InputStream openDecoder(InputStream in) {
+            return in;
+        }
+    },
+
+    // Each block becomes one gzip member (pigz style); multi-member files are valid gzip
+    GZIP(".gz") {
+        @Override
+        public byte[] compressBlock(byte[] data, int length) {
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            try {
+                deflater.setInput(data, 0, length);
+                deflater.finish();
+
+                ByteArrayOutputStream out = new ByteArrayOutputStream(length / 3 + 64);
+                out.write(GZIP_HEADER, 0, GZIP_HEADER.length);
+                byte[] chunk = new byte[64 * 1024];
+                while (!deflater.finished()) {
+                    int n = deflater.deflate(chunk);
+                    out.write(chunk, 0, n);
+                }
+
+                CRC32 crc = new CRC32();
+                crc.update(data, 0, length);
+                writeIntLE(out, (int) crc.getValue());
+                writeIntLE(out, length);
+
+                // Record the member size in the extra field so readers can split members without inflating
+                byte[] member = out.toByteArray();
+                putIntLE(member, GZIP_MEMBER_SIZE_OFFSET, member.length);
+                return member;
+            } finally {
+                deflater.end();
+            }
+        }
+
+        // GZIPInputStream decides whether another member follows from available(), which can
+        // stop early on a network stream, so concatenated input goes through commons-compress
+        @Override
+        public InputStream openDecoder(InputStream in) throws IOException {
+            return new GzipCompressorInputStream(in, true);
+        }
+
+        // A whole member is in memory, so the trailer's ISIZE gives the exact output size
+        @Override
+        public byte[] decompressBlock(byte[] frame) throws IOException {
+            int size = frame[frame.length - 4] & 0xff
+                    | (frame[frame.length - 3] & 0xff) << 8
+                    | (frame[frame.length - 2] & 0xff) << 16
+                    | (frame[frame.length - 1] & 0xff) << 24;
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(frame), 64 * 1024)) {
+                if (size < 0) {
+                    return in.readAllBytes();
+                }
+                byte[] data = in.readNBytes(size);
+                // Reading past the end also checks the trailer CRC
+                if (in.read() != -1) {
+                    throw new IOException("Gzip member is larger than its recorded size");
+                }
+                return data;
+            }
+        }
+    },
+
+    // Each block becomes one zstd frame; concatenated frames decode as one stream
+    ZSTD(".zst") {
+        @Override
+        public byte[] compressBlock(byte[] data, int length) {
+            byte[] input = data;
+            if (length != data.length) {
+                input = new byte[length];
+                System.arraycopy(data, 0, input, 0, length);
+            }
+            return Zstd.compress(input, 3);
+        }
+
+        @Override
+        public InputStream openDecoder(InputStream in) throws IOException {
+            return new ZstdInputStream(in);
+        }
+
+        // Frames written with a known content size decode in one call
+        @Override
+        public byte[] decompressBlock(byte[] frame) throws IOException {
+            long size = Zstd.getFrameContentSize(frame);
+            if (size > 0 && size <= Integer.MAX_VALUE) {
+                return Zstd.decompress(frame, (int) size);
+            }
+            return super.decompressBlock(frame);
+        }
+    },
+
+    // Each block becomes one LZ4 frame; concatenated frames decode as one stream
+    LZ4(".lz4") {
+        @Override
+        public byte[] compressBlock(byte[] data, int length) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(length / 2 + 64);
+            try (LZ4FrameOutputStream lz4 = new LZ4FrameOutputStream(out, LZ4FrameOutputStream.BLOCKSIZE.SIZE_4MB)) {
+                lz4.write(data, 0, length);
+            }
+            return out.toByteArray();
+        }
+
+        @Override
+        public InputStream openDecoder(InputStream in) throws IOException {
+            return new LZ4FrameInputStream(in);
+        }
+    },
+
+    // Each block becomes one bzip2 stream; concatenated streams decode as one (as bzip2 -d does)
+    BZIP2(".bz2") {
+        @Override
+        public byte[] compressBlock(byte[] data, int length) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(length / 4 + 64);
+            try (BZip2CompressorOutputStream bzip2 = new BZip2CompressorOutputStream(out)) {
+                bzip2.write(data, 0, length);
+            }
+            return out.toByteArray();
+        }
+
+        @Override
+        public InputStream openDecoder(InputStream in) throws IOException {
+            return new BZip2CompressorInputStream(in, true);
+        }
+    };
+
+    // ID1 ID2 CM FLG(FEXTRA) MTIME(4) XFL OS XLEN(2) then subfield 'I' 'G' LEN(2) and a 4-byte member size
+    static final byte[] GZIP_HEADER = {
+            0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff,
+            8, 0, 'I', 'G', 4, 0, 0, 0, 0, 0
+    };
+    static final int GZIP_MEMBER_SIZE_OFFSET = 16;
+
+    private final String fileExtension;
+
+    CompressionCodec(String fileExtension) {
+        this.fileExtension = fileExtension;
+    }
+
+    public abstract byte[] compressBlock(byte[] data, int length) throws IOException;
+
+    // Wrap a compressed stream in a sequential decoder that reads across concatenated blocks
+    public abstract InputStream openDecoder(InputStream in) throws IOException;
+
+    // Decode one self-contained member or frame
+    public byte[] decompressBlock(byte[] frame) throws IOException {
+        try (InputStream in = openDecoder(new ByteArrayInputStream(frame))) {
+            return in.readAllBytes();
+        }
+    }
+
+    public String getFileExtension() {
+        return fileExtension;
+    }
+
+    // Null or blank means no compression
+    public static CompressionCodec fromName(String name) {
+        if (name == null || name.isBlank()) {
+            return NONE;
+        }
+        return valueOf(name.trim().toUpperCase());
+    }
+
+    // Identify the codec from the leading magic bytes; anything unrecognised is treated as plain text
+    public static CompressionCodec detect(byte[] magic, int length) {
+        if (length >= 2 && magic[0] == 0x1f && magic[1] == (byte) 0x8b) {
+            return GZIP;
+        }
+        if (length >= 4 && magic[0] == 0x28 && magic[1] == (byte) 0xb5 && magic[2] == 0x2f && magic[3] == (byte) 0xfd) {
+            return ZSTD;
+        }
+        // A leading skippable frame, as pzstd writes ahead of each compressed frame
+        if (length >= 4 && (magic[0] & 0xf0) == 0x50 && magic[1] == 0x2a && magic[2] == 0x4d && magic[3] == 0x18) {
+            return ZSTD;
+        }
+        if (length >= 4 && magic[0] == 0x04 && magic[1] == 0x22 && magic[2] == 0x4d && magic[3] == 0x18) {
+            return LZ4;
+        }
+        if (length >= 4 && magic[0] == 'B' && magic[1] == 'Z' && magic[2] == 'h' && magic[3] >= '1' && magic[3] <= '9') {
+            return BZIP2;
+        }
+        return NONE;
+    }
+
+    private static void writeIntLE(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+
+    private static void putIntLE(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) value;
+        buffer[offset + 1] = (byte) (value >>> 8);
+        buffer[offset + 2] = (byte) (value >>> 16);
+        buffer[offset + 3] = (byte) (value >>> 24);
+    }
+}
@@ -0,0 +1,210 @@
+package com.ingestion.backend.util;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+// Encodes CSV/TSV records straight into a reusable UTF-8 byte buffer and flushes it to a channel
+// in large writes. Quoting is decided and applied in the same pass that copies the value, so no
+// intermediate Strings are created per cell.
+public class CsvEncoder implements Flushable, Closeable {
+
+    private static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+    private static final byte[] MIN_LONG_DIGITS = Long.toString(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+
+    private final WritableByteChannel channel;
+    private final char[] delimiter;
+    private final byte[] delimiterBytes;
+    private final int flushThreshold;
+
+    private byte[] buffer;
+    private ByteBuffer view;
+    private int position;
+    private boolean firstField = true;
+    private long bytesWritten;
+
+    public CsvEncoder(WritableByteChannel channel, String delimiter) {
+        this(channel, delimiter, DEFAULT_BUFFER_SIZE);
+    }
+
+    public CsvEncoder(WritableByteChannel channel, String delimiter, int bufferSize) {
+        this.channel = channel;
+        this.delimiter = delimiter.toCharArray();
+        this.delimiterBytes = delimiter.getBytes(StandardCharsets.UTF_8);
+        this.buffer = new byte[bufferSize];
+        this.view = ByteBuffer.wrap(buffer);
+        this.flushThreshold = bufferSize - bufferSize / 8;
+    }
+
+    // Null is written as an empty field
+    public void writeField(CharSequence value) throws IOException {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        int length = value.length();
+        // Worst case is three UTF-8 bytes per char plus the surrounding quotes
+        startField(length * 3 + 2);
+
+        // Reserve one byte for an opening quote and only keep it if the value needs quoting
+        int start = position++;
+        boolean quote = false;
+        char first = delimiter[0];
+        byte[] buf = buffer;
+        int pos = position;
+
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c == '"') {
+                    buf[pos++] = '"';
+                    quote = true;
+                } else if (c == '\n' || c == '\r' || (c == first && matchesDelimiter(value, i))) {
+                    quote = true;
+                }
+                buf[pos++] = (byte) c;
+                continue;
+            }
+            if (c == first && matchesDelimiter(value, i)) {
+                quote = true;
+            }
+            if (c < 0x800) {
+                buf[pos++] = (byte) (0xc0 | (c >> 6));
+                buf[pos++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                buf[pos++] = (byte) (0xf0 | (cp >> 18));
+                buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                buf[pos++] = (byte) (0x80 | (cp & 0x3f));
+            } else {
+                buf[pos++] = (byte) (0xe0 | (c >> 12));
+                buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buf[pos++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+
+        if (quote) {
+            buf[start] = '"';
+            buf[pos++] = '"';
+        } else {
+            // Close the reserved gap; fields are short so the shift is cheap
+            System.arraycopy(buf, start + 1, buf, start, pos - start - 1);
+            pos--;
+        }
+        position = pos;
+    }
+
+    // Integers are written digit by digit without going through Long.toString
+    public void writeLong(long value) throws IOException {
+        startField(20);
+        if (value == Long.MIN_VALUE) {
+            for (int i = 0; i < MIN_LONG_DIGITS.length; i++) {
+                buffer[position++] = MIN_LONG_DIGITS[i];
+            }
+            return;
+        }
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        int end = position + digitCount(value);
+        int pos = end;
+        do {
+            buffer[--pos] = (byte) ('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+        position = end;
+    }
+
+    public void writeNull() throws IOException {
+        startField(0);
+    }
+
+    public void endRecord() throws IOException {
+        if (position == buffer.length) {
+            flushBuffer();
+        }
+        buffer[position++] = '\n';
+        firstField = true;
+        if (position >= flushThreshold) {
+            flushBuffer();
+        }
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten + position;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            channel.close();
+        }
+    }
+
+    // Writes the separator and makes room for the field plus a trailing newline
+    private void startField(int maxFieldBytes) throws IOException {
+        int needed = maxFieldBytes + delimiterBytes.length + 1;
+        if (position + needed > buffer.length) {
+            flushBuffer();
+            if (needed > buffer.length) {
+                byte[] larger = new byte[Math.max(needed, buffer.length * 2)];
+                buffer = larger;
+                view = ByteBuffer.wrap(larger);
+            }
+        }
+        if (!firstField) {
+            for (byte b : delimiterBytes) {
+                buffer[position++] = b;
+            }
+        }
+        firstField = false;
+    }
+
+    private boolean matchesDelimiter(CharSequence value, int index) {
+        if (delimiter.length == 1) {
+            return true;
+        }
+        if (index + delimiter.length > value.length()) {
+            return false;
+        }
+        for (int i = 1; i < delimiter.length; i++) {
+            if (value.charAt(index + i) != delimiter[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (position == 0) {
+            return;
+        }
+        view.clear().limit(position);
+        while (view.hasRemaining()) {
+            channel.write(view);
+        }
+        bytesWritten += position;
+        position = 0;
+    }
+
+    private static int digitCount(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+}
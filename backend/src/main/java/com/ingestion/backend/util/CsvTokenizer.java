@@ -0,0 +1,307 @@
+package com.ingestion.backend.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+// Streaming RFC 4180 tokenizer over a byte buffer. Records are read one at a time; each field is
+// exposed as an (offset, length) slice of the internal buffer, with escaped quotes already
+// collapsed in place, so callers only create a String when they ask for one.
+//
+// Supports quoted fields, "" escapes, embedded newlines, CRLF line endings and delimiters of any
+// length. Blank lines are skipped.
+public class CsvTokenizer {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private static final int FIELD_START = 0;
+    private static final int UNQUOTED = 1;
+    private static final int QUOTED = 2;
+
+    private final ReadableByteChannel source;
+    private final byte[] delimiter;
+
+    private byte[] buffer;
+    private ByteBuffer view;
+    private int limit;
+    private boolean endOfInput;
+    private long discarded;
+
+    // Cursors into the buffer; kept as fields so a refill can shift them
+    private int recordStart;
+    private int read;
+    private int write;
+    private int fieldStart;
+
+    // Field slices relative to recordStart
+    private int[] starts = new int[32];
+    private int[] lengths = new int[32];
+    private int fieldCount;
+    private boolean recordQuoted;
+
+    public CsvTokenizer(ReadableByteChannel source, String delimiter) {
+        this(source, delimiter, DEFAULT_BUFFER_SIZE);
+    }
+
+    public CsvTokenizer(ReadableByteChannel source, String delimiter, int bufferSize) {
+        this.source = source;
+        this.delimiter = delimiter.getBytes(StandardCharsets.UTF_8);
+        this.buffer = new byte[bufferSize];
+        this.view = ByteBuffer.wrap(buffer);
+    }
+
+    public static CsvTokenizer of(InputStream in, String delimiter) {
+        return new CsvTokenizer(Channels.newChannel(in), delimiter);
+    }
+
+    // Tokenize an in-memory or mapped buffer; it is copied into the working buffer in bulk
+    public static CsvTokenizer of(ByteBuffer data, String delimiter) {
+        return new CsvTokenizer(new ByteBufferChannel(data), delimiter);
+    }
+
+    // Advance to the next record; false at end of input
+    public boolean nextRecord() throws IOException {
+        while (true) {
+            recordStart = read;
+            write = read;
+            fieldCount = 0;
+            if (!readRecord()) {
+                return false;
+            }
+            // A blank line parses as a single empty, unquoted field
+            if (fieldCount == 1 && lengths[0] == 0 && !recordQuoted) {
+                continue;
+            }
+            return true;
+        }
+    }
+
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    // Backing array for zero-copy access; valid until the next call to nextRecord
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    public int fieldOffset(int index) {
+        return recordStart + starts[index];
+    }
+
+    public int fieldLength(int index) {
+        return lengths[index];
+    }
+
+    public String getString(int index) {
+        return new String(buffer, recordStart + starts[index], lengths[index], StandardCharsets.UTF_8);
+    }
+
+    public String[] toArray() {
+        String[] fields = new String[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            fields[i] = getString(i);
+        }
+        return fields;
+    }
+
+    // Bytes consumed from the source up to the end of the current record
+    public long position() {
+        return discarded + read;
+    }
+
+    private boolean readRecord() throws IOException {
+        int state = FIELD_START;
+        boolean quotes = false;
+        fieldStart = write;
+        byte first = delimiter[0];
+
+        while (true) {
+            if (read >= limit && !fill()) {
+                // End of input: emit whatever the last record holds
+                if (read == recordStart && fieldCount == 0) {
+                    return false;
+                }
+                endField();
+                recordQuoted = quotes;
+                return true;
+            }
+
+            byte[] buf = buffer;
+            int r = read;
+            int w = write;
+            int end = limit;
+            if (state == QUOTED) {
+                // Copy the run of quoted content up to the next quote in one tight loop
+                while (r < end && buf[r] != '"') {
+                    buf[w++] = buf[r++];
+                }
+            } else if (state == UNQUOTED) {
+                while (r < end) {
+                    byte c = buf[r];
+                    if (c == first || c == '\n' || c == '\r') {
+                        break;
+                    }
+                    buf[w++] = c;
+                    r++;
+                }
+            }
+            read = r;
+            write = w;
+            if (r == end) {
+                continue;
+            }
+
+            byte b = buf[r];
+            if (state == QUOTED) {
+                // b is a quote: either an escaped "" or the closing quote
+                if (ensure(2) && buffer[read + 1] == '"') {
+                    buffer[write++] = '"';
+                    read += 2;
+                } else {
+                    state = UNQUOTED;
+                    read++;
+                }
+                continue;
+            }
+
+            if (state == FIELD_START && b == '"') {
+                state = QUOTED;
+                quotes = true;
+                read++;
+                continue;
+            }
+            state = UNQUOTED;
+
+            if (b == '\n') {
+                read++;
+                endField();
+                recordQuoted = quotes;
+                return true;
+            }
+            if (b == '\r' && ensure(2) && buffer[read + 1] == '\n') {
+                read += 2;
+                endField();
+                recordQuoted = quotes;
+                return true;
+            }
+            if (b == first && matchesDelimiter()) {
+                read += delimiter.length;
+                endField();
+                fieldStart = write;
+                state = FIELD_START;
+                continue;
+            }
+            buffer[write++] = b;
+            read++;
+        }
+    }
+
+    private void endField() {
+        if (fieldCount == starts.length) {
+            int[] largerStarts = new int[fieldCount * 2];
+            int[] largerLengths = new int[fieldCount * 2];
+            System.arraycopy(starts, 0, largerStarts, 0, fieldCount);
+            System.arraycopy(lengths, 0, largerLengths, 0, fieldCount);
+            starts = largerStarts;
+            lengths = largerLengths;
+        }
+        starts[fieldCount] = fieldStart - recordStart;
+        lengths[fieldCount] = write - fieldStart;
+        fieldCount++;
+    }
+
+    private boolean matchesDelimiter() throws IOException {
+        if (delimiter.length == 1) {
+            return true;
+        }
+        if (!ensure(delimiter.length)) {
+            return false;
+        }
+        for (int i = 1; i < delimiter.length; i++) {
+            if (buffer[read + i] != delimiter[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Make sure n bytes are available at the read cursor; false if the input ends first
+    private boolean ensure(int n) throws IOException {
+        while (read + n > limit) {
+            if (!fill()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Move the current record to the front of the buffer and read more input after it
+    private boolean fill() throws IOException {
+        if (endOfInput) {
+            return false;
+        }
+        if (recordStart > 0) {
+            int shift = recordStart;
+            System.arraycopy(buffer, shift, buffer, 0, limit - shift);
+            limit -= shift;
+            read -= shift;
+            write -= shift;
+            fieldStart -= shift;
+            recordStart = 0;
+            discarded += shift;
+        } else if (limit == buffer.length) {
+            // A single record fills the whole buffer
+            byte[] larger = new byte[buffer.length * 2];
+            System.arraycopy(buffer, 0, larger, 0, limit);
+            buffer = larger;
+            view = ByteBuffer.wrap(larger);
+        }
+
+        view.limit(buffer.length).position(limit);
+        int n;
+        do {
+            n = source.read(view);
+        } while (n == 0);
+        if (n < 0) {
+            endOfInput = true;
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+
+    // Bulk-copies from a (possibly memory-mapped) buffer instead of reading it byte by byte
+    private static final class ByteBufferChannel implements ReadableByteChannel {
+        private final ByteBuffer data;
+
+        ByteBufferChannel(ByteBuffer data) {
+            this.data = data;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            if (!data.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(dst.remaining(), data.remaining());
+            ByteBuffer slice = data.slice();
+            slice.limit(n);
+            dst.put(slice);
+            data.position(data.position() + n);
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package com.ingestion.backend.util;
+
+import com.ingestion.backend.model.ExportFilter;
+import com.ingestion.backend.model.IngestionRequest;
+import com.ingestion.backend.model.TableSchema;
+import com.ingestion.backend.model.TableSchema.ColumnDefinition;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// The SELECT of an export: projection, optional JOIN and the request's filters. Filter operands
+// are never spliced into the SQL; each becomes a placeholder of its column's type, either a named
+// {fN:Type} query parameter sent as a param_fN setting over HTTP, or CAST(? AS Type) bound in
+// order over JDBC. Comparing the bare column against a value of its own type is what lets
+// ClickHouse use the primary index and prune partitions. Filters on a MergeTree table's partition
+// or primary key columns go in PREWHERE so whole granules are skipped before the remaining columns
+// are read. With a JOIN, filters on the joined table and the columns needed from it are pushed
+// into a subquery, so the right-hand side is filtered and pruned before it is joined.
+public class ExportQuery {
+
+    public enum Placeholders { NAMED, POSITIONAL }
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+    private static final Pattern WINDOW = Pattern.compile(
+            "(\\d+)\\s*(SECOND|MINUTE|HOUR|DAY|WEEK|MONTH|QUARTER|YEAR)S?", Pattern.CASE_INSENSITIVE);
+
+    private final String tableName;
+    private final Placeholders placeholders;
+    private final String joinType;
+    private final String joinTable;
+    private final String joinAlias;
+    private final String joinCondition;
+    private final TableSchema joinSchema;
+
+    private final List<String> prewhere = new ArrayList<>();
+    private final List<String> where = new ArrayList<>();
+    private final List<String> joinWhere = new ArrayList<>();
+    private final List<String> prewhereValues = new ArrayList<>();
+    private final List<String> whereValues = new ArrayList<>();
+    private final List<String> joinValues = new ArrayList<>();
+    private final Map<String, String> parameters = new LinkedHashMap<>();
+    private final Set<String> keyFilterColumns = new LinkedHashSet<>();
+
+    // The table schema is needed when the request has filters, and the joined table's when it also
+    // has a JOIN; without the latter nothing is pushed below the JOIN
+    public ExportQuery(IngestionRequest request, TableSchema table, TableSchema joinTable, Placeholders placeholders) {
+        this.tableName = request.getTableName();
+        this.placeholders = placeholders;
+
+        Map<String, String> joinConfig = request.getJoinConfig();
+        if (hasJoin(request)) {
+            this.joinType = joinConfig.getOrDefault("type", "INNER JOIN");
+            this.joinTable = joinConfig.get("table");
+            this.joinAlias = this.joinTable.substring(this.joinTable.lastIndexOf('.') + 1);
+            this.joinCondition = joinConfig.get("condition");
+            this.joinSchema = joinTable;
+        } else {
+            this.joinType = null;
+            this.joinTable = null;
+            this.joinAlias = null;
+            this.joinCondition = null;
+            this.joinSchema = null;
+        }
+
+        if (request.getFilters() != null) {
+            Set<String> keyColumns = keyColumns(table);
+            for (ExportFilter filter : request.getFilters()) {
+                addFilter(filter, table, keyColumns);
+            }
+        }
+    }
+
+    public static boolean hasJoin(IngestionRequest request) {
+        Map<String, String> joinConfig = request.getJoinConfig();
+        return joinConfig != null && joinConfig.get("table") != null && joinConfig.get("condition") != null;
+    }
+
+    // The query for the given projection (all columns when empty) and an optional extra predicate,
+    // such as a shard's, ANDed into WHERE
+    public String sql(List<String> projection, String predicate) {
+        boolean projected = projection != null && !projection.isEmpty();
+        boolean pushdown = joinTable != null && joinSchema != null && (!joinWhere.isEmpty() || projected);
+        List<String> columns = projected ? projection : null;
+        String condition = joinCondition;
+        if (pushdown && !joinAlias.equals(joinTable)) {
+            // The subquery is known by the bare table name, so database-qualified references follow it
+            condition = condition.replace(joinTable + ".", joinAlias + ".");
+            if (columns != null) {
+                columns = new ArrayList<>();
+                for (String column : projection) {
+                    columns.add(column.replace(joinTable + ".", joinAlias + "."));
+                }
+            }
+        }
+
+        StringBuilder query = new StringBuilder("SELECT ");
+        query.append(columns != null ? String.join(", ", columns) : "*");
+        query.append(" FROM ").append(tableName);
+        if (joinTable != null) {
+            query.append(" ").append(joinType).append(" ");
+            if (pushdown) {
+                query.append("(SELECT ").append(joinColumns(columns, condition))
+                        .append(" FROM ").append(joinTable);
+                if (!joinWhere.isEmpty()) {
+                    query.append(" WHERE ").append(String.join(" AND ", joinWhere));
+                }
+                query.append(") AS ").append(joinAlias);
+            } else {
+                query.append(joinTable);
+            }
+            query.append(" ON ").append(condition);
+        }
+        if (!prewhere.isEmpty()) {
+            query.append(" PREWHERE ").append(String.join(" AND ", prewhere));
+        }
+        List<String> conditions = new ArrayList<>(where);
+        if (predicate != null) {
+            conditions.add(predicate);
+        }
+        if (!conditions.isEmpty()) {
+            query.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        return query.toString();
+    }
+
+    // param_ settings carrying the operands of NAMED placeholders
+    public Map<String, String> getParameters() {
+        return Collections.unmodifiableMap(parameters);
+    }
+
+    // Operands of POSITIONAL placeholders in the order they appear in the query
+    public List<String> getValues() {
+        List<String> values = new ArrayList<>(joinValues);
+        values.addAll(prewhereValues);
+        values.addAll(whereValues);
+        return values;
+    }
+
+    // Filtered columns of the partition or primary key, whose conditions went in PREWHERE
+    public Set<String> getKeyFilterColumns() {
+        return Collections.unmodifiableSet(keyFilterColumns);
+    }
+
+    private void addFilter(ExportFilter filter, TableSchema table, Set<String> keyColumns) {
+        String name = filter.getColumn();
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Filter column is required");
+        }
+        name = name.trim();
+
+        // Work out which side of the JOIN the column is on
+        boolean joined = false;
+        String column = name;
+        if (joinTable != null && name.startsWith(joinTable + ".")) {
+            joined = true;
+            column = name.substring(joinTable.length() + 1);
+        } else if (joinAlias != null && name.startsWith(joinAlias + ".")) {
+            joined = true;
+            column = name.substring(joinAlias.length() + 1);
+        } else if (name.startsWith(tableName + ".")) {
+            column = name.substring(tableName.length() + 1);
+        } else if (findColumn(table, name) == null && joinTable != null && findColumn(joinSchema, name) != null) {
+            joined = true;
+        }
+        ColumnDefinition definition = findColumn(joined ? joinSchema : table, column);
+        if (definition == null) {
+            throw new IllegalArgumentException("Unknown filter column: " + name);
+        }
+
+        // Conditions inside the join subquery use the bare name; outside it, with a JOIN, they name
+        // their table. PREWHERE is left out of joins, where ClickHouse pushes WHERE down itself.
+        String reference = quoteIdentifier(column);
+        if (!joined && joinTable != null) {
+            reference = tableName + "." + reference;
+        }
+        boolean key = !joined && joinTable == null && keyColumns.contains(column);
+        List<String> values = joined ? joinValues : key ? prewhereValues : whereValues;
+
+        String condition = condition(filter, name, reference, valueType(definition.getType()), values);
+        if (joined) {
+            joinWhere.add(condition);
+        } else if (key) {
+            prewhere.add(condition);
+            keyFilterColumns.add(column);
+        } else {
+            where.add(condition);
+        }
+    }
+
+    private String condition(ExportFilter filter, String name, String reference, String type, List<String> values) {
+        String operator = filter.getOperator() == null ? "="
+                : filter.getOperator().trim().toUpperCase(Locale.ROOT).replaceAll("\\s+", " ");
+        switch (operator) {
+            case "=":
+            case "==":
+                return reference + " = " + placeholder(type, operand(filter.getValue(), name), values);
+            case "!=":
+            case "<>":
+                return reference + " != " + placeholder(type, operand(filter.getValue(), name), values);
+            case "<":
+            case "<=":
+            case ">":
+            case ">=":
+                return reference + " " + operator + " " + placeholder(type, operand(filter.getValue(), name), values);
+            case "BETWEEN":
+                if (filter.getFrom() != null && filter.getTo() != null) {
+                    return reference + " BETWEEN " + placeholder(type, filter.getFrom(), values)
+                            + " AND " + placeholder(type, filter.getTo(), values);
+                }
+                if (filter.getFrom() != null) {
+                    return reference + " >= " + placeholder(type, filter.getFrom(), values);
+                }
+                if (filter.getTo() != null) {
+                    return reference + " <= " + placeholder(type, filter.getTo(), values);
+                }
+                throw new IllegalArgumentException("BETWEEN filter on " + name + " needs from, to or both");
+            case "IN":
+            case "NOT IN":
+                if (filter.getValues() == null || filter.getValues().isEmpty()) {
+                    throw new IllegalArgumentException(operator + " filter on " + name + " needs at least one value");
+                }
+                List<String> list = new ArrayList<>();
+                for (String value : filter.getValues()) {
+                    list.add(placeholder(type, operand(value, name), values));
+                }
+                return reference + " " + operator + " (" + String.join(", ", list) + ")";
+            case "IS NULL":
+            case "IS NOT NULL":
+                return reference + " " + operator;
+            case "LAST":
+                // The window is validated here and written as literals, so nothing needs binding
+                Matcher window = WINDOW.matcher(operand(filter.getValue(), name).trim());
+                if (!window.matches()) {
+                    throw new IllegalArgumentException("LAST filter on " + name + " needs a window such as \"7 DAY\"");
+                }
+                String now = type.startsWith("Date") && !type.startsWith("DateTime") ? "today()" : "now()";
+                return reference + " >= " + now + " - INTERVAL " + Long.parseLong(window.group(1)) + " "
+                        + window.group(2).toUpperCase(Locale.ROOT);
+            default:
+                throw new IllegalArgumentException("Unsupported filter operator: " + filter.getOperator());
+        }
+    }
+
+    private String placeholder(String type, String value, List<String> values) {
+        if (placeholders == Placeholders.POSITIONAL) {
+            values.add(value);
+            return "CAST(? AS " + type + ")";
+        }
+        String name = "f" + parameters.size();
+        parameters.put("param_" + name, escapeParameter(value));
+        return "{" + name + ":" + type + "}";
+    }
+
+    // Only the columns the outer query refers to: those named in the projection or the condition.
+    // Every column when the projection is all of them.
+    private String joinColumns(List<String> projection, String condition) {
+        if (projection == null) {
+            return "*";
+        }
+        StringBuilder references = new StringBuilder(condition);
+        for (String column : projection) {
+            references.append(' ').append(column);
+        }
+        Set<String> names = new LinkedHashSet<>();
+        Matcher identifiers = IDENTIFIER.matcher(references);
+        while (identifiers.find()) {
+            names.add(identifiers.group());
+        }
+        List<String> columns = new ArrayList<>();
+        for (ColumnDefinition column : joinSchema.getColumns()) {
+            if (names.contains(column.getName())) {
+                columns.add(quoteIdentifier(column.getName()));
+            }
+        }
+        return columns.isEmpty() ? "*" : String.join(", ", columns);
+    }
+
+    // Columns the partition or primary key expressions are computed from
+    private static Set<String> keyColumns(TableSchema table) {
+        Set<String> columns = new LinkedHashSet<>();
+        if (table == null) {
+            return columns;
+        }
+        StringBuilder keys = new StringBuilder();
+        for (String key : new String[]{table.getPartitionKey(), table.getPrimaryKey()}) {
+            if (key != null) {
+                keys.append(key).append(' ');
+            }
+        }
+        Matcher identifiers = IDENTIFIER.matcher(keys.toString().replace("`", ""));
+        while (identifiers.find()) {
+            if (findColumn(table, identifiers.group()) != null) {
+                columns.add(identifiers.group());
+            }
+        }
+        return columns;
+    }
+
+    private static ColumnDefinition findColumn(TableSchema table, String name) {
+        if (table == null || table.getColumns() == null) {
+            return null;
+        }
+        for (ColumnDefinition column : table.getColumns()) {
+            if (column.getName().equals(name)) {
+                return column;
+            }
+        }
+        return null;
+    }
+
+    // Operands are bound as the plain value type: NULLs are tested with IS NULL, and a
+    // LowCardinality column compares equal to its underlying type
+    private static String valueType(String type) {
+        String base = type.trim();
+        while (true) {
+            if (base.startsWith("Nullable(") && base.endsWith(")")) {
+                base = base.substring(9, base.length() - 1);
+            } else if (base.startsWith("LowCardinality(") && base.endsWith(")")) {
+                base = base.substring(15, base.length() - 1);
+            } else {
+                return base;
+            }
+        }
+    }
+
+    private static String operand(String value, String name) {
+        if (value == null) {
+            throw new IllegalArgumentException("Filter on " + name + " needs a value");
+        }
+        return value;
+    }
+
+    // Backquote a column name so any name DESCRIBE returns can be referenced in SQL
+    public static String quoteIdentifier(String name) {
+        return "`" + name.replace("\\", "\\\\").replace("`", "\\`") + "`";
+    }
+
+    // Query parameter values are read in the TabSeparated escaped form
+    private static String escapeParameter(String value) {
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+}
@@ -0,0 +1,180 @@
+package com.ingestion.backend.util;
+
+import java.nio.charset.StandardCharsets;
+
+// Typed parsing of delimited-file fields without exceptions. A field is first classified by one
+// scan of its bytes; only then is it converted, so text values never pay for a failed
+// Long.parseLong/Double.parseDouble and the stack trace that comes with it.
+public final class FieldParser {
+
+    public static final int TEXT = 0;
+    public static final int LONG = 1;
+    public static final int DOUBLE = 2;
+
+    // Powers of ten that are exact doubles, for the fast decimal path
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    private FieldParser() {
+    }
+
+    // Long, Double or String, the same split the old parse-and-catch preview made
+    public static Object parse(byte[] b, int off, int len) {
+        switch (classify(b, off, len)) {
+            case LONG:
+                return parseLong(b, off, len);
+            case DOUBLE:
+                return parseDouble(b, off, len);
+            default:
+                return new String(b, off, len, StandardCharsets.UTF_8);
+        }
+    }
+
+    // LONG when Long.parseLong would accept the field, DOUBLE when only Double.parseDouble would
+    // (hex floats and f/d suffixes aside), TEXT otherwise
+    public static int classify(byte[] b, int off, int len) {
+        int i = off;
+        int end = off + len;
+        if (i < end && (b[i] == '-' || b[i] == '+')) {
+            i++;
+        }
+        if (i == end) {
+            return TEXT;
+        }
+        if (b[i] == 'I' || b[i] == 'N') {
+            return matches(b, i, end, "Infinity") || matches(b, i, end, "NaN") ? DOUBLE : TEXT;
+        }
+
+        int intStart = i;
+        while (i < end && isDigit(b[i])) {
+            i++;
+        }
+        int intDigits = i - intStart;
+        if (i == end) {
+            return fitsLong(b, off, intStart, intDigits) ? LONG : DOUBLE;
+        }
+
+        int fraction = 0;
+        if (b[i] == '.') {
+            i++;
+            int fractionStart = i;
+            while (i < end && isDigit(b[i])) {
+                i++;
+            }
+            fraction = i - fractionStart;
+        }
+        if (intDigits + fraction == 0) {
+            return TEXT;
+        }
+        if (i < end && (b[i] == 'e' || b[i] == 'E')) {
+            i++;
+            if (i < end && (b[i] == '-' || b[i] == '+')) {
+                i++;
+            }
+            int exponentStart = i;
+            while (i < end && isDigit(b[i])) {
+                i++;
+            }
+            if (i == exponentStart) {
+                return TEXT;
+            }
+        }
+        return i == end ? DOUBLE : TEXT;
+    }
+
+    // Only valid for fields classified as LONG
+    public static long parseLong(byte[] b, int off, int len) {
+        int i = off;
+        int end = off + len;
+        boolean negative = b[i] == '-';
+        if (b[i] == '-' || b[i] == '+') {
+            i++;
+        }
+        // Accumulate negatively so Long.MIN_VALUE does not overflow
+        long value = 0;
+        for (; i < end; i++) {
+            value = value * 10 - (b[i] - '0');
+        }
+        return negative ? value : -value;
+    }
+
+    // Only valid for fields classified as LONG or DOUBLE. Plain decimals with few enough digits
+    // are computed exactly here; anything else goes through the JDK, which can no longer throw.
+    public static double parseDouble(byte[] b, int off, int len) {
+        int i = off;
+        int end = off + len;
+        boolean negative = b[i] == '-';
+        if (b[i] == '-' || b[i] == '+') {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean seenPoint = false;
+        for (; i < end; i++) {
+            byte c = b[i];
+            if (c == '.') {
+                seenPoint = true;
+                continue;
+            }
+            if (!isDigit(c)) {
+                break;
+            }
+            if (mantissa != 0 || c != '0') {
+                digits++;
+            }
+            mantissa = mantissa * 10 + (c - '0');
+            if (seenPoint) {
+                scale++;
+            }
+            if (digits > MAX_EXACT_DIGITS) {
+                break;
+            }
+        }
+        if (i == end && digits <= MAX_EXACT_DIGITS && scale < POWERS_OF_TEN.length) {
+            double value = mantissa / POWERS_OF_TEN[scale];
+            return negative ? -value : value;
+        }
+        return Double.parseDouble(new String(b, off, len, StandardCharsets.US_ASCII));
+    }
+
+    private static boolean fitsLong(byte[] b, int off, int digitsStart, int digits) {
+        while (digits > 1 && b[digitsStart] == '0') {
+            digitsStart++;
+            digits--;
+        }
+        if (digits < 19) {
+            return true;
+        }
+        if (digits > 19) {
+            return false;
+        }
+        String limit = b[off] == '-' ? "9223372036854775808" : "9223372036854775807";
+        for (int k = 0; k < 19; k++) {
+            int c = b[digitsStart + k];
+            if (c != limit.charAt(k)) {
+                return c < limit.charAt(k);
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(byte[] b, int from, int end, String word) {
+        if (end - from != word.length()) {
+            return false;
+        }
+        for (int k = 0; k < word.length(); k++) {
+            if (b[from + k] != word.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(byte c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,210 @@
+package com.ingestion.backend.util;
+
+import com.ingestion.backend.model.ColumnProfile;
+import com.ingestion.backend.model.FilePreview;
+
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// Previews a delimited file from short runs of records read at random offsets, one per equal
+// slice of the file, so the cost depends on the sample size rather than the file size. Each run
+// skips the partial record it lands in; a run that would start inside the previous one carries
+// on from where that ended instead, so a small file is simply read from the top.
+public class FileSampler {
+
+    public static final int DEFAULT_SAMPLE_ROWS = 4096;
+
+    private static final int RECORDS_PER_OFFSET = 16;
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    private static final int HLL_PRECISION = 12;
+
+    private final SeekableByteChannel channel;
+    private final String delimiter;
+    private final int limit;
+    private final int sampleRows;
+
+    public FileSampler(SeekableByteChannel channel, String delimiter, int limit, int sampleRows) {
+        this.channel = channel;
+        this.delimiter = delimiter;
+        this.limit = Math.max(limit, 0);
+        this.sampleRows = sampleRows > 0 ? sampleRows : DEFAULT_SAMPLE_ROWS;
+    }
+
+    public FilePreview sample() throws IOException {
+        long size = channel.size();
+        channel.position(0);
+        CsvTokenizer head = new CsvTokenizer(channel, delimiter, READ_BUFFER_SIZE);
+        if (!head.nextRecord()) {
+            throw new IllegalArgumentException("File is empty");
+        }
+        String[] header = head.toArray();
+        long dataStart = head.position();
+
+        ColumnSampler[] columns = new ColumnSampler[header.length];
+        for (int i = 0; i < header.length; i++) {
+            columns[i] = new ColumnSampler();
+        }
+
+        // Rows shown are a uniform reservoir sample of the records read, kept in file order;
+        // a record is only turned into a row when it is picked
+        List<Map<String, Object>> reservoir = new ArrayList<>();
+        int[] order = new int[limit];
+        int runs = (sampleRows + RECORDS_PER_OFFSET - 1) / RECORDS_PER_OFFSET;
+        double slice = (double) (size - dataStart) / runs;
+        // The seed keeps the preview of a given file stable between calls
+        Random random = new Random(size);
+
+        int sampled = 0;
+        long sampledBytes = 0;
+        long end = dataStart;
+        for (int run = 0; run < runs && end < size; run++) {
+            // The first run always starts at the first record
+            long offset = run == 0 ? dataStart : dataStart + (long) ((run + random.nextDouble()) * slice);
+            boolean aligned = offset <= end;
+            long start = aligned ? end : offset;
+
+            channel.position(start);
+            CsvTokenizer tokenizer = new CsvTokenizer(channel, delimiter, READ_BUFFER_SIZE);
+            if (!aligned && !tokenizer.nextRecord()) {
+                continue;
+            }
+            long runStart = tokenizer.position();
+            for (int i = 0; i < RECORDS_PER_OFFSET && tokenizer.nextRecord(); i++) {
+                // A landing point inside a quoted field can misalign a record; drop those
+                if (tokenizer.fieldCount() != header.length) {
+                    continue;
+                }
+                byte[] buffer = tokenizer.buffer();
+                for (int c = 0; c < header.length; c++) {
+                    columns[c].accept(buffer, tokenizer.fieldOffset(c), tokenizer.fieldLength(c));
+                }
+                if (reservoir.size() < limit) {
+                    order[reservoir.size()] = sampled;
+                    reservoir.add(toRow(tokenizer, header));
+                } else {
+                    int slot = random.nextInt(sampled + 1);
+                    if (slot < limit) {
+                        order[slot] = sampled;
+                        reservoir.set(slot, toRow(tokenizer, header));
+                    }
+                }
+                sampled++;
+            }
+            sampledBytes += tokenizer.position() - runStart;
+            end = start + tokenizer.position();
+        }
+
+        FilePreview preview = new FilePreview();
+        preview.setFileSize(size);
+        preview.setSampledRows(sampled);
+        preview.setEstimatedRows(sampled == 0 ? 0 : Math.round((double) (size - dataStart) * sampled / sampledBytes));
+        Integer[] byPosition = new Integer[reservoir.size()];
+        for (int i = 0; i < byPosition.length; i++) {
+            byPosition[i] = i;
+        }
+        Arrays.sort(byPosition, (a, b) -> Integer.compare(order[a], order[b]));
+        List<Map<String, Object>> rows = new ArrayList<>(byPosition.length);
+        for (Integer index : byPosition) {
+            rows.add(reservoir.get(index));
+        }
+        preview.setRows(rows);
+        List<ColumnProfile> profiles = new ArrayList<>(header.length);
+        for (int i = 0; i < header.length; i++) {
+            profiles.add(columns[i].toProfile(header[i]));
+        }
+        preview.setColumns(profiles);
+        return preview;
+    }
+
+    private static Map<String, Object> toRow(CsvTokenizer tokenizer, String[] header) {
+        byte[] buffer = tokenizer.buffer();
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (int i = 0; i < header.length; i++) {
+            row.put(header[i], FieldParser.parse(buffer, tokenizer.fieldOffset(i), tokenizer.fieldLength(i)));
+        }
+        return row;
+    }
+
+    // Null ratio, range and distinct estimate of one column, plus the type inference the schema
+    // preview uses. Values are read from the tokenizer's slices; only a new min or max is copied.
+    static final class ColumnSampler {
+        final SchemaInferrer.ColumnStats types = new SchemaInferrer.ColumnStats();
+        final HyperLogLog distinct = new HyperLogLog(HLL_PRECISION);
+        long values;
+        long nulls;
+
+        boolean allLong = true;
+        long minLong = Long.MAX_VALUE;
+        long maxLong = Long.MIN_VALUE;
+        boolean allNumeric = true;
+        double minDouble = Double.POSITIVE_INFINITY;
+        double maxDouble = Double.NEGATIVE_INFINITY;
+        byte[] minText;
+        byte[] maxText;
+
+        void accept(byte[] b, int off, int len) {
+            types.accept(b, off, len);
+            values++;
+            if (len == 0 || (len == 2 && b[off] == '\\' && b[off + 1] == 'N')) {
+                nulls++;
+                return;
+            }
+            distinct.add(b, off, len);
+
+            if (allNumeric) {
+                int kind = FieldParser.classify(b, off, len);
+                if (kind == FieldParser.LONG && allLong) {
+                    long value = FieldParser.parseLong(b, off, len);
+                    minLong = Math.min(minLong, value);
+                    maxLong = Math.max(maxLong, value);
+                } else if (kind == FieldParser.TEXT) {
+                    allNumeric = allLong = false;
+                } else {
+                    if (allLong && minLong <= maxLong) {
+                        minDouble = Math.min(minDouble, minLong);
+                        maxDouble = Math.max(maxDouble, maxLong);
+                    }
+                    allLong = false;
+                    double value = FieldParser.parseDouble(b, off, len);
+                    minDouble = Math.min(minDouble, value);
+                    maxDouble = Math.max(maxDouble, value);
+                }
+            }
+            // Unsigned byte order is code point order for UTF-8
+            if (minText == null || Arrays.compareUnsigned(b, off, off + len, minText, 0, minText.length) < 0) {
+                minText = Arrays.copyOfRange(b, off, off + len);
+            }
+            if (maxText == null || Arrays.compareUnsigned(b, off, off + len, maxText, 0, maxText.length) > 0) {
+                maxText = Arrays.copyOfRange(b, off, off + len);
+            }
+        }
+
+        ColumnProfile toProfile(String name) {
+            ColumnProfile profile = new ColumnProfile();
+            profile.setName(name);
+            profile.setType(types.resolveType());
+            profile.setNullRatio(values == 0 ? 0 : (double) nulls / values);
+            profile.setDistinctEstimate(distinct.estimate());
+            if (values > nulls) {
+                if (allLong) {
+                    profile.setMin(minLong);
+                    profile.setMax(maxLong);
+                } else if (allNumeric) {
+                    profile.setMin(minDouble);
+                    profile.setMax(maxDouble);
+                } else {
+                    profile.setMin(new String(minText, StandardCharsets.UTF_8));
+                    profile.setMax(new String(maxText, StandardCharsets.UTF_8));
+                }
+            }
+            return profile;
+        }
+    }
+}
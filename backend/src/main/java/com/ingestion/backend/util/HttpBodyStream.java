@@ -0,0 +1,150 @@
+package com.ingestion.backend.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// A response body as a blocking stream, in place of BodyHandlers.ofInputStream: a read gives up
+// once no data has come for the timeout, an interrupt stops it, and close() from another thread
+// fails a blocked read at once without waiting for it
+class HttpBodyStream extends InputStream implements HttpResponse.BodySubscriber<HttpBodyStream> {
+
+    private static final List<ByteBuffer> END = Collections.unmodifiableList(new ArrayList<>());
+
+    private final long timeoutMillis;
+    private final BlockingQueue<List<ByteBuffer>> received = new LinkedBlockingQueue<>();
+    private volatile Flow.Subscription subscription;
+    private volatile Throwable failure;
+    private volatile boolean closed;
+    private Iterator<ByteBuffer> buffers = Collections.emptyIterator();
+    private ByteBuffer current;
+    private boolean ended;
+
+    HttpBodyStream(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public CompletionStage<HttpBodyStream> getBody() {
+        return CompletableFuture.completedFuture(this);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        if (closed) {
+            subscription.cancel();
+        } else {
+            subscription.request(1);
+        }
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> item) {
+        received.add(item);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        failure = throwable;
+        received.add(END);
+    }
+
+    @Override
+    public void onComplete() {
+        received.add(END);
+    }
+
+    @Override
+    public int read() throws IOException {
+        ByteBuffer buffer = next();
+        return buffer == null ? -1 : buffer.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        ByteBuffer buffer = next();
+        if (buffer == null) {
+            return -1;
+        }
+        int n = Math.min(len, buffer.remaining());
+        buffer.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return current != null ? current.remaining() : 0;
+    }
+
+    // Never blocks, so it is safe from a thread other than the reader's
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        Flow.Subscription s = subscription;
+        if (s != null) {
+            s.cancel();
+        }
+        received.add(END);
+    }
+
+    // The buffer holding the next unread byte, or null at the end of the body
+    private ByteBuffer next() throws IOException {
+        while (current == null || !current.hasRemaining()) {
+            if (closed) {
+                throw new IOException("Response body closed");
+            }
+            if (buffers.hasNext()) {
+                current = buffers.next();
+                continue;
+            }
+            if (ended) {
+                return null;
+            }
+
+            List<ByteBuffer> item;
+            try {
+                item = received.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while reading the response body");
+            }
+            if (item == null) {
+                throw new SocketTimeoutException("No response data for " + timeoutMillis + " ms");
+            }
+            if (item == END) {
+                if (closed) {
+                    throw new IOException("Response body closed");
+                }
+                if (failure != null) {
+                    throw new IOException("Response body failed: " + failure.getMessage(), failure);
+                }
+                ended = true;
+                continue;
+            }
+            buffers = item.iterator();
+            // Keep one item in flight while this one is read
+            subscription.request(1);
+        }
+        return current;
+    }
+}
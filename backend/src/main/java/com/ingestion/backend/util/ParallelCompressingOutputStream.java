@@ -0,0 +1,172 @@
+package com.ingestion.backend.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Cuts the stream into fixed-size blocks, compresses them on a worker pool and writes
+// the compressed blocks back in order, so the producing thread never waits on deflate
+public class ParallelCompressingOutputStream extends OutputStream {
+
+    public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+    private final OutputStream out;
+    private final CompressionCodec codec;
+    private final int blockSize;
+    private final int maxInFlight;
+    private final ExecutorService pool;
+    private final boolean ownsPool;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+    private final ConcurrentLinkedQueue<byte[]> freeBlocks = new ConcurrentLinkedQueue<>();
+
+    private byte[] block;
+    private int position;
+    private boolean closed;
+
+    public ParallelCompressingOutputStream(OutputStream out, CompressionCodec codec) {
+        this(out, codec, DEFAULT_BLOCK_SIZE, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelCompressingOutputStream(OutputStream out, CompressionCodec codec, int blockSize, int threads) {
+        this(out, codec, blockSize, newPool(threads, "compress-" + codec.name().toLowerCase()), threads * 2, true);
+    }
+
+    // Compress on a pool shared with other streams, which is left running on close
+    public ParallelCompressingOutputStream(OutputStream out, CompressionCodec codec, ExecutorService pool, int maxInFlight) {
+        this(out, codec, DEFAULT_BLOCK_SIZE, pool, maxInFlight, false);
+    }
+
+    private ParallelCompressingOutputStream(OutputStream out, CompressionCodec codec, int blockSize,
+                                            ExecutorService pool, int maxInFlight, boolean ownsPool) {
+        this.out = out;
+        this.codec = codec;
+        this.blockSize = blockSize;
+        this.maxInFlight = maxInFlight;
+        this.pool = pool;
+        this.ownsPool = ownsPool;
+        this.block = new byte[blockSize];
+    }
+
+    // Daemon workers for compressing blocks, for streams that share them
+    public static ExecutorService newPool(int threads) {
+        return newPool(threads, "compress");
+    }
+
+    private static ExecutorService newPool(int threads, String name) {
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Open a file for export, wrapping it in a compressing stage unless the codec is NONE
+    public static WritableByteChannel openChannel(Path path, CompressionCodec codec) throws IOException {
+        if (codec == CompressionCodec.NONE) {
+            return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+        return Channels.newChannel(new ParallelCompressingOutputStream(Files.newOutputStream(path), codec));
+    }
+
+    // As above, compressing on a shared pool with at most maxInFlight blocks held by this stream
+    public static WritableByteChannel openChannel(Path path, CompressionCodec codec, ExecutorService pool,
+                                                  int maxInFlight) throws IOException {
+        if (codec == CompressionCodec.NONE) {
+            return openChannel(path, codec);
+        }
+        return Channels.newChannel(new ParallelCompressingOutputStream(Files.newOutputStream(path), codec, pool, maxInFlight));
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (position == blockSize) {
+            submitBlock();
+        }
+        block[position++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (position == blockSize) {
+                submitBlock();
+            }
+            int n = Math.min(len, blockSize - position);
+            System.arraycopy(b, off, block, position, n);
+            position += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    // Completes all outstanding blocks; a partial block is compressed as a short block
+    @Override
+    public void flush() throws IOException {
+        if (position > 0) {
+            submitBlock();
+        }
+        while (!pending.isEmpty()) {
+            writeCompleted(pending.removeFirst());
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flush();
+        } finally {
+            if (ownsPool) {
+                pool.shutdownNow();
+            }
+            out.close();
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        // Bound the number of blocks held in memory by draining the oldest first
+        while (pending.size() >= maxInFlight) {
+            writeCompleted(pending.removeFirst());
+        }
+
+        byte[] data = block;
+        int length = position;
+        pending.addLast(pool.submit(() -> {
+            byte[] compressed = codec.compressBlock(data, length);
+            freeBlocks.offer(data);
+            return compressed;
+        }));
+
+        byte[] recycled = freeBlocks.poll();
+        block = recycled != null ? recycled : new byte[blockSize];
+        position = 0;
+    }
+
+    private void writeCompleted(Future<byte[]> future) throws IOException {
+        try {
+            out.write(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing");
+        } catch (ExecutionException e) {
+            throw new IOException("Block compression failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.ingestion.backend.util;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Parses a delimited file by memory-mapping it and working on record-aligned chunks in parallel.
+//
+// Chunk boundaries are found without a sequential pass over the data: every nominal chunk is
+// scanned in parallel for its quote count and for the first newline seen at even and at odd
+// quote parity. A short sequential walk over those summaries then knows the parity entering each
+// chunk and picks the first newline that lies outside quotes, so quoted newlines never split a record.
+public class ParallelCsvParser implements BatchParser {
+
+    public static final int DEFAULT_CHUNK_SIZE = 32 << 20;
+    public static final int MIN_CHUNK_SIZE = 1 << 20;
+    public static final int DEFAULT_BATCH_ROWS = 10_000;
+
+    private static final int SCAN_WINDOW = 64 * 1024;
+
+    private final Path file;
+    private final String delimiter;
+    private final int chunkSize;
+    private final int batchRows;
+    private final ForkJoinPool pool;
+    private final long maxBytesInFlight;
+
+    private String[] header;
+    private long dataStart;
+    private volatile int chunksInFlight;
+    private volatile long bytesRead;
+
+    // Hold at most maxBytesInFlight of the file in parsed, undelivered chunks, sized so the pool's
+    // threads each have two chunks to work on
+    public ParallelCsvParser(Path file, String delimiter, ForkJoinPool pool, long maxBytesInFlight) {
+        this(file, delimiter, chunkSizeFor(pool, maxBytesInFlight), DEFAULT_BATCH_ROWS, pool, maxBytesInFlight);
+    }
+
+    public ParallelCsvParser(Path file, String delimiter, int chunkSize, int batchRows, ForkJoinPool pool) {
+        this(file, delimiter, chunkSize, batchRows, pool, (long) chunkSize * pool.getParallelism() * 2);
+    }
+
+    private ParallelCsvParser(Path file, String delimiter, int chunkSize, int batchRows, ForkJoinPool pool,
+                              long maxBytesInFlight) {
+        this.file = file;
+        this.delimiter = delimiter;
+        this.chunkSize = chunkSize;
+        this.batchRows = batchRows;
+        this.pool = pool;
+        this.maxBytesInFlight = maxBytesInFlight;
+    }
+
+    private static int chunkSizeFor(ForkJoinPool pool, long maxBytesInFlight) {
+        long perChunk = maxBytesInFlight / (pool.getParallelism() * 2L);
+        return (int) Math.max(MIN_CHUNK_SIZE, Math.min(DEFAULT_CHUNK_SIZE, perChunk));
+    }
+
+    @Override
+    public String[] getHeader() throws IOException {
+        if (header == null) {
+            List<String[]> records = new ArrayList<>();
+            dataStart = readHead(0, 1, records);
+            if (records.isEmpty()) {
+                throw new IllegalArgumentException("File is empty");
+            }
+            header = records.get(0);
+        }
+        return header;
+    }
+
+    // The first rows after the header, read sequentially
+    public List<String[]> head(int rows) throws IOException {
+        getHeader();
+        List<String[]> records = new ArrayList<>();
+        readHead(dataStart, rows, records);
+        return records;
+    }
+
+    // Chunks submitted to the pool and not yet delivered; their file bytes are bounded by maxBytesInFlight
+    @Override
+    public int getChunksInFlight() {
+        return chunksInFlight;
+    }
+
+    @Override
+    public int getMaxChunksInFlight() {
+        return (int) Math.max(1, maxBytesInFlight / chunkSize);
+    }
+
+    @Override
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    // Everything up to the end of the chunk being delivered
+    @Override
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    // Parse all data rows and hand them to the handler in file order; returns the row count
+    @Override
+    public long parse(BatchHandler handler) throws Exception {
+        getHeader();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] boundaries = findRecordBoundaries(channel);
+
+            Deque<Future<List<List<String[]>>>> inFlight = new ArrayDeque<>();
+            Deque<Long> chunkEnds = new ArrayDeque<>();
+            long bytesInFlight = 0;
+            long delivered = boundaries[0];
+            long sequence = 0;
+            long rows = 0;
+
+            for (int i = 0; i + 1 < boundaries.length; i++) {
+                long start = boundaries[i];
+                long end = boundaries[i + 1];
+
+                // Deliver completed chunks in order until this one fits in the byte budget; a single
+                // chunk is always let through, however long its records make it
+                while (!inFlight.isEmpty() && bytesInFlight + (end - start) > maxBytesInFlight) {
+                    List<List<String[]>> batches = await(inFlight.removeFirst());
+                    chunksInFlight = inFlight.size();
+                    bytesRead = chunkEnds.removeFirst();
+                    bytesInFlight -= bytesRead - delivered;
+                    delivered = bytesRead;
+                    for (List<String[]> batch : batches) {
+                        handler.handle(new RowBatch(sequence++, batch));
+                        rows += batch.size();
+                    }
+                }
+
+                inFlight.addLast(pool.submit(() -> parseChunk(channel, start, end)));
+                chunkEnds.addLast(end);
+                chunksInFlight = inFlight.size();
+                bytesInFlight += end - start;
+            }
+            while (!inFlight.isEmpty()) {
+                List<List<String[]>> batches = await(inFlight.removeFirst());
+                chunksInFlight = inFlight.size();
+                bytesRead = chunkEnds.removeFirst();
+                for (List<String[]> batch : batches) {
+                    handler.handle(new RowBatch(sequence++, batch));
+                    rows += batch.size();
+                }
+            }
+            return rows;
+        }
+    }
+
+    private long[] findRecordBoundaries(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int chunkCount = (int) Math.max(1, (size - dataStart + chunkSize - 1) / chunkSize);
+
+        List<Future<ChunkScan>> scans = new ArrayList<>();
+        for (int i = 0; i < chunkCount; i++) {
+            long start = dataStart + (long) i * chunkSize;
+            long end = Math.min(size, start + chunkSize);
+            scans.add(pool.submit(() -> scanChunk(channel, start, end)));
+        }
+
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(dataStart);
+        int parity = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            ChunkScan scan = await(scans.get(i));
+            if (i > 0) {
+                long newline = parity == 0 ? scan.firstEvenNewline : scan.firstOddNewline;
+                long boundary = dataStart + (long) i * chunkSize + newline + 1;
+                if (newline >= 0 && boundary > boundaries.get(boundaries.size() - 1) && boundary < size) {
+                    boundaries.add(boundary);
+                }
+            }
+            parity ^= (int) (scan.quotes & 1);
+        }
+        if (size > boundaries.get(boundaries.size() - 1)) {
+            boundaries.add(size);
+        }
+
+        long[] result = new long[boundaries.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = boundaries.get(i);
+        }
+        return result;
+    }
+
+    private ChunkScan scanChunk(FileChannel channel, long start, long end) throws IOException {
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        ChunkScan scan = new ChunkScan();
+        byte[] window = new byte[SCAN_WINDOW];
+        int parity = 0;
+        long offset = 0;
+
+        while (mapped.hasRemaining()) {
+            int n = Math.min(window.length, mapped.remaining());
+            mapped.get(window, 0, n);
+            for (int i = 0; i < n; i++) {
+                byte b = window[i];
+                if (b == '"') {
+                    parity ^= 1;
+                    scan.quotes++;
+                } else if (b == '\n') {
+                    if (parity == 0 && scan.firstEvenNewline < 0) {
+                        scan.firstEvenNewline = offset + i;
+                    } else if (parity == 1 && scan.firstOddNewline < 0) {
+                        scan.firstOddNewline = offset + i;
+                    }
+                }
+            }
+            offset += n;
+        }
+        return scan;
+    }
+
+    private List<List<String[]>> parseChunk(FileChannel channel, long start, long end) throws IOException {
+        if (end - start > Integer.MAX_VALUE) {
+            throw new IOException("Record-aligned chunk at offset " + start + " exceeds 2GB");
+        }
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        CsvTokenizer tokenizer = CsvTokenizer.of(mapped, delimiter);
+
+        List<List<String[]>> batches = new ArrayList<>();
+        List<String[]> batch = new ArrayList<>(batchRows);
+        while (tokenizer.nextRecord()) {
+            batch.add(tokenizer.toArray());
+            if (batch.size() == batchRows) {
+                batches.add(batch);
+                batch = new ArrayList<>(batchRows);
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    // Read up to count records from offset; returns the offset just past the last one read
+    private long readHead(long offset, int count, List<String[]> out) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.position(offset);
+            CsvTokenizer tokenizer = new CsvTokenizer(channel, delimiter);
+            while (out.size() < count && tokenizer.nextRecord()) {
+                out.add(tokenizer.toArray());
+            }
+            return offset + tokenizer.position();
+        }
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Parsing failed", e.getCause());
+        }
+    }
+
+    private static final class ChunkScan {
+        long quotes;
+        long firstEvenNewline = -1;
+        long firstOddNewline = -1;
+    }
+}
@@ -0,0 +1,315 @@
+package com.ingestion.backend.util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Cuts a compressed stream into self-contained gzip members or zstd frames without decoding them,
+// decodes them on a worker pool and reads the output back in order. The mirror image of
+// ParallelCompressingOutputStream, and the reader for what it writes.
+public class ParallelDecompressingInputStream extends InputStream {
+
+    // Frames larger than this are not buffered for the pool; the rest of the input is decoded sequentially
+    public static final int MAX_FRAME_SIZE = 16 << 20;
+
+    private static final int MAGIC_BYTES = 4;
+    private static final byte[] EMPTY = new byte[0];
+
+    private final FrameSplitter splitter;
+    private final CompressionCodec codec;
+    private final int maxInFlight;
+    private final ExecutorService pool;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+
+    private byte[] block = EMPTY;
+    private int position;
+    private boolean exhausted;
+    private InputStream tail;
+    private boolean closed;
+
+    public ParallelDecompressingInputStream(InputStream in, CompressionCodec codec, int threads) {
+        this.splitter = codec == CompressionCodec.GZIP ? new GzipSplitter(in) : new ZstdSplitter(in);
+        this.codec = codec;
+        this.maxInFlight = threads * 2;
+        this.pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "decompress-" + codec.name().toLowerCase());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Detect the codec from the magic bytes and wrap the stream in a decoder; plain input passes through
+    public static InputStream open(InputStream in) throws IOException {
+        return open(in, Runtime.getRuntime().availableProcessors());
+    }
+
+    public static InputStream open(InputStream in, int threads) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, 64 * 1024);
+        buffered.mark(MAGIC_BYTES);
+        byte[] magic = buffered.readNBytes(MAGIC_BYTES);
+        buffered.reset();
+
+        CompressionCodec codec = CompressionCodec.detect(magic, magic.length);
+        switch (codec) {
+            case NONE:
+                return buffered;
+            case GZIP:
+            case ZSTD:
+                // With a single core the pool only adds hand-off cost over decoding inline
+                return threads > 1 ? new ParallelDecompressingInputStream(buffered, codec, threads) : codec.openDecoder(buffered);
+            default:
+                return codec.openDecoder(buffered);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (position == block.length) {
+            if (!nextBlock()) {
+                // Everything the splitter could delimit has been returned; decode what is left in order
+                if (tail == null && splitter.remainder != null) {
+                    tail = codec.openDecoder(splitter.remainder);
+                }
+                return tail != null ? tail.read(b, off, len) : -1;
+            }
+        }
+        int n = Math.min(len, block.length - position);
+        System.arraycopy(block, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        pool.shutdownNow();
+        if (tail != null) {
+            tail.close();
+        }
+        splitter.in.close();
+    }
+
+    // Keep the pool busy with the frames that follow, then wait for the oldest one
+    private boolean nextBlock() throws IOException {
+        while (!exhausted && pending.size() < maxInFlight) {
+            byte[] frame = splitter.next();
+            if (frame == null) {
+                exhausted = true;
+                break;
+            }
+            pending.addLast(pool.submit(() -> codec.decompressBlock(frame)));
+        }
+        if (pending.isEmpty()) {
+            return false;
+        }
+        try {
+            block = pending.removeFirst().get();
+            position = 0;
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while decompressing");
+        } catch (ExecutionException e) {
+            throw new IOException("Block decompression failed", e.getCause());
+        }
+    }
+
+    // Reads one frame at a time by walking headers. When a frame's extent can't be known up front,
+    // next() returns null and leaves the bytes it consumed plus the unread input in remainder.
+    private abstract static class FrameSplitter {
+
+        final InputStream in;
+        final ByteArrayOutputStream frame = new ByteArrayOutputStream(1 << 20);
+        InputStream remainder;
+
+        FrameSplitter(InputStream in) {
+            this.in = in;
+        }
+
+        abstract byte[] next() throws IOException;
+
+        byte[] stop() {
+            remainder = new SequenceInputStream(new ByteArrayInputStream(frame.toByteArray()), in);
+            return null;
+        }
+
+        // Append exactly n bytes of input to the current frame
+        void copy(long n) throws IOException {
+            byte[] chunk = new byte[(int) Math.min(n, 64 * 1024)];
+            while (n > 0) {
+                int read = in.read(chunk, 0, (int) Math.min(n, chunk.length));
+                if (read < 0) {
+                    throw new EOFException("Compressed input ends in the middle of a frame");
+                }
+                frame.write(chunk, 0, read);
+                n -= read;
+            }
+        }
+
+        // Append n bytes of input to the current frame and return them
+        byte[] take(int n) throws IOException {
+            byte[] bytes = in.readNBytes(n);
+            if (bytes.length < n) {
+                throw new EOFException("Compressed input ends in the middle of a frame");
+            }
+            frame.write(bytes, 0, n);
+            return bytes;
+        }
+    }
+
+    // Members written by CompressionCodec.GZIP record their size in an 'IG' extra subfield, and
+    // BGZF (bgzip) members in a 'BC' one. Members without either are left to the sequential decoder.
+    private static class GzipSplitter extends FrameSplitter {
+
+        GzipSplitter(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        byte[] next() throws IOException {
+            frame.reset();
+            byte[] header = in.readNBytes(10);
+            frame.write(header);
+            if (header.length == 0) {
+                return null;
+            }
+            // Anything but a member with an extra field goes to the sequential decoder, which
+            // also reports truncation and trailing garbage the same way it would without splitting
+            if (header.length < 10 || header[0] != 0x1f || header[1] != (byte) 0x8b || (header[3] & 4) == 0) {
+                return stop();
+            }
+
+            byte[] xlen = in.readNBytes(2);
+            frame.write(xlen);
+            if (xlen.length < 2) {
+                return stop();
+            }
+            byte[] extra = in.readNBytes((xlen[0] & 0xff) | (xlen[1] & 0xff) << 8);
+            frame.write(extra);
+
+            long size = memberSize(extra);
+            if (size < frame.size() + 8 || size > MAX_FRAME_SIZE) {
+                return stop();
+            }
+            copy(size - frame.size());
+            return frame.toByteArray();
+        }
+
+        private long memberSize(byte[] extra) {
+            int i = 0;
+            while (i + 4 <= extra.length) {
+                int length = (extra[i + 2] & 0xff) | (extra[i + 3] & 0xff) << 8;
+                if (i + 4 + length > extra.length) {
+                    break;
+                }
+                if (extra[i] == 'I' && extra[i + 1] == 'G' && length == 4) {
+                    return (extra[i + 4] & 0xffL) | (extra[i + 5] & 0xffL) << 8
+                            | (extra[i + 6] & 0xffL) << 16 | (extra[i + 7] & 0xffL) << 24;
+                }
+                if (extra[i] == 'B' && extra[i + 1] == 'C' && length == 2) {
+                    return ((extra[i + 4] & 0xff) | (extra[i + 5] & 0xff) << 8) + 1;
+                }
+                i += 4 + length;
+            }
+            return -1;
+        }
+    }
+
+    // A zstd frame is a header followed by length-prefixed blocks, so its extent is found without
+    // decoding. Skippable frames are dropped; a single frame covering the whole file (zstd's
+    // default) exceeds MAX_FRAME_SIZE and falls back to the sequential decoder.
+    private static class ZstdSplitter extends FrameSplitter {
+
+        private static final int MAGIC = 0xFD2FB528;
+
+        ZstdSplitter(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        byte[] next() throws IOException {
+            while (true) {
+                frame.reset();
+                byte[] magicBytes = in.readNBytes(4);
+                frame.write(magicBytes);
+                if (magicBytes.length == 0) {
+                    return null;
+                }
+                if (magicBytes.length < 4) {
+                    return stop();
+                }
+                int magic = intLE(magicBytes, 0);
+                if ((magic & 0xFFFFFFF0) == 0x184D2A50) {
+                    byte[] length = in.readNBytes(4);
+                    if (length.length < 4) {
+                        throw new EOFException("Truncated zstd skippable frame");
+                    }
+                    in.skipNBytes(intLE(length, 0) & 0xffffffffL);
+                    continue;
+                }
+                if (magic != MAGIC) {
+                    return stop();
+                }
+                return readFrame();
+            }
+        }
+
+        private byte[] readFrame() throws IOException {
+            int descriptor = take(1)[0] & 0xff;
+            int contentSizeFlag = descriptor >>> 6;
+            boolean singleSegment = (descriptor & 0x20) != 0;
+            boolean checksum = (descriptor & 0x04) != 0;
+            int dictionaryIdSize = new int[] {0, 1, 2, 4}[descriptor & 3];
+            int contentSizeSize = contentSizeFlag == 0 ? (singleSegment ? 1 : 0) : 1 << contentSizeFlag;
+            copy((singleSegment ? 0 : 1) + dictionaryIdSize + contentSizeSize);
+
+            boolean last = false;
+            while (!last) {
+                if (frame.size() > MAX_FRAME_SIZE) {
+                    return stop();
+                }
+                byte[] bytes = take(3);
+                int blockHeader = (bytes[0] & 0xff) | (bytes[1] & 0xff) << 8 | (bytes[2] & 0xff) << 16;
+                last = (blockHeader & 1) != 0;
+                int type = (blockHeader >>> 1) & 3;
+                if (type == 3) {
+                    throw new IOException("Corrupt zstd block header");
+                }
+                // RLE blocks store one byte regardless of the size they expand to
+                copy(type == 1 ? 1 : blockHeader >>> 3);
+            }
+            if (checksum) {
+                copy(4);
+            }
+            return frame.toByteArray();
+        }
+
+        private static int intLE(byte[] bytes, int offset) {
+            return (bytes[offset] & 0xff) | (bytes[offset + 1] & 0xff) << 8
+                    | (bytes[offset + 2] & 0xff) << 16 | (bytes[offset + 3] & 0xff) << 24;
+        }
+    }
+}
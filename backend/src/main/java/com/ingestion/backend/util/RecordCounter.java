@@ -0,0 +1,52 @@
+package com.ingestion.backend.util;
+
+import java.nio.ByteBuffer;
+import java.util.function.LongConsumer;
+
+// Counts the records of ClickHouse CSV or TSV output as it is copied, so a streamed export knows its
+// row count without the server holding the result back for a final summary. A CSV newline inside a
+// quoted field is not a record end; quotes inside fields are doubled, so tracking parity is enough.
+// TSV escapes newlines in values, so there every newline ends a record.
+public class RecordCounter {
+
+    private final boolean csv;
+    private final LongConsumer counted;
+    private boolean skipHeader;
+    private boolean quoted;
+    private long records;
+
+    // withHeader: the first record holds column names and isn't counted. counted is told how many
+    // records each buffer completed, for live progress.
+    public RecordCounter(String delimiter, boolean withHeader, LongConsumer counted) {
+        this.csv = !"\t".equals(delimiter);
+        this.skipHeader = withHeader;
+        this.counted = counted;
+    }
+
+    // Count the remaining bytes of the buffer without moving its position
+    public void count(ByteBuffer buffer) {
+        long completed = 0;
+        boolean inQuotes = quoted;
+        for (int i = buffer.position(), end = buffer.limit(); i < end; i++) {
+            byte b = buffer.get(i);
+            if (b == '"' && csv) {
+                inQuotes = !inQuotes;
+            } else if (b == '\n' && !inQuotes) {
+                completed++;
+            }
+        }
+        quoted = inQuotes;
+        if (skipHeader && completed > 0) {
+            skipHeader = false;
+            completed--;
+        }
+        if (completed > 0) {
+            records += completed;
+            counted.accept(completed);
+        }
+    }
+
+    public long getRecords() {
+        return records;
+    }
+}
@@ -0,0 +1,27 @@
+package com.ingestion.backend.util;
+
+import java.util.List;
+
+// An ordered slice of parsed records handed from the parser to the insert stage
+public class RowBatch {
+
+    private final long sequence;
+    private final List<String[]> rows;
+
+    public RowBatch(long sequence, List<String[]> rows) {
+        this.sequence = sequence;
+        this.rows = rows;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public List<String[]> getRows() {
+        return rows;
+    }
+
+    public int size() {
+        return rows.size();
+    }
+}
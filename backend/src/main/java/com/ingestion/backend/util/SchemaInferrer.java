@@ -0,0 +1,458 @@
+package com.ingestion.backend.util;
+
+import com.ingestion.backend.model.TableSchema;
+import com.ingestion.backend.model.TableSchema.ColumnDefinition;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Infers compact ClickHouse column types from a sample of a delimited file. Half of the sample is
+// the head of the file; the rest is short runs of records read at random offsets, so a column
+// that only changes shape further down (late nulls, wider numbers) is still caught.
+//
+// Values are checked straight from the tokenizer's byte slices with hand-written parsers, so
+// sampling allocates nothing per field.
+public class SchemaInferrer {
+
+    public static final int DEFAULT_SAMPLE_ROWS = 10_000;
+
+    private static final int RECORDS_PER_OFFSET = 16;
+    private static final int DISTINCT_LIMIT = 4096;
+    // A string column is LowCardinality when each distinct value repeats this often on average
+    private static final int LOW_CARDINALITY_RATIO = 10;
+    private static final int MAX_DECIMAL_SCALE = 9;
+    private static final int MAX_DECIMAL_PRECISION = 38;
+
+    private final Path file;
+    private final String delimiter;
+    private final int sampleRows;
+
+    public SchemaInferrer(Path file, String delimiter, int sampleRows) {
+        this.file = file;
+        this.delimiter = delimiter;
+        this.sampleRows = sampleRows > 0 ? sampleRows : DEFAULT_SAMPLE_ROWS;
+    }
+
+    public TableSchema infer(String tableName) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            CsvTokenizer head = new CsvTokenizer(channel, delimiter);
+            if (!head.nextRecord()) {
+                throw new IllegalArgumentException("File is empty");
+            }
+            String[] header = head.toArray();
+            ColumnStats[] stats = newStats(header.length);
+
+            int headRows = sampleRows / 2;
+            int sampled = 0;
+            while (sampled < headRows && head.nextRecord()) {
+                accept(head, stats);
+                sampled++;
+            }
+            long headEnd = head.position();
+
+            // Random runs from the rest of the file; the seed keeps inference repeatable per file
+            if (headEnd < size) {
+                Random random = new Random(size);
+                int offsets = (sampleRows - sampled + RECORDS_PER_OFFSET - 1) / RECORDS_PER_OFFSET;
+                for (int i = 0; i < offsets; i++) {
+                    long offset = headEnd + (long) (random.nextDouble() * (size - headEnd));
+                    sampled += sampleAt(channel, offset, header.length, stats);
+                }
+            }
+
+            return toSchema(tableName, header, stats, sampled);
+        }
+    }
+
+    // Infer from the buffered start of a stream that cannot be re-read, so only the head is
+    // sampled. Unless the stream ended inside the prefix, the prefix is cut after its last newline
+    // and a record broken by a quoted newline is dropped by the field count check.
+    public static TableSchema inferFromPrefix(byte[] prefix, int length, boolean complete, String delimiter,
+                                              int sampleRows, String tableName) throws IOException {
+        int end = length;
+        if (!complete) {
+            while (end > 0 && prefix[end - 1] != '\n') {
+                end--;
+            }
+        }
+        CsvTokenizer tokenizer = CsvTokenizer.of(ByteBuffer.wrap(prefix, 0, end), delimiter);
+        if (!tokenizer.nextRecord()) {
+            throw new IllegalArgumentException("File is empty");
+        }
+        String[] header = tokenizer.toArray();
+        ColumnStats[] stats = newStats(header.length);
+
+        int limit = sampleRows > 0 ? sampleRows : DEFAULT_SAMPLE_ROWS;
+        int sampled = 0;
+        while (sampled < limit && tokenizer.nextRecord()) {
+            if (tokenizer.fieldCount() == header.length) {
+                accept(tokenizer, stats);
+                sampled++;
+            }
+        }
+        return toSchema(tableName, header, stats, sampled);
+    }
+
+    private static ColumnStats[] newStats(int columns) {
+        ColumnStats[] stats = new ColumnStats[columns];
+        for (int i = 0; i < columns; i++) {
+            stats[i] = new ColumnStats();
+        }
+        return stats;
+    }
+
+    private static TableSchema toSchema(String tableName, String[] header, ColumnStats[] stats, int sampled) {
+        List<ColumnDefinition> columns = new ArrayList<>(header.length);
+        for (int i = 0; i < header.length; i++) {
+            columns.add(new ColumnDefinition(header[i], stats[i].resolveType()));
+        }
+        TableSchema schema = new TableSchema(tableName, columns);
+        schema.setSampledRows(sampled);
+        return schema;
+    }
+
+    // Skip the partial record at offset and sample the next few whole ones. A landing point inside
+    // a quoted field can misalign a record; the field count check drops those.
+    private int sampleAt(FileChannel channel, long offset, int columnCount, ColumnStats[] stats) throws IOException {
+        channel.position(offset);
+        CsvTokenizer tokenizer = new CsvTokenizer(channel, delimiter, 16 * 1024);
+        if (!tokenizer.nextRecord()) {
+            return 0;
+        }
+        int accepted = 0;
+        for (int i = 0; i < RECORDS_PER_OFFSET && tokenizer.nextRecord(); i++) {
+            if (tokenizer.fieldCount() == columnCount) {
+                accept(tokenizer, stats);
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+
+    private static void accept(CsvTokenizer tokenizer, ColumnStats[] stats) {
+        byte[] buffer = tokenizer.buffer();
+        int fields = Math.min(tokenizer.fieldCount(), stats.length);
+        for (int i = 0; i < fields; i++) {
+            stats[i].accept(buffer, tokenizer.fieldOffset(i), tokenizer.fieldLength(i));
+        }
+    }
+
+    // Narrowest type still consistent with every sampled value of one column
+    static final class ColumnStats {
+        long values;
+        long nulls;
+
+        boolean integer = true;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+
+        boolean decimal = true;
+        int integerDigits;
+        int scale;
+
+        boolean floating = true;
+
+        boolean date = true;
+        boolean dateTime = true;
+        int minYear = Integer.MAX_VALUE;
+        int maxYear = Integer.MIN_VALUE;
+        int fractionDigits;
+
+        boolean uuid = true;
+
+        // Open-addressing set of value hashes; stops counting past DISTINCT_LIMIT
+        final long[] hashes = new long[DISTINCT_LIMIT * 2];
+        int distinct;
+        boolean hasZeroHash;
+
+        void accept(byte[] b, int off, int len) {
+            values++;
+            if (len == 0 || (len == 2 && b[off] == '\\' && b[off + 1] == 'N')) {
+                nulls++;
+                return;
+            }
+            if (integer || decimal || floating) {
+                checkNumber(b, off, len);
+            }
+            if (date || dateTime) {
+                checkTemporal(b, off, len);
+            }
+            if (uuid) {
+                uuid = isUuid(b, off, len);
+            }
+            if (distinct <= DISTINCT_LIMIT) {
+                addHash(b, off, len);
+            }
+        }
+
+        String resolveType() {
+            long nonNull = values - nulls;
+            if (nonNull == 0) {
+                return "Nullable(String)";
+            }
+
+            String type;
+            if (integer) {
+                type = integerType();
+            } else if (decimal && scale <= MAX_DECIMAL_SCALE && integerDigits + scale <= MAX_DECIMAL_PRECISION) {
+                type = "Decimal(" + Math.max(1, integerDigits + scale) + ", " + scale + ")";
+            } else if (floating) {
+                type = "Float64";
+            } else if (date && minYear >= 1970 && maxYear <= 2149) {
+                type = "Date";
+            } else if (date && minYear >= 1900 && maxYear <= 2299) {
+                type = "Date32";
+            } else if (dateTime && fractionDigits == 0 && minYear >= 1970 && maxYear <= 2105) {
+                type = "DateTime";
+            } else if (dateTime && minYear >= 1900 && maxYear <= 2299) {
+                type = "DateTime64(" + Math.max(fractionDigits, 3) + ")";
+            } else if (uuid) {
+                type = "UUID";
+            } else {
+                // Empty strings load fine into String, so it is never wrapped in Nullable
+                boolean lowCardinality = distinct <= DISTINCT_LIMIT && (long) distinct * LOW_CARDINALITY_RATIO <= nonNull;
+                return lowCardinality ? "LowCardinality(String)" : "String";
+            }
+            return nulls > 0 ? "Nullable(" + type + ")" : type;
+        }
+
+        private String integerType() {
+            if (min >= 0) {
+                if (max <= 0xFFL) return "UInt8";
+                if (max <= 0xFFFFL) return "UInt16";
+                if (max <= 0xFFFFFFFFL) return "UInt32";
+                return "UInt64";
+            }
+            if (min >= Byte.MIN_VALUE && max <= Byte.MAX_VALUE) return "Int8";
+            if (min >= Short.MIN_VALUE && max <= Short.MAX_VALUE) return "Int16";
+            if (min >= Integer.MIN_VALUE && max <= Integer.MAX_VALUE) return "Int32";
+            return "Int64";
+        }
+
+        // One pass decides integer, fixed-point decimal and float syntax together
+        private void checkNumber(byte[] b, int off, int len) {
+            int i = off;
+            int end = off + len;
+            boolean negative = false;
+            if (b[i] == '-' || b[i] == '+') {
+                negative = b[i] == '-';
+                i++;
+            }
+
+            int digitsStart = i;
+            long value = 0;
+            boolean overflow = false;
+            while (i < end && isDigit(b[i])) {
+                int d = b[i] - '0';
+                if (value > (Long.MAX_VALUE - d) / 10) {
+                    overflow = true;
+                } else {
+                    value = value * 10 + d;
+                }
+                i++;
+            }
+            int intDigits = i - digitsStart;
+
+            // Leading zeros ("007", "00123") mark codes, not numbers; keep them as text
+            if (intDigits > 1 && b[digitsStart] == '0') {
+                integer = decimal = floating = false;
+                return;
+            }
+
+            int fraction = 0;
+            if (i < end && b[i] == '.') {
+                i++;
+                int fractionStart = i;
+                while (i < end && isDigit(b[i])) {
+                    i++;
+                }
+                fraction = i - fractionStart;
+            }
+            boolean anyDigits = intDigits + fraction > 0;
+
+            if (i == end && anyDigits) {
+                if (fraction == 0 && intDigits > 0 && !overflow && b[end - 1] != '.') {
+                    long signed = negative ? -value : value;
+                    min = Math.min(min, signed);
+                    max = Math.max(max, signed);
+                } else {
+                    integer = false;
+                }
+                int significant = intDigits;
+                for (int k = digitsStart; k < digitsStart + intDigits - 1 && b[k] == '0'; k++) {
+                    significant--;
+                }
+                integerDigits = Math.max(integerDigits, significant);
+                scale = Math.max(scale, fraction);
+                return;
+            }
+
+            integer = false;
+            decimal = false;
+            if (!floating) {
+                return;
+            }
+            // Exponent form, or inf/nan, only fit Float64
+            if (anyDigits && i < end && (b[i] == 'e' || b[i] == 'E')) {
+                i++;
+                if (i < end && (b[i] == '-' || b[i] == '+')) {
+                    i++;
+                }
+                int exponentStart = i;
+                while (i < end && isDigit(b[i])) {
+                    i++;
+                }
+                floating = i == end && i > exponentStart;
+            } else {
+                floating = !anyDigits && (matchesIgnoreCase(b, i, end, "inf") || matchesIgnoreCase(b, i, end, "nan"));
+            }
+        }
+
+        // YYYY-MM-DD, or YYYY-MM-DD hh:mm:ss[.fraction] with a space or T separator
+        private void checkTemporal(byte[] b, int off, int len) {
+            int year = parseDate(b, off, len);
+            if (year < 0) {
+                date = dateTime = false;
+                return;
+            }
+            minYear = Math.min(minYear, year);
+            maxYear = Math.max(maxYear, year);
+            if (len == 10) {
+                dateTime = false;
+                return;
+            }
+            date = false;
+            if (!dateTime) {
+                return;
+            }
+            int t = off + 10;
+            if (len < 19 || (b[t] != ' ' && b[t] != 'T')
+                    || !twoDigits(b, t + 1, 23) || b[t + 3] != ':'
+                    || !twoDigits(b, t + 4, 59) || b[t + 6] != ':'
+                    || !twoDigits(b, t + 7, 59)) {
+                dateTime = false;
+                return;
+            }
+            if (len == 19) {
+                return;
+            }
+            int digits = len - 20;
+            if (b[off + 19] != '.' || digits < 1 || digits > 9) {
+                dateTime = false;
+                return;
+            }
+            for (int i = off + 20; i < off + len; i++) {
+                if (!isDigit(b[i])) {
+                    dateTime = false;
+                    return;
+                }
+            }
+            fractionDigits = Math.max(fractionDigits, digits);
+        }
+
+        // Returns the year of a valid YYYY-MM-DD prefix, or -1
+        private static int parseDate(byte[] b, int off, int len) {
+            if (len < 10 || b[off + 4] != '-' || b[off + 7] != '-') {
+                return -1;
+            }
+            int year = 0;
+            for (int i = off; i < off + 4; i++) {
+                if (!isDigit(b[i])) {
+                    return -1;
+                }
+                year = year * 10 + (b[i] - '0');
+            }
+            if (!isDigit(b[off + 5]) || !isDigit(b[off + 6]) || !isDigit(b[off + 8]) || !isDigit(b[off + 9])) {
+                return -1;
+            }
+            int month = (b[off + 5] - '0') * 10 + (b[off + 6] - '0');
+            int day = (b[off + 8] - '0') * 10 + (b[off + 9] - '0');
+            if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+                return -1;
+            }
+            return year;
+        }
+
+        private static int daysInMonth(int year, int month) {
+            switch (month) {
+                case 2:
+                    boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+                    return leap ? 29 : 28;
+                case 4: case 6: case 9: case 11:
+                    return 30;
+                default:
+                    return 31;
+            }
+        }
+
+        private static boolean twoDigits(byte[] b, int i, int maxValue) {
+            return isDigit(b[i]) && isDigit(b[i + 1]) && (b[i] - '0') * 10 + (b[i + 1] - '0') <= maxValue;
+        }
+
+        private static boolean isUuid(byte[] b, int off, int len) {
+            if (len != 36) {
+                return false;
+            }
+            for (int i = 0; i < 36; i++) {
+                byte c = b[off + i];
+                if (i == 8 || i == 13 || i == 18 || i == 23) {
+                    if (c != '-') {
+                        return false;
+                    }
+                } else if (!isDigit(c) && !((c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F'))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean matchesIgnoreCase(byte[] b, int from, int end, String word) {
+            if (end - from != word.length()) {
+                return false;
+            }
+            for (int i = 0; i < word.length(); i++) {
+                if (Character.toLowerCase((char) b[from + i]) != word.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean isDigit(byte c) {
+            return c >= '0' && c <= '9';
+        }
+
+        // FNV-1a over the value bytes, inserted into the open-addressing table
+        private void addHash(byte[] b, int off, int len) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = off; i < off + len; i++) {
+                hash ^= b[i];
+                hash *= 0x100000001b3L;
+            }
+            if (hash == 0) {
+                if (!hasZeroHash) {
+                    hasZeroHash = true;
+                    distinct++;
+                }
+                return;
+            }
+            int mask = hashes.length - 1;
+            int slot = (int) (hash ^ (hash >>> 32)) & mask;
+            while (hashes[slot] != 0) {
+                if (hashes[slot] == hash) {
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            hashes[slot] = hash;
+            distinct++;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.ingestion.backend.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+// Parses a delimited stream that can only be read once, such as an upload still arriving over the
+// network. Records are tokenized sequentially on the calling thread and handed over in batches.
+public class StreamingCsvParser implements BatchParser {
+
+    private final CsvTokenizer tokenizer;
+    private final int batchRows;
+    private String[] header;
+
+    public StreamingCsvParser(InputStream in, String delimiter) {
+        this(in, delimiter, ParallelCsvParser.DEFAULT_BATCH_ROWS);
+    }
+
+    public StreamingCsvParser(InputStream in, String delimiter, int batchRows) {
+        this.tokenizer = CsvTokenizer.of(in, delimiter);
+        this.batchRows = batchRows;
+    }
+
+    @Override
+    public String[] getHeader() throws IOException {
+        if (header == null) {
+            if (!tokenizer.nextRecord()) {
+                throw new IllegalArgumentException("File is empty");
+            }
+            header = tokenizer.toArray();
+        }
+        return header;
+    }
+
+    @Override
+    public long parse(BatchHandler handler) throws Exception {
+        getHeader();
+        long sequence = 0;
+        long rows = 0;
+        List<String[]> batch = new ArrayList<>(batchRows);
+        while (tokenizer.nextRecord()) {
+            batch.add(tokenizer.toArray());
+            if (batch.size() == batchRows) {
+                handler.handle(new RowBatch(sequence++, batch));
+                rows += batch.size();
+                batch = new ArrayList<>(batchRows);
+            }
+        }
+        if (!batch.isEmpty()) {
+            handler.handle(new RowBatch(sequence, batch));
+            rows += batch.size();
+        }
+        return rows;
+    }
+
+    @Override
+    public int getParallelism() {
+        return 1;
+    }
+
+    // Nothing is parsed ahead of the handler
+    @Override
+    public int getChunksInFlight() {
+        return 0;
+    }
+
+    @Override
+    public int getMaxChunksInFlight() {
+        return 0;
+    }
+
+    // Bytes tokenized so far, after any decompression
+    @Override
+    public long getBytesRead() {
+        return tokenizer.position();
+    }
+}
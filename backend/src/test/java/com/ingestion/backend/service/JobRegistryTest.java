@@ -0,0 +1,127 @@
+package com.ingestion.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ingestion.backend.model.IngestionResult;
+import com.ingestion.backend.model.JobPage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class JobRegistryTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void evictedJobsAreReadBackFromTheJournal() throws IOException {
+        JobRegistry registry = newRegistry(2, 100);
+        IngestionResult[] jobs = new IngestionResult[4];
+        for (int i = 0; i < jobs.length; i++) {
+            jobs[i] = job("job" + i, i, "t" + (i % 2));
+            registry.register(jobs[i]);
+            registry.started(jobs[i]);
+            jobs[i].setStatus("COMPLETED");
+            jobs[i].setTotalRecords(i * 10);
+            registry.finish(jobs[i]);
+        }
+        IngestionResult running = job("running", 10, "t0");
+        registry.register(running);
+
+        // Only two finished jobs stay in memory; the rest come back from disk with their final state
+        assertSame(running, registry.get("running"));
+        int inMemory = 0;
+        for (IngestionResult job : jobs) {
+            IngestionResult found = registry.get(job.getIngestionId());
+            inMemory += found == job ? 1 : 0;
+            assertEquals("COMPLETED", found.getStatus());
+            assertEquals(job.getTotalRecords(), found.getTotalRecords());
+            assertEquals(job.getTableName(), found.getTableName());
+        }
+        assertEquals(2, inMemory);
+
+        JobPage page = registry.query(null, null, "t0", null, null, 0, 2);
+        assertEquals(3, page.getTotal());
+        assertEquals(List.of("running", "job2"), ids(page));
+        assertEquals(List.of("job0"), ids(registry.query(null, null, "t0", null, null, 2, 2)));
+        assertEquals(List.of("job3", "job1"), ids(registry.query("COMPLETED", null, "t1", 1L, null, 0, 10)));
+        registry.shutdown();
+    }
+
+    @Test
+    void restartMarksUnfinishedJobsFailedAndCompactsTheJournal() throws IOException {
+        JobRegistry registry = newRegistry(10, 3);
+        for (int i = 0; i < 5; i++) {
+            IngestionResult job = job("job" + i, i, "t");
+            registry.register(job);
+            registry.started(job);
+            job.setStatus("COMPLETED");
+            registry.finish(job);
+        }
+        // Cut off by a crash: started but never finished, and no shutdown
+        IngestionResult lost = job("lost", 5, "t");
+        lost.setStatus("IN_PROGRESS");
+        registry.register(lost);
+        registry.started(lost);
+
+        JobRegistry restarted = newRegistry(10, 3);
+        assertEquals("FAILED", restarted.get("lost").getStatus());
+        assertEquals(List.of("lost", "job4", "job3"), ids(restarted.query(null, null, null, null, null, 0, 10)));
+        assertEquals(3, Files.readAllLines(dir.resolve("jobs.jsonl")).size());
+        restarted.shutdown();
+    }
+
+    @Test
+    void olderJobsAreServedFromTheBoundedIndexWithoutTheFile() throws IOException {
+        JobRegistry registry = newRegistry(1, 3);
+        for (int i = 0; i < 5; i++) {
+            IngestionResult job = job("job" + i, i, "t");
+            registry.register(job);
+            registry.started(job);
+            job.setStatus("COMPLETED");
+            registry.finish(job);
+            // Changing the live job after it is journalled doesn't change its record
+            job.setStatus("CHANGED");
+        }
+        Files.delete(dir.resolve("jobs.jsonl"));
+
+        assertEquals("COMPLETED", registry.get("job3").getStatus());
+        assertNull(registry.get("job1"));
+        assertEquals(List.of("job4", "job3", "job2"), ids(registry.query(null, null, null, null, null, 0, 10)));
+        registry.shutdown();
+    }
+
+    private JobRegistry newRegistry(long maxFinished, int maxHistory) throws IOException {
+        JobRegistry registry = new JobRegistry();
+        ReflectionTestUtils.setField(registry, "maxFinished", maxFinished);
+        ReflectionTestUtils.setField(registry, "finishedTtlMs", 60_000L);
+        ReflectionTestUtils.setField(registry, "journalPath", dir.resolve("jobs.jsonl").toString());
+        ReflectionTestUtils.setField(registry, "maxHistory", maxHistory);
+        ReflectionTestUtils.setField(registry, "objectMapper", new ObjectMapper());
+        registry.start();
+        return registry;
+    }
+
+    private static IngestionResult job(String id, long startTime, String table) {
+        IngestionResult result = new IngestionResult();
+        result.setIngestionId(id);
+        result.setType("FLATFILE_TO_CLICKHOUSE");
+        result.setTableName(table);
+        result.setStatus("QUEUED");
+        result.setStartTime(startTime);
+        return result;
+    }
+
+    private static List<String> ids(JobPage page) {
+        return page.getJobs().stream().map(IngestionResult::getIngestionId).toList();
+    }
+}
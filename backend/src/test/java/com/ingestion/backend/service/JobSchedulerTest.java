@@ -0,0 +1,150 @@
+package com.ingestion.backend.service;
+
+import com.ingestion.backend.model.IngestionResult;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JobSchedulerTest {
+
+    private final JobScheduler scheduler = new JobScheduler();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(scheduler, "maxConcurrent", 3);
+        ReflectionTestUtils.setField(scheduler, "maxPerHost", 1);
+        ReflectionTestUtils.setField(scheduler, "maxQueued", 4);
+        ReflectionTestUtils.setField(scheduler, "shutdownTimeoutMs", 2000L);
+        scheduler.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void busyHostsQueueByPriorityWithoutBlockingOtherHosts() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(4);
+
+        IngestionResult first = submit("a", 0, order, release, done, "a0");
+        IngestionResult low = submit("a", 1, order, release, done, "a1");
+        IngestionResult high = submit("a", 5, order, release, done, "a5");
+        IngestionResult other = submit("b", 0, order, release, done, "b0");
+
+        // One job per host runs; the other host is not held up by the queue for the busy one
+        assertTrue(waitFor(() -> order.size() == 2));
+        assertEquals(List.of("a0", "b0"), order.subList(0, 2).stream().sorted().toList());
+        assertEquals("QUEUED", low.getStatus());
+        assertEquals(2, low.getQueueDepth());
+        assertEquals(1, high.getQueueDepth());
+        assertEquals(0, other.getQueueDepth());
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("a5", "a1"), order.subList(2, 4));
+        assertEquals(0, low.getQueueDepth());
+        assertTrue(low.getQueuedMillis() >= high.getQueuedMillis());
+        assertEquals("COMPLETED", first.getStatus());
+    }
+
+    @Test
+    void fullQueueRejectsAndShutdownFailsQueuedJobs() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+        submit("a", 0, order, release, done, "running");
+        assertTrue(waitFor(() -> order.size() == 1));
+
+        IngestionResult[] queued = new IngestionResult[4];
+        for (int i = 0; i < queued.length; i++) {
+            queued[i] = submit("a", 0, order, release, done, "queued" + i);
+        }
+        assertThrows(RejectedExecutionException.class, () -> submit("a", 0, order, release, done, "rejected"));
+
+        // The running job finishes within the shutdown timeout; the queued ones never start
+        new Thread(() -> {
+            sleep(200);
+            release.countDown();
+        }).start();
+        scheduler.shutdown();
+
+        assertEquals(List.of("running"), order);
+        for (IngestionResult result : queued) {
+            assertEquals("FAILED", result.getStatus());
+        }
+        assertThrows(RejectedExecutionException.class, () -> submit("b", 0, order, release, done, "late"));
+    }
+
+    @Test
+    void cancelDropsQueuedJobsAndInterruptsRunningOnes() throws InterruptedException {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        IngestionResult running = new IngestionResult();
+        scheduler.submit("a", 0, running, () -> {
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+        });
+        List<String> order = new CopyOnWriteArrayList<>();
+        IngestionResult queued = submit("a", 0, order, new CountDownLatch(0), new CountDownLatch(1), "queued");
+        assertTrue(waitFor(() -> "QUEUED".equals(queued.getStatus()) && running.getQueueDepth() == 0));
+
+        assertEquals(JobScheduler.Cancellation.QUEUED, scheduler.cancel(queued));
+        assertEquals(JobScheduler.Cancellation.RUNNING, scheduler.cancel(running));
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        // The slot is free again and the cancelled job never ran
+        IngestionResult next = submit("a", 0, order, new CountDownLatch(0), new CountDownLatch(1), "next");
+        assertTrue(waitFor(() -> "COMPLETED".equals(next.getStatus())));
+        assertEquals(List.of("next"), order);
+        assertEquals(JobScheduler.Cancellation.NOT_FOUND, scheduler.cancel(running));
+    }
+
+    private IngestionResult submit(String host, int priority, List<String> order, CountDownLatch release,
+                                   CountDownLatch done, String name) {
+        IngestionResult result = new IngestionResult();
+        result.setIngestionId(name);
+        scheduler.submit(host, priority, result, () -> {
+            order.add(name);
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            result.setStatus("COMPLETED");
+            done.countDown();
+        });
+        return result;
+    }
+
+    private static boolean waitFor(BooleanSupplier condition) {
+        for (int i = 0; i < 500 && !condition.getAsBoolean(); i++) {
+            sleep(10);
+        }
+        return condition.getAsBoolean();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.ingestion.backend.service;
+
+import com.ingestion.backend.model.IngestionRequest;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MetadataCacheTest {
+
+    private final MetadataCache cache = new MetadataCache();
+    private final IngestionRequest request = new IngestionRequest();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(cache, "tablesTtlMs", 60_000L);
+        ReflectionTestUtils.setField(cache, "schemaTtlMs", 60_000L);
+        ReflectionTestUtils.setField(cache, "maxEntries", 100L);
+        cache.start();
+
+        request.setHost("localhost");
+        request.setPort(8123);
+        request.setDatabase("uk");
+        request.setUsername("default");
+    }
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<String>>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return cache.getTables(request, () -> {
+                        loads.incrementAndGet();
+                        LockSupport.parkNanos(200_000_000L);
+                        return List.of("uk_price_paid");
+                    });
+                }));
+            }
+            start.countDown();
+            for (Future<List<String>> result : results) {
+                assertEquals(List.of("uk_price_paid"), result.get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getStats().getMissCount());
+        assertEquals(7, cache.getStats().getHitCount());
+    }
+
+    @Test
+    void failuresAreNotCachedAndInvalidationForcesAReload() throws SQLException {
+        assertThrows(SQLException.class, () -> cache.getTables(request, () -> {
+            throw new SQLException("Connection refused");
+        }));
+
+        AtomicInteger loads = new AtomicInteger();
+        MetadataCache.Loader<List<String>> loader = () -> List.of("t" + loads.incrementAndGet());
+        assertEquals(List.of("t1"), cache.getTables(request, loader));
+        assertEquals(List.of("t1"), cache.getTables(request, loader));
+
+        cache.invalidateTable(request, "new_table");
+        assertEquals(List.of("t2"), cache.getTables(request, loader));
+        assertEquals(1, cache.getStats().getLoadFailureCount());
+    }
+}
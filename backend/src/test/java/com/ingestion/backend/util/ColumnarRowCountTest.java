@@ -0,0 +1,90 @@
+package com.ingestion.backend.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ColumnarRowCountTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void parquetRowCountComesFromTheFooter() throws IOException {
+        // FileMetaData: version = 1, schema = [{type: BOOLEAN, name: "x", id 40: true}], num_rows = 1234
+        byte[] footer = {
+                0x15, 0x02,
+                0x19, 0x1C, 0x15, 0x00, 0x38, 0x01, 'x', 0x01, 0x50, 0x00,
+                0x16, (byte) 0xA4, 0x13,
+                0x00};
+        assertEquals(1234, ColumnarRowCount.parquet(parquet(footer)));
+
+        // No num_rows field, and not a Parquet file at all
+        assertThrows(IOException.class, () -> ColumnarRowCount.parquet(parquet(new byte[] {0x15, 0x02, 0x00})));
+        assertThrows(IOException.class, () -> ColumnarRowCount.parquet(write("plain.parquet", "a,b\n1,2\n3,4\n".getBytes())));
+    }
+
+    @Test
+    void arrowRowCountSumsTheRecordBatches() throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.write(message(1, 0, 0));
+        stream.write(message(3, 3, 16));
+        stream.write(new byte[16]);
+        stream.write(message(3, 5, 24));
+        stream.write(new byte[24]);
+        stream.write(ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putInt(-1).putInt(0).array());
+
+        assertEquals(8, ColumnarRowCount.arrow(write("stream.arrows", stream.toByteArray())));
+
+        // The file format wraps the same stream in the magic and a footer, which isn't read
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        file.write("ARROW1\0\0".getBytes(StandardCharsets.US_ASCII));
+        file.write(stream.toByteArray());
+        file.write(new byte[] {1, 2, 3, 4, 4, 0, 0, 0});
+        file.write("ARROW1".getBytes(StandardCharsets.US_ASCII));
+        assertEquals(8, ColumnarRowCount.arrow(write("file.arrow", file.toByteArray())));
+
+        byte[] truncated = stream.toByteArray();
+        assertThrows(IOException.class, () -> ColumnarRowCount.arrow(write("truncated.arrow",
+                Arrays.copyOf(truncated, 100))));
+    }
+
+    private Path parquet(byte[] footer) throws IOException {
+        ByteBuffer file = ByteBuffer.allocate(4 + 8 + footer.length + 8).order(ByteOrder.LITTLE_ENDIAN);
+        file.put("PAR1".getBytes(StandardCharsets.US_ASCII)).put(new byte[8]).put(footer).putInt(footer.length)
+                .put("PAR1".getBytes(StandardCharsets.US_ASCII));
+        return write("data.parquet", file.array());
+    }
+
+    private Path write(String name, byte[] content) throws IOException {
+        return Files.write(dir.resolve(name), content);
+    }
+
+    // An encapsulated IPC message: a Message flatbuffer with a RecordBatch header when rows > 0
+    private static byte[] message(int headerType, long rows, long bodyLength) {
+        ByteBuffer fb = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN);
+        fb.putInt(0, 16);
+        // Message vtable at 4: version, header_type, header, bodyLength
+        fb.putShort(4, (short) 12).putShort(6, (short) 24)
+                .putShort(8, (short) 4).putShort(10, (short) 6).putShort(12, (short) (rows > 0 ? 8 : 0)).putShort(14, (short) 16);
+        fb.putInt(16, 12).putShort(20, (short) 4).put(22, (byte) headerType).putLong(32, bodyLength);
+        if (rows > 0) {
+            fb.putInt(24, 24);
+            // RecordBatch vtable at 40 with just length, table at 48
+            fb.putShort(40, (short) 6).putShort(42, (short) 16).putShort(44, (short) 8);
+            fb.putInt(48, 8).putLong(56, rows);
+        }
+        return ByteBuffer.allocate(8 + 64).order(ByteOrder.LITTLE_ENDIAN).putInt(-1).putInt(64).put(fb.array()).array();
+    }
+}
@@ -0,0 +1,69 @@
+package com.ingestion.backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CsvTokenizerTest {
+
+    @Test
+    void handlesQuotesEscapesAndEmbeddedNewlines() throws IOException {
+        List<String[]> records = tokenize("id,name,note\r\n1,\"Smith, J\",\"said \"\"hi\"\"\nthen left\"\n\n2,,\"\"\n3,x,y", ",", 64 * 1024);
+
+        assertEquals(4, records.size());
+        assertArrayEquals(new String[]{"id", "name", "note"}, records.get(0));
+        assertArrayEquals(new String[]{"1", "Smith, J", "said \"hi\"\nthen left"}, records.get(1));
+        assertArrayEquals(new String[]{"2", "", ""}, records.get(2));
+        assertArrayEquals(new String[]{"3", "x", "y"}, records.get(3));
+    }
+
+    @Test
+    void splitsOnMultiCharacterAndRegexDelimiters() throws IOException {
+        assertArrayEquals(new String[]{"a", "b|c", "d"}, tokenize("a||b|c||d\n", "||", 64 * 1024).get(0));
+        assertArrayEquals(new String[]{"a.b", "c"}, tokenize("a.b|c\n", "|", 64 * 1024).get(0));
+    }
+
+    @Test
+    void recordsMaySpanRefills() throws IOException {
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            csv.append(i).append(",\"value, ").append(i).append("\"\"\"||").append("x".repeat(i)).append('\n');
+        }
+        // A tiny buffer forces records and delimiters to straddle reads and the buffer to grow
+        List<String[]> records = tokenize(csv.toString(), "||", 8);
+
+        assertEquals(200, records.size());
+        for (int i = 0; i < 200; i++) {
+            assertArrayEquals(new String[]{i + ",\"value, " + i + "\"\"\"", "x".repeat(i)}, records.get(i));
+        }
+    }
+
+    @Test
+    void readsFromMappedStyleBuffers() throws IOException {
+        CsvTokenizer tokenizer = CsvTokenizer.of(ByteBuffer.wrap("a,b\nc,d\n".getBytes(StandardCharsets.UTF_8)), ",");
+        tokenizer.nextRecord();
+        assertEquals(4, tokenizer.position());
+        tokenizer.nextRecord();
+        assertArrayEquals(new String[]{"c", "d"}, tokenizer.toArray());
+        assertEquals(8, tokenizer.position());
+    }
+
+    private static List<String[]> tokenize(String csv, String delimiter, int bufferSize) throws IOException {
+        CsvTokenizer tokenizer = new CsvTokenizer(
+                Channels.newChannel(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))), delimiter, bufferSize);
+        List<String[]> records = new ArrayList<>();
+        while (tokenizer.nextRecord()) {
+            records.add(tokenizer.toArray());
+        }
+        return records;
+    }
+}
@@ -0,0 +1,103 @@
+package com.ingestion.backend.util;
+
+import com.ingestion.backend.model.ExportFilter;
+import com.ingestion.backend.model.IngestionRequest;
+import com.ingestion.backend.model.TableSchema;
+import com.ingestion.backend.model.TableSchema.ColumnDefinition;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ExportQueryTest {
+
+    @Test
+    void keyFiltersGoInPrewhereAndOperandsAreTypedParameters() {
+        ExportFilter window = new ExportFilter("date", "BETWEEN", null);
+        window.setFrom("2020-01-01");
+        ExportFilter towns = new ExportFilter("town", "IN", null);
+        towns.setValues(List.of("LONDON", "O'Neil\tTown"));
+        IngestionRequest request = request(window, towns, new ExportFilter("price", ">=", "100000"));
+
+        ExportQuery query = new ExportQuery(request, pricePaid(), null, ExportQuery.Placeholders.NAMED);
+
+        assertEquals("SELECT * FROM uk_price_paid"
+                + " PREWHERE `date` >= {f0:Date} AND `town` IN ({f1:String}, {f2:String})"
+                + " WHERE `price` >= {f3:UInt32} AND cityHash64(town) % 2 = 0",
+                query.sql(null, "cityHash64(town) % 2 = 0"));
+        assertEquals(Map.of("param_f0", "2020-01-01", "param_f1", "LONDON", "param_f2", "O'Neil\\tTown",
+                "param_f3", "100000"), query.getParameters());
+        assertEquals(List.of("date", "town"), new ArrayList<>(query.getKeyFilterColumns()));
+    }
+
+    @Test
+    void positionalValuesFollowTheirPlaceholders() {
+        IngestionRequest request = request(new ExportFilter("price", "<", "5"), new ExportFilter("date", "=", "2021-02-03"),
+                new ExportFilter("street", "IS NOT NULL", null), new ExportFilter("date", "LAST", "30 days"));
+
+        ExportQuery query = new ExportQuery(request, pricePaid(), null, ExportQuery.Placeholders.POSITIONAL);
+
+        assertEquals("SELECT price FROM uk_price_paid"
+                + " PREWHERE `date` = CAST(? AS Date) AND `date` >= today() - INTERVAL 30 DAY"
+                + " WHERE `price` < CAST(? AS UInt32) AND `street` IS NOT NULL",
+                query.sql(List.of("price"), null));
+        assertEquals(List.of("2021-02-03", "5"), query.getValues());
+    }
+
+    @Test
+    void joinedTableFiltersAndColumnsArePushedBelowTheJoin() {
+        IngestionRequest request = request(new ExportFilter("region", "=", "NORTH"), new ExportFilter("price", ">", "1"));
+        request.setJoinConfig(Map.of("type", "LEFT JOIN", "table", "geo.towns",
+                "condition", "uk_price_paid.town = geo.towns.name"));
+        TableSchema towns = new TableSchema("geo.towns", List.of(new ColumnDefinition("name", "String"),
+                new ColumnDefinition("region", "LowCardinality(String)"), new ColumnDefinition("population", "UInt32")));
+
+        ExportQuery query = new ExportQuery(request, pricePaid(), towns, ExportQuery.Placeholders.POSITIONAL);
+
+        assertEquals("SELECT uk_price_paid.price, towns.population FROM uk_price_paid"
+                + " LEFT JOIN (SELECT `name`, `population` FROM geo.towns WHERE `region` = CAST(? AS String)) AS towns"
+                + " ON uk_price_paid.town = towns.name"
+                + " WHERE uk_price_paid.`price` > CAST(? AS UInt32)",
+                query.sql(List.of("uk_price_paid.price", "geo.towns.population"), null));
+        assertEquals(List.of("NORTH", "1"), query.getValues());
+    }
+
+    @Test
+    void rejectsUnknownColumnsAndOperators() {
+        assertThrows(IllegalArgumentException.class, () -> new ExportQuery(
+                request(new ExportFilter("price; DROP TABLE x", "=", "1")), pricePaid(), null, ExportQuery.Placeholders.NAMED));
+        assertThrows(IllegalArgumentException.class, () -> new ExportQuery(
+                request(new ExportFilter("price", "LIKE", "1")), pricePaid(), null, ExportQuery.Placeholders.NAMED));
+        assertThrows(IllegalArgumentException.class, () -> new ExportQuery(
+                request(new ExportFilter("date", "LAST", "1 DAY; SELECT 1")), pricePaid(), null, ExportQuery.Placeholders.NAMED));
+    }
+
+    @Test
+    void quotedIdentifiersEscapeBackquotesAndBackslashes() {
+        assertEquals("`order date`", ExportQuery.quoteIdentifier("order date"));
+        assertEquals("`a\\`b\\\\c`", ExportQuery.quoteIdentifier("a`b\\c"));
+    }
+
+    private static IngestionRequest request(ExportFilter... filters) {
+        IngestionRequest request = new IngestionRequest();
+        request.setTableName("uk_price_paid");
+        request.setFilters(List.of(filters));
+        return request;
+    }
+
+    private static TableSchema pricePaid() {
+        TableSchema schema = new TableSchema("uk_price_paid", List.of(
+                new ColumnDefinition("price", "UInt32"),
+                new ColumnDefinition("date", "Date"),
+                new ColumnDefinition("town", "LowCardinality(String)"),
+                new ColumnDefinition("street", "Nullable(String)")));
+        schema.setPartitionKey("toYear(date)");
+        schema.setPrimaryKey("town, date");
+        return schema;
+    }
+}
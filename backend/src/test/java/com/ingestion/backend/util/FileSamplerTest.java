@@ -0,0 +1,113 @@
+package com.ingestion.backend.util;
+
+import com.ingestion.backend.model.ColumnProfile;
+import com.ingestion.backend.model.FilePreview;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileSamplerTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void samplesFromAcrossTheFileWithColumnStatistics() throws IOException {
+        StringBuilder csv = new StringBuilder("id,amount,town,note\n");
+        for (int i = 0; i < 200_000; i++) {
+            csv.append(i).append(',')
+               .append(i % 10 == 0 ? "" : (i % 500) + ".25").append(',')
+               .append("town").append(i % 50).append(',')
+               // Quoted delimiters and newlines make random offsets land mid-record
+               .append(i % 3 == 0 ? "\"a, b\nc\"" : "plain").append('\n');
+        }
+
+        FilePreview preview = sample(csv.toString(), 100, 4096);
+
+        assertEquals(100, preview.getRows().size());
+        assertTrue(preview.getSampledRows() > 3000, "sampled " + preview.getSampledRows());
+        long estimate = preview.getEstimatedRows();
+        assertTrue(estimate > 180_000 && estimate < 220_000, "estimated " + estimate);
+
+        // Rows are spread over the file rather than taken from the head
+        long lastId = ((Number) preview.getRows().get(99).get("id")).longValue();
+        assertTrue(lastId > 150_000, "last id " + lastId);
+        long firstId = ((Number) preview.getRows().get(0).get("id")).longValue();
+        assertTrue(firstId < 50_000, "first id " + firstId);
+
+        Map<String, ColumnProfile> columns = new HashMap<>();
+        preview.getColumns().forEach(column -> columns.put(column.getName(), column));
+        ColumnProfile amount = columns.get("amount");
+        assertEquals("Nullable(Decimal(5, 2))", amount.getType());
+        assertEquals(0.1, amount.getNullRatio(), 0.02);
+        assertEquals(1.25, amount.getMin());
+        assertEquals(499.25, amount.getMax());
+
+        ColumnProfile town = columns.get("town");
+        assertEquals("town0", town.getMin());
+        assertEquals("town9", town.getMax());
+        assertEquals(50, town.getDistinctEstimate(), 3);
+        assertEquals(2, columns.get("note").getDistinctEstimate());
+        assertEquals(0.0, columns.get("id").getNullRatio());
+    }
+
+    @Test
+    void smallFilesAreReadFromTheTopWithoutRepeats() throws IOException {
+        StringBuilder csv = new StringBuilder("n\n");
+        for (int i = 0; i < 300; i++) {
+            csv.append(i).append('\n');
+        }
+
+        FilePreview preview = sample(csv.toString(), 1000, 4096);
+
+        assertEquals(300, preview.getSampledRows());
+        assertEquals(300, preview.getRows().size());
+        for (int i = 0; i < 300; i++) {
+            assertEquals((long) i, preview.getRows().get(i).get("n"));
+        }
+        assertEquals(0L, preview.getColumns().get(0).getMin());
+        assertEquals(299L, preview.getColumns().get(0).getMax());
+    }
+
+    @Test
+    void parsesNumbersWithoutExceptions() {
+        assertEquals(42L, parse("42"));
+        assertEquals(-9223372036854775808L, parse("-9223372036854775808"));
+        assertEquals(9.223372036854775808E18, parse("9223372036854775808"));
+        assertEquals(7L, parse("0000000000000000000007"));
+        assertEquals(-3.25, parse("-3.25"));
+        assertEquals(0.1, parse(".1"));
+        assertEquals(1.5e10, parse("1.5e10"));
+        assertEquals(0.30000000000000004, parse("0.30000000000000004"));
+        assertEquals(Double.NEGATIVE_INFINITY, parse("-Infinity"));
+        assertEquals("1e", parse("1e"));
+        assertEquals("-", parse("-"));
+        assertEquals(".", parse("."));
+        assertEquals("12a", parse("12a"));
+        assertEquals("", parse(""));
+    }
+
+    private static Object parse(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return FieldParser.parse(bytes, 0, bytes.length);
+    }
+
+    private FilePreview sample(String csv, int limit, int sampleRows) throws IOException {
+        Path file = dir.resolve("sample.csv");
+        Files.writeString(file, csv);
+        try (FileChannel channel = FileChannel.open(file)) {
+            return new FileSampler(channel, ",", limit, sampleRows).sample();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.ingestion.backend.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelCsvParserTest {
+
+    @TempDir
+    Path dir;
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void chunkBoundariesNeverSplitRecords() throws Exception {
+        StringBuilder csv = new StringBuilder("id,name,note\r\n");
+        for (int i = 0; i < 300; i++) {
+            csv.append(i).append(',');
+            switch (i % 5) {
+                case 0 -> csv.append("plain,text");
+                case 1 -> csv.append("\"Smith, J\",\"said \"\"hi\"\"\nthen left\"");
+                case 2 -> csv.append("\"multi\r\nline\",\"\"");
+                case 3 -> csv.append(",\"\"\"\"");
+                default -> csv.append("\"").append("x\n".repeat(i % 7)).append("\",end");
+            }
+            csv.append(i % 2 == 0 ? "\r\n" : "\n");
+        }
+        Path file = dir.resolve("records.csv");
+        Files.writeString(file, csv);
+        List<String[]> expected = tokenize(file);
+
+        // Chunks from a byte up to the whole file, so boundaries land inside quotes, escapes and CRLFs
+        for (int chunkSize : new int[] {1, 2, 5, 17, 64, 1000, 1 << 20}) {
+            ParallelCsvParser parser = new ParallelCsvParser(file, ",", chunkSize, 7, pool);
+            List<String[]> records = new ArrayList<>();
+            List<Long> sequences = new ArrayList<>();
+            long rows = parser.parse(batch -> {
+                assertTrue(parser.getChunksInFlight() <= parser.getMaxChunksInFlight());
+                sequences.add(batch.getSequence());
+                records.addAll(batch.getRows());
+            });
+
+            assertArrayEquals(new String[] {"id", "name", "note"}, parser.getHeader());
+            assertEquals(expected.size(), rows, "chunk size " + chunkSize);
+            for (int i = 0; i < expected.size(); i++) {
+                assertArrayEquals(expected.get(i), records.get(i), "chunk size " + chunkSize + ", record " + i);
+            }
+            for (int i = 0; i < sequences.size(); i++) {
+                assertEquals(i, sequences.get(i));
+            }
+            assertEquals(Files.size(file), parser.getBytesRead());
+        }
+    }
+
+    // The sequential tokenizer's reading of the data rows
+    private static List<String[]> tokenize(Path file) throws IOException {
+        List<String[]> records = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file)) {
+            CsvTokenizer tokenizer = new CsvTokenizer(channel, ",");
+            tokenizer.nextRecord();
+            while (tokenizer.nextRecord()) {
+                records.add(tokenizer.toArray());
+            }
+        }
+        return records;
+    }
+}
@@ -0,0 +1,109 @@
+package com.ingestion.backend.util;
+
+import com.github.luben.zstd.ZstdOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelDecompressingInputStreamTest {
+
+    private static final byte[] CSV = csv(20_000);
+
+    @Test
+    void detectsAndDecodesBlockCompressedOutputOfEveryCodec() throws IOException {
+        for (CompressionCodec codec : CompressionCodec.values()) {
+            byte[] compressed = compress(codec, CSV, 16 * 1024);
+            try (InputStream in = ParallelDecompressingInputStream.open(new ByteArrayInputStream(compressed), 3)) {
+                if (codec == CompressionCodec.GZIP || codec == CompressionCodec.ZSTD) {
+                    assertTrue(in instanceof ParallelDecompressingInputStream, codec.name());
+                }
+                assertArrayEquals(CSV, in.readAllBytes(), codec.name());
+            }
+        }
+    }
+
+    @Test
+    void membersWithoutSizeHintsFallBackToSequentialDecoding() throws IOException {
+        // Our sized members followed by two plain gzip members, as `cat a.gz b.gz c.gz` would produce
+        int half = CSV.length / 2;
+        ByteArrayOutputStream concatenated = new ByteArrayOutputStream();
+        concatenated.write(compress(CompressionCodec.GZIP, Arrays.copyOf(CSV, half), 8 * 1024));
+        concatenated.write(gzip(Arrays.copyOfRange(CSV, half, half + 1000)));
+        concatenated.write(gzip(Arrays.copyOfRange(CSV, half + 1000, CSV.length)));
+
+        try (InputStream in = ParallelDecompressingInputStream.open(new ByteArrayInputStream(concatenated.toByteArray()), 2)) {
+            assertArrayEquals(CSV, in.readAllBytes());
+        }
+    }
+
+    @Test
+    void skipsZstdSkippableFramesAndStreamsOversizedFrames() throws IOException {
+        byte[] random = new byte[ParallelDecompressingInputStream.MAX_FRAME_SIZE + 1024];
+        new Random(7).nextBytes(random);
+
+        ByteArrayOutputStream input = new ByteArrayOutputStream();
+        input.write(new byte[] {0x50, 0x2a, 0x4d, 0x18, 3, 0, 0, 0, 'x', 'y', 'z'});
+        input.write(compress(CompressionCodec.ZSTD, CSV, 32 * 1024));
+        // One frame of unknown content size that is too large to buffer for the pool
+        try (ZstdOutputStream zstd = new ZstdOutputStream(input)) {
+            zstd.write(random);
+        }
+
+        try (InputStream in = ParallelDecompressingInputStream.open(new ByteArrayInputStream(input.toByteArray()), 2)) {
+            byte[] decoded = in.readAllBytes();
+            assertEquals(CSV.length + random.length, decoded.length);
+            assertArrayEquals(CSV, Arrays.copyOf(decoded, CSV.length));
+            assertArrayEquals(random, Arrays.copyOfRange(decoded, CSV.length, decoded.length));
+        }
+    }
+
+    @Test
+    void plainInputPassesThroughAndTruncationIsReported() throws IOException {
+        try (InputStream in = ParallelDecompressingInputStream.open(new ByteArrayInputStream(CSV))) {
+            assertArrayEquals(CSV, in.readAllBytes());
+        }
+
+        byte[] compressed = compress(CompressionCodec.ZSTD, CSV, 16 * 1024);
+        byte[] truncated = Arrays.copyOf(compressed, compressed.length - 100);
+        try (InputStream in = ParallelDecompressingInputStream.open(new ByteArrayInputStream(truncated), 2)) {
+            assertThrows(IOException.class, in::readAllBytes);
+        }
+    }
+
+    private static byte[] compress(CompressionCodec codec, byte[] data, int blockSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ParallelCompressingOutputStream compressing = new ParallelCompressingOutputStream(out, codec, blockSize, 2)) {
+            compressing.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] csv(int rows) {
+        StringBuilder csv = new StringBuilder("id,name,amount\n");
+        for (int i = 0; i < rows; i++) {
+            csv.append(i).append(",name ").append(i % 97).append(',').append(i * 3 % 1000).append(".25\n");
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
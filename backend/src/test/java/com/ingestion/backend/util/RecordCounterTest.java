@@ -0,0 +1,37 @@
+package com.ingestion.backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RecordCounterTest {
+
+    @Test
+    void csvNewlinesInsideQuotesDoNotEndRecords() {
+        AtomicLong live = new AtomicLong();
+        RecordCounter counter = new RecordCounter(",", true, live::addAndGet);
+        String csv = "\"id\",\"note\"\n1,\"two\nlines\"\r\n2,\"say \"\"hi\"\"\n\"\n3,plain\n";
+
+        // Feed a few bytes at a time so quotes and newlines straddle buffers
+        byte[] bytes = csv.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < bytes.length; i += 3) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, i, Math.min(3, bytes.length - i));
+            counter.count(buffer);
+            assertEquals(i, buffer.position());
+        }
+
+        assertEquals(3, counter.getRecords());
+        assertEquals(3, live.get());
+    }
+
+    @Test
+    void tabSeparatedCountsEveryNewline() {
+        RecordCounter counter = new RecordCounter("\t", false, rows -> { });
+        counter.count(ByteBuffer.wrap("a\"b\tc\n\"d\t\\ne\n".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(2, counter.getRecords());
+    }
+}
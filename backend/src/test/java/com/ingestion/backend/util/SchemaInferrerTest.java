@@ -0,0 +1,81 @@
+package com.ingestion.backend.util;
+
+import com.ingestion.backend.model.TableSchema;
+import com.ingestion.backend.model.TableSchema.ColumnDefinition;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SchemaInferrerTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void narrowsEachColumnToTheTightestType() throws IOException {
+        StringBuilder csv = new StringBuilder("small,signed,big,price,ratio,day,ts,id,code,county,note,empty\n");
+        for (int i = 0; i < 1000; i++) {
+            csv.append(i % 200).append(',')
+               .append(i % 2 == 0 ? -i : i).append(',')
+               .append(5_000_000_000L + i).append(',')
+               .append(i).append('.').append(i % 100).append(',')
+               .append("1.5e").append(i % 10).append(',')
+               .append(String.format("2020-%02d-%02d", i % 12 + 1, i % 28 + 1)).append(',')
+               .append(String.format("2021-03-04 10:%02d:%02d.%03d", i % 60, i % 60, i)).append(',')
+               .append(String.format("%08x-0000-4000-8000-%012x", i, i)).append(',')
+               .append(String.format("%05d", i)).append(',')
+               .append(i % 3 == 0 ? "KENT" : "\"ESSEX, UK\"").append(',')
+               .append("note ").append(i).append(',')
+               .append('\n');
+        }
+
+        Map<String, String> types = infer(csv.toString(), 10_000);
+
+        assertEquals("UInt8", types.get("small"));
+        assertEquals("Int16", types.get("signed"));
+        assertEquals("UInt64", types.get("big"));
+        assertEquals("Decimal(5, 2)", types.get("price"));
+        assertEquals("Float64", types.get("ratio"));
+        assertEquals("Date", types.get("day"));
+        assertEquals("DateTime64(3)", types.get("ts"));
+        assertEquals("UUID", types.get("id"));
+        assertEquals("String", types.get("code"));
+        assertEquals("LowCardinality(String)", types.get("county"));
+        assertEquals("String", types.get("note"));
+        assertEquals("Nullable(String)", types.get("empty"));
+    }
+
+    @Test
+    void randomSamplesCatchValuesPastTheHead() throws IOException {
+        StringBuilder csv = new StringBuilder("n,flag\n");
+        for (int i = 0; i < 50_000; i++) {
+            // Only the second half has negatives and gaps
+            boolean late = i >= 25_000;
+            csv.append(late ? -i : i % 100).append(',').append(late && i % 2 == 0 ? "" : "1").append('\n');
+        }
+
+        Map<String, String> types = infer(csv.toString(), 2_000);
+
+        assertEquals("Int32", types.get("n"));
+        assertEquals("Nullable(UInt8)", types.get("flag"));
+    }
+
+    private Map<String, String> infer(String csv, int sampleRows) throws IOException {
+        Path file = dir.resolve("sample.csv");
+        Files.writeString(file, csv);
+        TableSchema schema = new SchemaInferrer(file, ",", sampleRows).infer("sample");
+        Map<String, String> types = new LinkedHashMap<>();
+        for (ColumnDefinition column : schema.getColumns()) {
+            types.put(column.getName(), column.getType());
+        }
+        return types;
+    }
+}
@@ -20,6 +20,7 @@ const ClickHouseIngestionForm = () => {
   const [recordCount, setRecordCount] = useState(null);
   const [errorMessage, setErrorMessage] = useState('');
   const [showModal, setShowModal] = useState(false);
+  const [progress, setProgress] = useState(null); // Live stage, rows, rates and ETA from the server
 
   // Handle form submission
   const handleSubmit = async (e) => {
@@ -111,20 +112,64 @@ const ClickHouseIngestionForm = () => {
         throw new Error('Failed to retrieve status');
       }
 
-      setStatus(data.status);
+      applyStatus(data);
+    } catch (error) {
+      setStatus('Error: ' + error.message);
+    }
+  };
+
+  const applyStatus = (data) => {
+    setStatus(data.status);
+    setProgress(data.progress || null);
+    if (data.status === 'COMPLETED') {
+      // A negative count means the server couldn't determine it
+      setRecordCount(data.totalRecords >= 0 ? data.totalRecords : 'An unknown number of');
+      setShowModal(true);
+    } else if (data.status === 'FAILED' || data.status === 'CANCELLED') {
+      setErrorMessage(data.message || 'Unknown error occurred.');
+    }
+  };
+
+  // Stop the job on the server; the final CANCELLED status arrives through the event stream
+  const cancelIngestion = async () => {
+    try {
+      const response = await fetch(`http://localhost:8080/api/data/ingest/cancel/${ingestionId}`, { method: 'POST' });
+      if (!response.ok) {
+        throw new Error('Failed to cancel ingestion');
+      }
+      applyStatus(await response.json());
     } catch (error) {
       setStatus('Error: ' + error.message);
     }
   };
 
+  const isFinished = (value) => value === 'COMPLETED' || value === 'FAILED' || value === 'CANCELLED';
+
+  // The server pushes progress events until the job completes or fails, so there is nothing to poll
   useEffect(() => {
-    let intervalId;
-    if (ingestionId) {
-      intervalId = setInterval(() => checkStatus(), 5000); // Poll status every 5 seconds
+    if (!ingestionId) {
+      return undefined;
     }
-    return () => clearInterval(intervalId);
+    const source = new EventSource(`http://localhost:8080/api/data/ingest/progress/${ingestionId}`);
+    source.addEventListener('progress', (event) => {
+      const data = JSON.parse(event.data);
+      applyStatus(data);
+      if (isFinished(data.status)) {
+        source.close();
+      }
+    });
+    // Closing stops EventSource from reconnecting; Check Status still works
+    source.onerror = () => source.close();
+    return () => source.close();
   }, [ingestionId]);
 
+  const formatEta = (seconds) => {
+    if (seconds === null || seconds === undefined) {
+      return 'unknown';
+    }
+    return seconds >= 60 ? `${Math.floor(seconds / 60)}m ${seconds % 60}s` : `${seconds}s`;
+  };
+
   return (
     <div className="form-container">
       <form onSubmit={handleSubmit}>
@@ -213,12 +258,22 @@ const ClickHouseIngestionForm = () => {
           <button onClick={checkStatus} disabled={isLoading}>
             {isLoading ? 'Checking Status...' : 'Check Status'}
           </button>
+          {!isFinished(status) && (
+            <button onClick={cancelIngestion}>Cancel Ingestion</button>
+          )}
         </div>
       )}
 
       <div className="status-container">
         <p>Status: {status}</p>
 
+        {progress && !isFinished(status) && (
+          <p>
+            {progress.stage}: <strong>{progress.rows.toLocaleString()}</strong> rows
+            ({Math.round(progress.rowsPerSecond).toLocaleString()} rows/s), ETA {formatEta(progress.etaSeconds)}
+          </p>
+        )}
+
         {status === 'COMPLETED' && (
           <p style={{ color: 'green' }}>
             ✅ Ingestion complete. <strong>{recordCount}</strong> records written to <code>{filePath}</code>.
@@ -230,6 +285,12 @@ const ClickHouseIngestionForm = () => {
             ❌ Ingestion failed: <strong>{errorMessage}</strong>
           </p>
         )}
+
+        {status === 'CANCELLED' && (
+          <p>
+            Ingestion cancelled: <strong>{errorMessage}</strong>
+          </p>
+        )}
       </div>
 
       {showModal && (